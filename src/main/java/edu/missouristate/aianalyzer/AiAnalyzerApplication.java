@@ -15,6 +15,7 @@ package edu.missouristate.aianalyzer;
 
 import edu.missouristate.aianalyzer.service.config.CloudConfigService;
 import edu.missouristate.aianalyzer.service.database.ActiveScanService;
+import edu.missouristate.aianalyzer.service.database.InitialScanService;
 import edu.missouristate.aianalyzer.ui.JavaFxApplication;
 import javafx.application.Application;
 import lombok.extern.slf4j.Slf4j;
@@ -84,12 +85,14 @@ public class AiAnalyzerApplication {
      * This method retrieves the user-configured scan directories and initiates both
      * a continuous file watcher and an initial indexing scan.
      * @param activeScanService Service responsible for file system monitoring and indexing.
+     * @param initialScanService Runs the initial indexing scan as a resumable background job.
      * @param cloudConfigService Service to retrieve configuration values, prioritizing user settings.
      * @return A CommandLineRunner that executes the scanning logic.
      */
     @Bean
     CommandLineRunner startFileScanning(
             ActiveScanService activeScanService,
+            InitialScanService initialScanService,
             @Autowired CloudConfigService cloudConfigService) {
 
         return args -> {
@@ -122,8 +125,8 @@ public class AiAnalyzerApplication {
             // Starts the continuous passive file watcher (runs asynchronously).
             activeScanService.startPassiveWatcher(roots);
 
-            // Executes the initial active scan to index existing files (blocks startup briefly).
-            activeScanService.performActiveScan(roots);
+            // Starts (or resumes from its last checkpoint) the initial scan of existing files in the background.
+            initialScanService.start(roots);
 
             log.info("File scanning system initialized successfully.");
         };
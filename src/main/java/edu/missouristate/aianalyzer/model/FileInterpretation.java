@@ -1,5 +1,10 @@
 package edu.missouristate.aianalyzer.model;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 // Class to hold AI results
@@ -56,6 +61,45 @@ public class FileInterpretation {
             "jpg","jpeg","png","webp"
     );
 
+    // Coarse kind stored on FileRecord for each scanned extension. Anything else is "other".
+    public static final Map<String, String> KIND_BY_EXTENSION = kinds(Map.of(
+            "image", List.of("jpg", "jpeg", "png", "gif", "bmp", "tif", "tiff", "webp", "heic"),
+            "video", List.of("mp4", "mov", "mkv", "avi", "wmv"),
+            "doc", List.of("pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "txt", "md", "csv", "json")
+    ));
+
+    // Extensions the scanner picks up unless the "scan" preferences override them.
+    public static final Set<String> SCANNED_FILE_TYPES = KIND_BY_EXTENSION.keySet();
+
+    // Categories shown on the Home view, in display order. Extensions not listed fall into "Others".
+    public static final Map<String, List<String>> CATEGORY_EXTENSIONS = categories();
+
+    /**
+     * Returns the FileRecord kind for a lower-case extension ("image", "video", "doc" or "other").
+     */
+    public static String kindOf(String ext) {
+        return KIND_BY_EXTENSION.getOrDefault(ext, "other");
+    }
+
+    private static Map<String, String> kinds(Map<String, List<String>> extensionsByKind) {
+        Map<String, String> byExtension = new HashMap<>();
+        extensionsByKind.forEach((kind, exts) -> exts.forEach(ext -> byExtension.put(ext, kind)));
+        return Collections.unmodifiableMap(byExtension);
+    }
+
+    private static Map<String, List<String>> categories() {
+        Map<String, List<String>> categories = new LinkedHashMap<>(); // Linked to preserve order
+        categories.put("Images", List.of("jpg", "jpeg", "png", "gif", "bmp", "webp", "svg", "tiff", "ico"));
+        categories.put("Videos", List.of("mp4", "mkv", "avi", "mov", "wmv", "flv", "webm", "m4v"));
+        categories.put("Documents", List.of("pdf", "doc", "docx", "txt", "rtf", "odt", "xls", "xlsx", "ppt", "pptx", "csv", "md"));
+        categories.put("Archives", List.of("zip", "rar", "7z", "tar", "gz", "iso", "cab"));
+        categories.put("Code", List.of("java", "py", "js", "ts", "html", "css", "c", "cpp", "h", "cs", "php", "json", "xml", "yaml", "yml", "sql", "sh", "bat"));
+        categories.put("Executables", List.of("exe", "msi", "dll", "app", "jar", "bin"));
+        categories.put("Audio", List.of("mp3", "wav", "flac", "aac", "ogg", "wma"));
+        // "Others" is special case handled in logic
+        return Collections.unmodifiableMap(categories);
+    }
+
     public enum FileType {
         // Image Types
         JPEG("image/jpeg"),
@@ -5,7 +5,11 @@ import lombok.Data;
 
 @Data
 @Entity
-@Table(name = "files")
+@Table(name = "files",
+        indexes = {
+                @Index(name = "ix_files_content_hash", columnList = "contentHash"),
+                @Index(name = "ix_files_size", columnList = "sizeBytes")
+        })
 public class FileRecord {
 
     @Id
@@ -21,6 +25,8 @@ public class FileRecord {
     private Long ctimeUnix;
     private long lastScannedUnix; // passive timestamps
     private String contentHash;   // AI cache
+    private String contentHashAlgo; // algorithm behind contentHash; null for old SHA-256 of the first 256 MB
+    private String sha256;        // whole-file SHA-256, only computed for files that share their contentHash
     private String kind;
     private String typeLabel;
     private Double typeLabelConfidence;
@@ -54,4 +60,16 @@ public class FileRecord {
 
     @Column(name = "ai_analyzed_unix")
     private Long aiAnalyzedUnix;
+
+    // Versions the current label was produced with; a label is only reused for identical content
+    // while both still match (see LabelCacheService).
+    @Column(name = "prompt_version")
+    private String promptVersion;
+
+    @Column(name = "clam_signature_version")
+    private String clamSignatureVersion;
+
+    // Id of the record with the same content whose label was copied, or null if this file was analyzed itself.
+    @Column(name = "label_cached_from")
+    private Long labelCachedFrom;
 }
\ No newline at end of file
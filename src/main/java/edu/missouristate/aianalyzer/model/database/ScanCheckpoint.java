@@ -0,0 +1,27 @@
+package edu.missouristate.aianalyzer.model.database;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * A directory whose whole subtree was walked (and enqueued) by a ScanJob.
+ * A resumed job skips these subtrees without listing them.
+ */
+@Data
+@Entity
+@Table(name = "scan_checkpoint",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "ux_sc_job_path", columnNames = {"job_id", "path"})
+        })
+public class ScanCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private String path;
+}
@@ -0,0 +1,59 @@
+package edu.missouristate.aianalyzer.model.database;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * A scan queue item that failed for good: either its failure is permanent, or it ran out of attempts.
+ * The row is removed from scan_queue and kept here until the user requeues it (Metrics view).
+ */
+@Data
+@Entity
+@Table(name = "scan_dead_letter",
+        indexes = {
+                @Index(name = "ux_sdl_path", columnList = "path", unique = true),
+                @Index(name = "ix_sdl_class", columnList = "failureClass, lastFailedUnix")
+        })
+public class ScanDeadLetter {
+
+    // How a processing failure is treated. Each class has its own attempt limit and backoff.
+    public enum FailureClass {
+        TRANSIENT_IO,   // I/O or database hiccup; retried with backoff
+        PARSE_ERROR,    // file content could not be read (corrupt, encrypted, wrong format)
+        REMOTE_QUOTA,   // AI or storage service rate limit / quota; retried with a long backoff
+        TIMEOUT,        // an external tool (clamscan, ImageMagick) hung on the file and was killed
+        UNKNOWN,        // an error nothing above accounts for (often a bug); retried a few times
+        PERMANENT       // file gone, access denied, request rejected; never retried automatically
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String path;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ScanQueueItem.Kind kind;
+
+    private int priority;
+
+    private String root = "";
+
+    // Attempts made before the item was given up on.
+    private int attempts;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private FailureClass failureClass;
+
+    @Column(length = 1024)
+    private String message;
+
+    private long firstFailedUnix;
+    private long lastFailedUnix;
+
+    // The error_log entry written for the final failure; resolved when the item is requeued.
+    private Long errorLogId;
+}
@@ -0,0 +1,45 @@
+package edu.missouristate.aianalyzer.model.database;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * A background initial scan over the configured roots.
+ * Unfinished jobs (RUNNING, PAUSED or FAILED) are resumed on the next startup using their ScanCheckpoints.
+ */
+@Data
+@Entity
+@Table(name = "scan_job",
+        indexes = {
+                @Index(name = "ix_sj_status", columnList = "status")
+        })
+public class ScanJob {
+
+    public enum Status {
+        RUNNING,
+        PAUSED,
+        CANCELLED,
+        COMPLETED,
+        FAILED      // the walk stopped with an error; its checkpoints are kept for the next start
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Comma-separated scan roots, compared on resume to detect configuration changes.
+    @Lob
+    @Column(nullable = false)
+    private String roots;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    private long startedUnix;
+    private Long finishedUnix;
+
+    // Running totals across all sessions of this job.
+    private long dirsScanned;
+    private long filesSeen;
+}
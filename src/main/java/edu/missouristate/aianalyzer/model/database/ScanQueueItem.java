@@ -2,6 +2,7 @@ package edu.missouristate.aianalyzer.model.database;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 
 <<<<<<< HEAD
 /**
@@ -15,14 +16,26 @@ import lombok.Data;
 @Table(name = "scan_queue",
         indexes = {
                 @Index(name="ix_sq_kind_notbefore", columnList = "kind, notBeforeUnix"),
-                @Index(name="ix_sq_path", columnList = "path")
+                @Index(name="ux_sq_path", columnList = "path", unique = true),
+                @Index(name="ix_sq_lane", columnList = "priority, root, notBeforeUnix"),
+                @Index(name="ix_sq_lease", columnList = "leaseUntil")
         })
 public class ScanQueueItem {
 
     public enum Kind {
-        ACTIVE_AI
+        ACTIVE_AI,
+        // Only the ClamAV scan is repeated (new signatures); the file's label is kept if it is still clean.
+        // A queued VIRUS_RESCAN becomes ACTIVE_AI if the path is enqueued for a full scan.
+        VIRUS_RESCAN
     }
 
+    // Priority classes, highest first. A class is only served once every higher class has nothing due.
+    // A re-enqueued path keeps the highest class it was given.
+    public static final int PRIORITY_USER_FOCUS = 30;   // in a folder the user just opened
+    public static final int PRIORITY_VIRUS_TYPE = 20;   // FileInterpretation.VIRUS_FILE_TYPES
+    public static final int PRIORITY_NEW = 10;          // new or changed files
+    public static final int PRIORITY_BACKGROUND = 0;    // rescans of files that look unchanged
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -36,4 +49,22 @@ public class ScanQueueItem {
 
     private long notBeforeUnix;
     private int attempts;
+
+    @ColumnDefault("0")
+    private int priority;
+
+    // Scan root the path belongs to ("" if unknown). Within a priority class, roots are served round-robin.
+    @ColumnDefault("''")
+    private String root = "";
+
+    // Bumped every time the path is re-enqueued, so the consumer can tell whether the row
+    // changed while it was processing the file (see ScanQueueItemRepository.deleteIfUnchanged).
+    @ColumnDefault("0")
+    private long revision;
+
+    // Consumer worker holding this item, and when its lease runs out (see ScanQueueLeases).
+    private String claimedBy;
+
+    @ColumnDefault("0")
+    private long leaseUntil;
 }
@@ -14,7 +14,8 @@ import java.time.Instant;
 >>>>>>> clean-feature-branch
 @Entity
 @Table(name = "virus_scan", indexes = {
-        @Index(name = "ix_vs_file_time", columnList = "file_id, scanned_at")
+        @Index(name = "ix_vs_file_time", columnList = "file_id, scanned_at"),
+        @Index(name = "ix_vs_hash_version", columnList = "content_hash, signature_version")
 })
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class VirusScan {
@@ -34,6 +35,18 @@ public class VirusScan {
     @Column(name = "engine", nullable = false)
     private String engine;
 
+    /** ClamAV engine and signature database version the verdict was produced with */
+    @Column(name = "signature_version")
+    private String signatureVersion;
+
+    /** fast content hash of the scanned bytes (ContentHashService.FAST_ALGORITHM only) */
+    @Column(name = "content_hash")
+    private String contentHash;
+
+    /** SHA-256 of the scanned bytes; filled in when the verdict is first reused (see VirusVerdictCache) */
+    @Column(name = "sha256")
+    private String sha256;
+
     /** time stamp */
     @Column(name = "scanned_at", nullable = false)
     private Instant scannedAt;
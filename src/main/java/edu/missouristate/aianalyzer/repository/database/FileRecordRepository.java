@@ -2,12 +2,15 @@ package edu.missouristate.aianalyzer.repository.database;
 
 import edu.missouristate.aianalyzer.model.database.FileRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
@@ -30,6 +33,23 @@ public interface FileRecordRepository extends JpaRepository<FileRecord, Long> {
 >>>>>>> clean-feature-branch
     Optional<FileRecord> findTopByContentHashOrderByAiAnalyzedUnixDesc(String contentHash);
 
+    boolean existsByContentHashAndPathNot(String contentHash, String path);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileRecord f SET f.sha256 = :sha256 WHERE f.id = :id")
+    int updateSha256(@Param("id") Long id, @Param("sha256") String sha256);
+
+    // Labeled copies of the same content scanned with the given ClamAV signatures, newest label first.
+    @Query("""
+        SELECT f FROM FileRecord f
+        WHERE f.contentHash = :contentHash AND f.path <> :path
+          AND f.typeLabel IS NOT NULL AND f.clamSignatureVersion = :clamVersion
+        ORDER BY f.typeLabelUpdatedUnix DESC
+    """)
+    List<FileRecord> findLabeledCopies(@Param("contentHash") String contentHash, @Param("path") String path,
+                                       @Param("clamVersion") String clamVersion, Pageable pageable);
+
     @Query("""
         SELECT f FROM FileRecord f
         WHERE LOWER(f.path) LIKE LOWER(CONCAT('%', :q, '%'))
@@ -130,5 +150,58 @@ public interface FileRecordRepository extends JpaRepository<FileRecord, Long> {
         ORDER BY f.contentHash ASC, f.sizeBytes DESC
     """)
     List<FileRecord> findDuplicateImages(@Param("imageExts") List<String> imageExts);
+
+    // --- Duplicate finder support (see DuplicateFinderService) ---
+
+    // Sizes shared by more than one file on disk, largest first; only files of these sizes can be duplicates.
+    @Query("""
+        SELECT f.sizeBytes
+        FROM FileRecord f
+        WHERE f.sizeBytes >= :minSize
+          AND (f.kind IS NULL OR f.kind NOT IN ('missing', 'quarantined'))
+        GROUP BY f.sizeBytes
+        HAVING COUNT(f) > 1
+        ORDER BY f.sizeBytes DESC
+    """)
+    List<Long> findCollidingSizes(@Param("minSize") long minSize);
+
+    // Files on disk with exactly the given size.
+    @Query("""
+        SELECT f
+        FROM FileRecord f
+        WHERE f.sizeBytes = :size
+          AND (f.kind IS NULL OR f.kind NOT IN ('missing', 'quarantined'))
+    """)
+    List<FileRecord> findPresentBySize(@Param("size") long size);
+
+    // --- Passive watcher support ---
+
+    // Finds the paths of all records for a path itself or anything below it (prefix is a LIKE pattern escaped with '!').
+    @Query("SELECT f.path FROM FileRecord f WHERE f.path = :path OR f.path LIKE :prefix ESCAPE '!'")
+    List<String> findPathsAtOrBelow(@Param("path") String path, @Param("prefix") String prefix);
+
+    // Marks the given records as deleted from disk without touching the scan queue.
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileRecord f SET f.kind = 'missing', f.sizeBytes = 0 WHERE f.path IN :paths")
+    int markMissing(@Param("paths") Collection<String> paths);
+
+    // --- Virus definition updates (see VirusRescanService) ---
+
+    // Paths of files on disk with one of the given extensions, most recently modified first.
+    @Query("""
+        SELECT f.path
+        FROM FileRecord f
+        WHERE LOWER(f.ext) IN :extensions
+          AND (f.kind IS NULL OR f.kind NOT IN ('missing', 'quarantined'))
+        ORDER BY f.mtimeUnix DESC, f.id ASC
+    """)
+    List<String> findPresentPathsByExtensions(@Param("extensions") Collection<String> extensions, Pageable pageable);
+
+    // Records that the file's label still holds under the given ClamAV signatures.
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileRecord f SET f.clamSignatureVersion = :clamVersion WHERE f.path = :path")
+    int updateClamSignatureVersion(@Param("path") String path, @Param("clamVersion") String clamVersion);
 }
 >>>>>>> clean-feature-branch
@@ -0,0 +1,27 @@
+package edu.missouristate.aianalyzer.repository.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository interface for managing ScanCheckpoint entities.
+ * Checkpoints are inserted in batches by InitialScanService via JDBC.
+ */
+@Repository
+public interface ScanCheckpointRepository extends JpaRepository<ScanCheckpoint, Long> {
+
+    @Query("SELECT c.path FROM ScanCheckpoint c WHERE c.jobId = :jobId")
+    List<String> findPathsByJobId(@Param("jobId") Long jobId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ScanCheckpoint c WHERE c.jobId = :jobId")
+    int deleteByJobId(@Param("jobId") Long jobId);
+}
@@ -0,0 +1,22 @@
+package edu.missouristate.aianalyzer.repository.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanDeadLetter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing ScanDeadLetter entities.
+ */
+@Repository
+public interface ScanDeadLetterRepository extends JpaRepository<ScanDeadLetter, Long> {
+
+    Optional<ScanDeadLetter> findByPath(String path);
+
+    List<ScanDeadLetter> findAllByOrderByIdAsc(Pageable page);
+
+    long countByFailureClass(ScanDeadLetter.FailureClass failureClass);
+}
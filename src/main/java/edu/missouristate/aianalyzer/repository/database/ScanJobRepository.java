@@ -0,0 +1,18 @@
+package edu.missouristate.aianalyzer.repository.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for managing ScanJob entities.
+ */
+@Repository
+public interface ScanJobRepository extends JpaRepository<ScanJob, Long> {
+
+    // Finds jobs that never finished (used to resume or discard them on startup).
+    List<ScanJob> findAllByStatusInOrderByIdDesc(Collection<ScanJob.Status> statuses);
+}
@@ -3,7 +3,11 @@ package edu.missouristate.aianalyzer.repository.database;
 import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -39,8 +43,24 @@ public interface ScanQueueItemRepository extends JpaRepository<ScanQueueItem, Lo
 
     // Custom query method that Spring Data JPA implements automatically.
     // This query finds all queue items whose scheduled execution time (notBeforeUnix)
-    // is less than or equal to the current time, ordering them by oldest time first.
+    // is less than or equal to the current time, ordering them by highest priority, then oldest time first.
     // It returns a limited batch of work items (defined by pageable) for processing.
-    List<ScanQueueItem> findAllByNotBeforeUnixLessThanEqualOrderByNotBeforeUnix(long notBeforeUnix, Pageable pageable);
+    List<ScanQueueItem> findAllByNotBeforeUnixLessThanEqualOrderByPriorityDescNotBeforeUnixAsc(long notBeforeUnix, Pageable pageable);
+
+    // Removes a processed item unless its path was re-enqueued (revision bumped) in the meantime,
+    // in which case the row stays so the newer change is processed too.
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ScanQueueItem q WHERE q.id = :id AND q.revision = :revision")
+    int deleteIfUnchanged(@Param("id") long id, @Param("revision") long revision);
+
+    // Pushes a failed item back, unless its path was re-enqueued in the meantime; the fresh
+    // request then keeps its own (earlier) schedule.
+    @Modifying
+    @Transactional
+    @Query("UPDATE ScanQueueItem q SET q.attempts = :attempts, q.notBeforeUnix = :notBeforeUnix " +
+            "WHERE q.id = :id AND q.revision = :revision")
+    int rescheduleIfUnchanged(@Param("id") long id, @Param("revision") long revision,
+                              @Param("attempts") int attempts, @Param("notBeforeUnix") long notBeforeUnix);
 }
 >>>>>>> clean-feature-branch
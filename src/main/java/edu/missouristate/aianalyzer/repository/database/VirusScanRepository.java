@@ -1,8 +1,14 @@
 package edu.missouristate.aianalyzer.repository.database;
 
 import edu.missouristate.aianalyzer.model.database.VirusScan;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 <<<<<<< HEAD
@@ -14,4 +20,16 @@ import java.util.Optional;
 >>>>>>> clean-feature-branch
 public interface VirusScanRepository extends JpaRepository<VirusScan, Long> {
     Optional<VirusScan> findTopByFileIdOrderByScannedAtDesc(Long fileId);
+
+    // Verdicts for the same content under the given ClamAV signatures, newest first (see VirusVerdictCache).
+    List<VirusScan> findByContentHashAndSignatureVersionOrderByScannedAtDesc(String contentHash, String signatureVersion,
+                                                                             Pageable pageable);
+
+    // Signatures used by the most recent scan (the starting point of VirusRescanService on older databases).
+    Optional<VirusScan> findTopBySignatureVersionIsNotNullOrderByScannedAtDesc();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE VirusScan v SET v.sha256 = :sha256 WHERE v.id = :id")
+    int updateSha256(@Param("id") Long id, @Param("sha256") String sha256);
 }
@@ -0,0 +1,225 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.missouristate.aianalyzer.utility.ai.AiQueryUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs the extracted text of small files into multi-file AI requests, so a directory full of tiny
+ * config files does not cost one Gemini round trip per file.
+ *
+ * Files are collected until the batch reaches its token budget or file limit, or until the first
+ * file has waited linger-ms; then the batch is sent with AiQueryUtil.activeResponsesFromFilesAsync.
+ * Token counts are estimated at four characters per token. Files above max-file-tokens are sent on
+ * their own. If the batch response cannot be parsed, or has no usable result for a file, the files
+ * concerned are sent again with single-file requests. A failed request (quota, HTTP or transport
+ * error) is not retried here: each file's future fails with the error, so the scan queue backs off
+ * according to its failure class (see DeadLetterService).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiPromptBatcher {
+
+    // Characters per token used to estimate the prompt size.
+    private static final int CHARS_PER_TOKEN = 4;
+
+    // Sends lingering batches, and runs single-file fallbacks, which may wait for an in-flight slot.
+    private static final ScheduledExecutorService SENDER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "AI-Batch-Sender");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** The answer to a multi-file request is not a JSON array of per-file results. */
+    static class MalformedBatchResponseException extends RuntimeException {
+        MalformedBatchResponseException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final AiQueryUtil aiQueryUtil;
+
+    // Packs small files into multi-file requests.
+    @Value("${ai.batch.enabled:true}")
+    private boolean enabled;
+
+    // Estimated tokens of file content per multi-file request.
+    @Value("${ai.batch.max-tokens:24000}")
+    private int maxTokens;
+
+    // Files estimated above this many tokens are sent on their own.
+    @Value("${ai.batch.max-file-tokens:2000}")
+    private int maxFileTokens;
+
+    // Largest number of files per multi-file request.
+    @Value("${ai.batch.max-files:40}")
+    private int maxFiles;
+
+    // How long the first file of a batch waits for more files before the batch is sent anyway.
+    @Value("${ai.batch.linger-ms:250}")
+    private long lingerMillis;
+
+    private record Entry(String content, CompletableFuture<String> response) {
+    }
+
+    // The batch being filled, guarded by this.
+    private List<Entry> open = new ArrayList<>();
+    private long openTokens;
+    private ScheduledFuture<?> lingerTimer;
+
+    /**
+     * Classifies the extracted text of a file, batched with other small files if it is small itself.
+     *
+     * @param content The complete file contents as a string.
+     * @return A future completing with the 'Classification%Summary' response for this file.
+     */
+    public CompletableFuture<String> classify(String content) {
+        long tokens = estimateTokens(content);
+        if (!enabled || maxFiles < 2 || tokens > maxFileTokens) {
+            return aiQueryUtil.activeResponseFromFileAsync(content);
+        }
+        CompletableFuture<String> response = new CompletableFuture<>();
+        List<List<Entry>> ready = new ArrayList<>(2);
+        synchronized (this) {
+            if (!open.isEmpty() && openTokens + tokens > maxTokens) {
+                ready.add(takeOpen());
+            }
+            open.add(new Entry(content, response));
+            openTokens += tokens;
+            if (open.size() >= maxFiles) {
+                ready.add(takeOpen());
+            } else if (open.size() == 1) {
+                lingerTimer = SENDER.schedule(this::sendOpen, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        // Sent outside the lock: sending waits while AiQueryUtil's in-flight limit is reached.
+        ready.forEach(this::send);
+        return response;
+    }
+
+    // --- Helper Methods ---
+
+    // Linger timer: sends whatever the open batch holds.
+    private void sendOpen() {
+        List<Entry> batch;
+        synchronized (this) {
+            batch = takeOpen();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    // Must hold the lock.
+    private List<Entry> takeOpen() {
+        if (lingerTimer != null) {
+            lingerTimer.cancel(false);
+            lingerTimer = null;
+        }
+        List<Entry> batch = open;
+        open = new ArrayList<>();
+        openTokens = 0;
+        return batch;
+    }
+
+    private void send(List<Entry> batch) {
+        if (batch.size() == 1) {
+            sendSingle(batch.get(0));
+            return;
+        }
+        log.debug("Sending {} small files in one AI request", batch.size());
+        aiQueryUtil.activeResponsesFromFilesAsync(batch.stream().map(Entry::content).toList())
+                .thenApply(text -> parseResults(text, batch.size()))
+                .whenComplete((results, e) -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause != null && !(cause instanceof MalformedBatchResponseException)) {
+                        // The request itself failed; sending every file again would only add load.
+                        batch.forEach(entry -> entry.response().completeExceptionally(cause));
+                        return;
+                    }
+                    if (cause != null) {
+                        log.warn("{}; sending the {} files one by one.", cause.getMessage(), batch.size());
+                    }
+                    for (int i = 0; i < batch.size(); i++) {
+                        String result = results != null ? results.get(i) : null;
+                        if (result != null) {
+                            batch.get(i).response().complete(result);
+                        } else {
+                            if (results != null) {
+                                log.debug("AI batch response had no usable result for file {}; sending it alone.", i);
+                            }
+                            Entry entry = batch.get(i);
+                            SENDER.execute(() -> sendSingle(entry)); // Not on the client's callback thread.
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Reads the per-file results of a multi-file request (see AiQueryUtil.activeResponsesFromFilesAsync).
+     * Prose or a markdown code fence around the JSON array is ignored. Entries with an unknown or
+     * repeated id, or a result that is not in the 'Classification%Summary' format, are skipped.
+     *
+     * @return One result per file, in request order; null where the response had no usable result.
+     * @throws MalformedBatchResponseException if the response holds no JSON array
+     */
+    static List<String> parseResults(String text, int fileCount) {
+        String json = text == null ? "" : text.strip();
+        int start = json.indexOf('[');
+        int end = json.lastIndexOf(']');
+        if (start < 0 || end < start) {
+            throw new MalformedBatchResponseException("AI batch response holds no JSON array", null);
+        }
+        JsonNode root;
+        try {
+            root = OBJECT_MAPPER.readTree(json.substring(start, end + 1));
+        } catch (JsonProcessingException e) {
+            throw new MalformedBatchResponseException("AI batch response is not valid JSON: " + e.getOriginalMessage(), e);
+        }
+        String[] results = new String[fileCount];
+        for (JsonNode entry : root) {
+            JsonNode id = entry.get("id");
+            JsonNode result = entry.get("result");
+            if (id == null || !id.canConvertToInt() || result == null || !result.isTextual()) {
+                continue;
+            }
+            int index = id.asInt();
+            if (index >= 0 && index < fileCount && results[index] == null && result.asText().contains("%")) {
+                results[index] = result.asText().trim();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private void sendSingle(Entry entry) {
+        aiQueryUtil.activeResponseFromFileAsync(entry.content()).whenComplete((text, e) -> {
+            if (e != null) {
+                entry.response().completeExceptionally(e);
+            } else {
+                entry.response().complete(text);
+            }
+        });
+    }
+
+    private static long estimateTokens(String content) {
+        return (content.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
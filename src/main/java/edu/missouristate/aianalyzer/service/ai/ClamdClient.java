@@ -0,0 +1,407 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client for a running ClamAV daemon (clamd). clamd keeps the signature database loaded, so a scan
+ * costs milliseconds instead of the seconds (and ~1 GB of RAM) clamscan spends reloading it per file.
+ *
+ * Files are sent with the INSTREAM command, so clamd does not need read access to the user's files:
+ * each chunk is a 4-byte big-endian length followed by the bytes, copied from the file to the socket
+ * with FileChannel.transferTo (sendfile where the OS supports it), and a zero length ends the stream.
+ * Connections are kept open in IDSESSION mode and reused from a small pool; clamd closes idle sessions
+ * after its IdleTimeout (30 s by default), so older idle connections are not reused.
+ *
+ * When the daemon cannot be reached, isAvailable() returns false until the next retry, and
+ * ScanForVirusService falls back to clamscan.
+ */
+@Slf4j
+@Service
+public class ClamdClient {
+
+    /** Result of one INSTREAM scan; signature is null for clean files. */
+    public record Result(boolean infected, String signature) {
+    }
+
+    // Unix sockets used by the clamd packages of common distributions, tried when no address is configured.
+    private static final List<String> DEFAULT_SOCKETS = List.of(
+            "/var/run/clamav/clamd.ctl", "/run/clamav/clamd.ctl",
+            "/var/run/clamd.scan/clamd.sock", "/run/clamd.scan/clamd.sock",
+            "/tmp/clamd.socket", "/opt/homebrew/var/run/clamav/clamd.sock");
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final long MAX_IDLE_MILLIS = 20_000;
+    private static final int MAX_REPLY_BYTES = 64 * 1024;
+
+    private final SocketAddress address;
+    private final int timeoutMillis;
+    private final long maxStreamBytes;
+    private final long retryMillis;
+
+    private final Semaphore permits;
+    private final BlockingQueue<Session> idle;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Clamd-Timeout");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile boolean available;
+    private volatile long nextCheckMillis;
+
+    /**
+     * @param address        "unix:/path/to/clamd.sock", "tcp:host:port", empty to look for a local daemon, or "off".
+     * @param poolSize       Connections kept open to clamd; also the number of concurrent scans.
+     * @param timeoutMillis  Upper bound for one command, including the stream upload.
+     * @param maxStreamBytes Largest file sent to clamd; must not exceed clamd's StreamMaxLength.
+     * @param retryMillis    How long to wait before trying again after the daemon could not be reached.
+     */
+    public ClamdClient(@Value("${clam.daemon.address:}") String address,
+                       @Value("${clam.daemon.pool-size:4}") int poolSize,
+                       @Value("${clam.daemon.timeout-ms:120000}") int timeoutMillis,
+                       @Value("${clam.daemon.max-stream-bytes:26214400}") long maxStreamBytes,
+                       @Value("${clam.daemon.retry-ms:60000}") long retryMillis) {
+        this.address = resolveAddress(address);
+        this.timeoutMillis = timeoutMillis;
+        this.maxStreamBytes = maxStreamBytes;
+        this.retryMillis = retryMillis;
+        this.permits = new Semaphore(Math.max(1, poolSize), true);
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        if (this.address == null) {
+            log.info("No clamd socket configured or found; virus scans will use clamscan.");
+        }
+    }
+
+    /**
+     * @return true if clamd answered the last ping. A failed daemon is pinged again after retry-ms.
+     */
+    public boolean isAvailable() {
+        if (address == null) return false;
+        if (available || System.currentTimeMillis() < nextCheckMillis) {
+            return available;
+        }
+        synchronized (this) {
+            if (!available && System.currentTimeMillis() >= nextCheckMillis) {
+                try {
+                    String reply = command("PING");
+                    available = "PONG".equals(reply);
+                    if (available) {
+                        log.info("Using clamd at {} for virus scans.", address);
+                    }
+                } catch (IOException e) {
+                    log.info("clamd at {} is not reachable ({}); using clamscan.", address, e.getMessage());
+                }
+                if (!available) {
+                    nextCheckMillis = System.currentTimeMillis() + retryMillis;
+                }
+            }
+            return available;
+        }
+    }
+
+    /**
+     * @return true if the file is small enough to be streamed to clamd.
+     */
+    public boolean accepts(long sizeBytes) {
+        return sizeBytes <= maxStreamBytes;
+    }
+
+    /**
+     * Streams the file to clamd and returns its verdict.
+     * @throws IOException if the file cannot be read, or clamd fails or reports an error for it.
+     */
+    public Result scan(Path file) throws IOException {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            String reply = execute(session -> {
+                session.write("INSTREAM");
+                stream(source, session.channel);
+                return session.readReply();
+            });
+            // "stream: OK", "stream: <signature> FOUND", or "<reason> ERROR"
+            String verdict = reply.startsWith("stream: ") ? reply.substring("stream: ".length()) : reply;
+            if (verdict.equals("OK")) {
+                return new Result(false, null);
+            }
+            if (verdict.endsWith(" FOUND")) {
+                return new Result(true, verdict.substring(0, verdict.length() - " FOUND".length()));
+            }
+            throw new IOException("clamd could not scan " + file.getFileName() + ": " + reply);
+        }
+    }
+
+    /**
+     * @return The daemon's version line, e.g. "ClamAV 1.2.1/27150/Tue Jan  9 09:36:45 2024".
+     */
+    public String version() throws IOException {
+        return command("VERSION");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Session session;
+        while ((session = idle.poll()) != null) {
+            session.close();
+        }
+        watchdog.shutdownNow();
+    }
+
+    // --- Helper Methods ---
+
+    private String command(String name) throws IOException {
+        return execute(session -> {
+            session.write(name);
+            return session.readReply();
+        });
+    }
+
+    private interface SessionCall {
+        String run(Session session) throws IOException;
+    }
+
+    /**
+     * Runs the call on a pooled session. A reused session may have been closed by clamd in the
+     * meantime; the call is then retried once on a fresh one (unless it timed out). Sessions are
+     * discarded after any error. Only a failed connect or a timeout takes the daemon out of use: clamd
+     * also drops the connection after an error for a single stream.
+     */
+    private String execute(SessionCall call) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a clamd connection", e);
+        }
+        try {
+            Session session = borrow();
+            boolean reused = session.commands > 0;
+            try {
+                String reply = session.timed(call);
+                release(session);
+                return reply;
+            } catch (IOException e) {
+                session.close();
+                if (!reused || session.timedOut) {
+                    if (session.timedOut) markDown(e); // A daemon that stops answering is as good as gone
+                    throw e;
+                }
+            }
+            Session fresh = open();
+            try {
+                String reply = fresh.timed(call);
+                release(fresh);
+                return reply;
+            } catch (IOException e) {
+                fresh.close();
+                if (fresh.timedOut) markDown(e);
+                throw e;
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Session borrow() throws IOException {
+        Session session;
+        while ((session = idle.poll()) != null) {
+            if (System.currentTimeMillis() - session.lastUsedMillis < MAX_IDLE_MILLIS) {
+                return session;
+            }
+            session.close();
+        }
+        return open();
+    }
+
+    private void release(Session session) {
+        session.lastUsedMillis = System.currentTimeMillis();
+        session.commands++;
+        if (!idle.offer(session)) {
+            session.close();
+        }
+    }
+
+    private Session open() throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        try {
+            connect(channel);
+            Session session = new Session(channel);
+            session.write("IDSESSION"); // No reply; later replies are prefixed with "<id>: "
+            return session;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    private void connect(SocketChannel channel) throws IOException {
+        try {
+            ScheduledFuture<?> timeout = watchdog.schedule(() -> closeQuietly(channel), timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                channel.connect(address);
+            } finally {
+                timeout.cancel(false);
+            }
+        } catch (IOException e) {
+            markDown(e);
+            throw e;
+        }
+    }
+
+    private void markDown(IOException e) {
+        if (available) {
+            log.warn("Lost connection to clamd at {} ({}); falling back to clamscan.", address, e.getMessage());
+        }
+        available = false;
+        nextCheckMillis = System.currentTimeMillis() + retryMillis;
+    }
+
+    // Sends the file in length-prefixed chunks, then the zero-length terminator.
+    private static void stream(FileChannel source, SocketChannel target) throws IOException {
+        long size = source.size();
+        ByteBuffer length = ByteBuffer.allocate(4); // big-endian, as clamd expects
+        long position = 0;
+        while (position < size) {
+            int chunk = (int) Math.min(CHUNK_SIZE, size - position);
+            writeFully(target, length.clear().putInt(chunk).flip());
+            long end = position + chunk;
+            while (position < end) {
+                long sent = source.transferTo(position, end - position, target);
+                if (sent <= 0 && position >= source.size()) {
+                    throw new IOException("File shrank while it was being scanned");
+                }
+                position += sent;
+            }
+        }
+        writeFully(target, length.clear().putInt(0).flip());
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static SocketAddress resolveAddress(String configured) {
+        String value = configured == null ? "" : configured.trim();
+        if (value.equalsIgnoreCase("off")) {
+            return null;
+        }
+        if (value.isEmpty()) {
+            return DEFAULT_SOCKETS.stream()
+                    .map(Path::of)
+                    .filter(Files::exists)
+                    .findFirst()
+                    .<SocketAddress>map(UnixDomainSocketAddress::of)
+                    .orElse(null);
+        }
+        if (value.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(value.substring("unix:".length()));
+        }
+        String hostPort = value.startsWith("tcp:") ? value.substring("tcp:".length()) : value;
+        int colon = hostPort.lastIndexOf(':');
+        if (colon < 0) {
+            return new InetSocketAddress(hostPort, 3310);
+        }
+        return new InetSocketAddress(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+    }
+
+    /** One connection in IDSESSION mode. Commands are sent one at a time, so replies arrive in order. */
+    private final class Session {
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+        private long lastUsedMillis = System.currentTimeMillis();
+        private int commands;
+        private volatile boolean timedOut;
+
+        private Session(SocketChannel channel) {
+            this.channel = channel;
+            readBuffer.flip();
+        }
+
+        private String timed(SessionCall call) throws IOException {
+            // Blocking channel reads ignore socket timeouts, so a stuck command is ended by closing the channel.
+            ScheduledFuture<?> timeout = watchdog.schedule(() -> {
+                timedOut = true;
+                close();
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                return call.run(this);
+            } finally {
+                timeout.cancel(false);
+            }
+        }
+
+        // Commands use the "z" form: "z<COMMAND>\0", with replies terminated by \0 as well.
+        private void write(String command) throws IOException {
+            writeFully(channel, ByteBuffer.wrap(("z" + command + "\0").getBytes(StandardCharsets.US_ASCII)));
+        }
+
+        private String readReply() throws IOException {
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            while (true) {
+                while (readBuffer.hasRemaining()) {
+                    byte b = readBuffer.get();
+                    if (b == 0) {
+                        return stripSessionId(reply.toString(StandardCharsets.UTF_8));
+                    }
+                    if (reply.size() >= MAX_REPLY_BYTES) {
+                        throw new IOException("clamd reply too long");
+                    }
+                    reply.write(b);
+                }
+                readBuffer.clear();
+                int read = channel.read(readBuffer);
+                readBuffer.flip();
+                if (read < 0) {
+                    throw new IOException("clamd closed the connection");
+                }
+            }
+        }
+
+        private void close() {
+            closeQuietly(channel);
+        }
+
+        // "12: stream: OK" -> "stream: OK"
+        private static String stripSessionId(String reply) {
+            int colon = reply.indexOf(": ");
+            if (colon > 0 && reply.substring(0, colon).chars().allMatch(Character::isDigit)) {
+                return reply.substring(colon + 2).trim();
+            }
+            return reply.trim();
+        }
+    }
+}
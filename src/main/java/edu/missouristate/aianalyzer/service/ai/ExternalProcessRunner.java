@@ -0,0 +1,221 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs external tools (clamscan, ImageMagick, installers) under supervision, so one pathological
+ * file cannot pin a worker thread forever:
+ * - Every run has a deadline that depends on what the tool is used for (see Kind). The deadline
+ *   counts from the last line the process wrote, so a batch scan that keeps reporting files is not
+ *   cut off, while a process that goes quiet for longer is considered hung.
+ * - A hung process is killed together with everything it started (its whole process tree), and the
+ *   run fails with a ProcessTimeoutException, which the retry policy treats as its own failure class
+ *   (see DeadLetterService).
+ * - At most max-concurrent processes run at once; further runs wait for a slot.
+ * - Interrupting the calling thread kills the process as well, and processes still running when the
+ *   application shuts down are killed.
+ *
+ * Static utilities that run tools outside Spring-managed code use shared(), which is the Spring
+ * bean once the context has created it and a default-configured runner before that.
+ */
+@Slf4j
+@Service
+public class ExternalProcessRunner {
+
+    /** What an external process is run for; each kind has its own deadline. */
+    public enum Kind {
+        CLAMSCAN,       // clamscan of one file or a --file-list batch
+        CLAM_VERSION,   // clamscan --version
+        IMAGE_CONVERT,  // ImageMagick conversion of one image
+        INSTALL         // package manager, freshclam and other one-off setup commands
+    }
+
+    /** An external process was killed because it made no progress before its deadline. */
+    public static class ProcessTimeoutException extends IOException {
+        private final Kind kind;
+
+        public ProcessTimeoutException(Kind kind, String command, long deadlineMillis) {
+            super(command + " (" + kind + ") made no progress for " + deadlineMillis + " ms and was killed");
+            this.kind = kind;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    // How often running processes are checked against their deadline.
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Process-Watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static volatile ExternalProcessRunner shared =
+            new ExternalProcessRunner(4, 300_000, 60_000, 120_000, 1_800_000);
+
+    private final Semaphore permits;
+    private final Map<Kind, Long> deadlines = new EnumMap<>(Kind.class);
+    private final Set<Process> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param maxConcurrent          External processes allowed to run at the same time.
+     * @param clamscanMillis         Deadline for clamscan runs.
+     * @param clamVersionMillis      Deadline for clamscan --version.
+     * @param imageConvertMillis     Deadline for ImageMagick conversions.
+     * @param installMillis          Deadline for install and update commands.
+     */
+    public ExternalProcessRunner(@Value("${process.max-concurrent:4}") int maxConcurrent,
+                                 @Value("${process.deadline.clamscan-ms:300000}") long clamscanMillis,
+                                 @Value("${process.deadline.clam-version-ms:60000}") long clamVersionMillis,
+                                 @Value("${process.deadline.image-convert-ms:120000}") long imageConvertMillis,
+                                 @Value("${process.deadline.install-ms:1800000}") long installMillis) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+        deadlines.put(Kind.CLAMSCAN, clamscanMillis);
+        deadlines.put(Kind.CLAM_VERSION, clamVersionMillis);
+        deadlines.put(Kind.IMAGE_CONVERT, imageConvertMillis);
+        deadlines.put(Kind.INSTALL, installMillis);
+        shared = this;
+    }
+
+    /**
+     * @return The runner configured by Spring, or a default one if the context has not created it yet.
+     */
+    public static ExternalProcessRunner shared() {
+        return shared;
+    }
+
+    /**
+     * Runs a command and hands every line of its combined stdout/stderr to the given consumer.
+     * Install commands inherit stdin, so a package manager can still ask for a password.
+     *
+     * @param kind    What the process is run for; selects the deadline.
+     * @param command The executable and its arguments.
+     * @param charset Encoding of the process output.
+     * @param lines   Receives the output line by line, on the calling thread.
+     * @return The exit code.
+     * @throws ProcessTimeoutException if the process was killed for making no progress
+     * @throws IOException if the process cannot be started or its output cannot be read
+     * @throws InterruptedException if the calling thread was interrupted (the process is killed)
+     */
+    public int run(Kind kind, List<String> command, Charset charset, Consumer<String> lines)
+            throws IOException, InterruptedException {
+        long deadlineMillis = deadlines.get(kind);
+        permits.acquire();
+        Process process = null;
+        ScheduledFuture<?> check = null;
+        try {
+            ProcessBuilder pb = new ProcessBuilder(command).redirectErrorStream(true);
+            if (kind == Kind.INSTALL) {
+                pb.redirectInput(ProcessBuilder.Redirect.INHERIT);
+            }
+            process = pb.start();
+            running.add(process);
+            if (kind != Kind.INSTALL) {
+                process.getOutputStream().close();
+            }
+
+            // The watchdog kills the tree on a missed deadline or an interrupt; either ends the output below.
+            Process watched = process;
+            Thread caller = Thread.currentThread();
+            AtomicLong lastProgress = new AtomicLong(System.nanoTime());
+            AtomicBoolean timedOut = new AtomicBoolean();
+            check = WATCHDOG.scheduleWithFixedDelay(() -> {
+                if (!watched.isAlive()) {
+                    return;
+                }
+                if (System.nanoTime() - lastProgress.get() > TimeUnit.MILLISECONDS.toNanos(deadlineMillis)) {
+                    if (timedOut.compareAndSet(false, true)) {
+                        log.warn("{} made no progress for {} ms; killing it.", command.get(0), deadlineMillis);
+                        killTree(watched);
+                    }
+                } else if (caller.isInterrupted()) {
+                    killTree(watched);
+                }
+            }, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), charset))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lastProgress.set(System.nanoTime());
+                    lines.accept(line);
+                }
+            } catch (IOException e) {
+                if (!timedOut.get() && !Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            }
+
+            // The output is closed; the process gets what is left of its deadline to exit.
+            long remaining = TimeUnit.MILLISECONDS.toNanos(deadlineMillis) - (System.nanoTime() - lastProgress.get());
+            if (!timedOut.get() && !process.waitFor(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                timedOut.set(true);
+                killTree(process);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while running " + command.get(0));
+            }
+            if (timedOut.get()) {
+                throw new ProcessTimeoutException(kind, command.get(0), deadlineMillis);
+            }
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            if (process != null) {
+                killTree(process);
+            }
+            throw e;
+        } finally {
+            if (check != null) {
+                check.cancel(false);
+            }
+            if (process != null) {
+                running.remove(process);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Kills processes that are still running when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (Process process : running) {
+            log.info("Killing external process {} on shutdown.", process.pid());
+            killTree(process);
+        }
+    }
+
+    // --- Helper Methods ---
+
+    // Children first, so the process cannot start replacements; the list is taken before anything is
+    // killed, because children of a dead process are re-parented and no longer listed as descendants.
+    private static void killTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
@@ -4,12 +4,15 @@ import edu.missouristate.aianalyzer.utility.ai.AiQueryUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import edu.missouristate.aianalyzer.service.database.IoGovernor;
 import edu.missouristate.aianalyzer.service.database.VirusScanService;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.concurrent.CompletableFuture;
 
 import static edu.missouristate.aianalyzer.model.FileInterpretation.SUPPORTED_FILE_TYPES;
+import static edu.missouristate.aianalyzer.utility.ai.ReadFileUtil.readFileAsString;
 
 /**
  * Service responsible for scanning files for viruses and then passing them to the AI
@@ -31,12 +34,23 @@ public class ProcessFileService {
     /** Virus scanning service used to detect and persist scan results. */
     private final VirusScanService virusScanService;
 
-    /** Size of the current file being processed. */
-    static long fileSize;
+    /** Limits the disk bandwidth used while the file is read for extraction or upload. */
+    private final IoGovernor ioGovernor;
+
+    /** Packs the extracted text of small files into multi-file AI requests. */
+    private final AiPromptBatcher aiPromptBatcher;
 
     /** Maximum size threshold (8 MB) before processing is delegated to Google Cloud. */
     static final int maxFileSize = 8 * 1024 * 1024;
 
+    /**
+     * A file whose content is ready to be sent to the AI: either the extracted text of a small
+     * file, or the Cloud Storage URI of an uploaded large file. The uploaded object has a name of its
+     * own and is deleted once the AI has answered.
+     */
+    public record PreparedFile(Path path, String fileType, String content, String gcsUri) {
+    }
+
     /**
      * Processes a file by first scanning it for viruses and then submitting it
      * for AI interpretation. Files larger than the defined size threshold are
@@ -82,9 +96,11 @@ public class ProcessFileService {
 //        }
 >>>>>>> clean-feature-branch
 
-        fileSize = filePath.toFile().length();
+        // Local, since several queue workers call this concurrently.
+        long fileSize = filePath.toFile().length();
 
         try {
+            ioGovernor.acquireRead(filePath);
             if (fileSize <= maxFileSize) {
                 return AiQueryUtil.processSmallFileAIResponse(filePath, fileType);
             } else {
@@ -94,4 +110,53 @@ public class ProcessFileService {
             return "Error processing file: " + e.getMessage();
         }
     }
+
+    /**
+     * Extraction half of processFileAIResponse, used by the staged queue pipeline: reads the file
+     * as text, or uploads it to Google Cloud if it exceeds the size threshold. No AI request is made.
+     *
+     * @param filePath the path to the file that will be processed
+     * @param fileType the extension or format of the file
+     * @return the prepared content, to be passed to analyzePreparedFile
+     * @throws IOException if the file cannot be read or uploaded
+     */
+    public PreparedFile prepareFile(Path filePath, String fileType) throws IOException {
+        ioGovernor.acquireRead(filePath);
+        if (Files.size(filePath) <= maxFileSize) {
+            return new PreparedFile(filePath, fileType, readFileAsString(filePath, fileType), null);
+        }
+        return new PreparedFile(filePath, fileType, null, AiQueryUtil.uploadLargeFile(filePath, fileType));
+    }
+
+    /**
+     * AI half of processFileAIResponse: sends previously prepared content to the AI.
+     *
+     * @param prepared the result of prepareFile
+     * @return an AI-generated response describing the file contents, or an error message
+     * @throws IOException if the file type cannot be mapped for the AI request
+     */
+    public String analyzePreparedFile(PreparedFile prepared) throws IOException {
+        if (prepared.gcsUri() != null) {
+            return AiQueryUtil.processUploadedFileAIResponse(prepared.gcsUri(), prepared.fileType());
+        }
+        return AiQueryUtil.activeResponseFromFile(prepared.content());
+    }
+
+    /**
+     * Non-blocking variant of analyzePreparedFile: returns once the request is sent, so the caller
+     * can go on with other files while the AI answers (see AiQueryUtil for the in-flight limit).
+     * Extracted text of small files is sent in multi-file requests (see AiPromptBatcher).
+     *
+     * @param prepared the result of prepareFile
+     * @param contentKey identifies the file's content (hash algorithm and hash), or null; concurrent
+     *                   requests for the same uploaded file content share one AI call
+     * @return a future completing with the AI-generated response, or an error message
+     * @throws IOException if the file type cannot be mapped for the AI request
+     */
+    public CompletableFuture<String> analyzePreparedFileAsync(PreparedFile prepared, String contentKey) throws IOException {
+        if (prepared.gcsUri() != null) {
+            return AiQueryUtil.processUploadedFileAIResponseAsync(prepared.gcsUri(), prepared.fileType(), contentKey);
+        }
+        return aiPromptBatcher.classify(prepared.content());
+    }
 }
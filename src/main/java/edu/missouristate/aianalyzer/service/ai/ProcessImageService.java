@@ -15,6 +15,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -134,6 +135,8 @@ public class ProcessImageService {
                     ReadImageUtil.readImageType(fileType).getType()
             );
 
+        } catch (ExternalProcessRunner.ProcessTimeoutException e) {
+            throw new UncheckedIOException(e); // ImageMagick hung; the scan queue retries the file
         } catch (IOException e) {
 <<<<<<< HEAD
 =======
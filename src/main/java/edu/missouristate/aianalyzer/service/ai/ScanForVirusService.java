@@ -7,6 +7,15 @@ import org.springframework.beans.factory.annotation.Value;
 =======
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 >>>>>>> clean-feature-branch
 
 import java.io.*;
@@ -21,8 +30,9 @@ import static edu.missouristate.aianalyzer.utility.ai.ClamDownloadUtil.getClamSc
 /**
  * Service responsible for scanning files for viruses using ClamAV.
  *
- * This service ensures that ClamAV is installed and configured, then runs a scan
- * against the provided file. It uses the ClamAV command-line scanner (clamscan).
+ * Files are streamed to a running clamd daemon when one is reachable (see ClamdClient).
+ * Otherwise this service ensures that ClamAV is installed and configured, then runs the
+ * ClamAV command-line scanner (clamscan) against the provided file.
  *
  * The scan results follow ClamAV exit code standards:
  * - 0: No virus found
@@ -51,6 +61,36 @@ public class ScanForVirusService {
 @Service
 public class ScanForVirusService {
 
+    // How long the signature version read from clamscan --version is trusted before it is read again.
+    private static final long SIGNATURE_VERSION_TTL_MILLIS = 60 * 60 * 1000;
+
+    private static volatile String signatureVersion;
+    private static volatile long signatureVersionReadMillis;
+
+    /** Client for the clamd daemon; set once the Spring context creates this service. */
+    private static volatile ClamdClient clamdClient;
+
+    /**
+     * Verdict for one file of a batch scan.
+     * @param signature Name of the detected signature, or null for clean files.
+     * @param engine    "clamd" or "clamscan".
+     */
+    public record ScanVerdict(boolean infected, String signature, String engine) {
+    }
+
+    /**
+     * Result of a batch scan.
+     * @param verdicts Verdict per file that was scanned.
+     * @param failures Why a file has no verdict, where that is known for the file alone (e.g. it made
+     *                 clamscan hang, see ExternalProcessRunner.ProcessTimeoutException).
+     */
+    public record BatchScan(Map<Path, ScanVerdict> verdicts, Map<Path, IOException> failures) {
+    }
+
+    public ScanForVirusService(ClamdClient clamdClient) {
+        ScanForVirusService.clamdClient = clamdClient;
+    }
+
 >>>>>>> clean-feature-branch
     /**
      * Scans a file for viruses using ClamAV's clamscan tool.
@@ -70,6 +110,20 @@ public class ScanForVirusService {
 <<<<<<< HEAD
         ensureClamInstalled();  // sets clamScanPath
 =======
+        // Prefer the daemon: it already has the signatures loaded
+        ClamdClient daemon = clamdClient;
+        if (daemon != null && daemon.isAvailable() && daemon.accepts(Files.size(filePath))) {
+            try {
+                ClamdClient.Result result = daemon.scan(filePath);
+                if (result.infected()) {
+                    log.warn("VIRUS DETECTED in: {} ({})", filePath.getFileName(), result.signature());
+                }
+                return result.infected();
+            } catch (IOException e) {
+                log.debug("clamd scan of {} failed ({}); retrying with clamscan.", filePath.getFileName(), e.getMessage());
+            }
+        }
+
         // Ensure ClamAV is installed and get the path
         ensureClamInstalled();
         Path clamScanPath = getClamScanPath();
@@ -81,15 +135,12 @@ public class ScanForVirusService {
         log.debug("Using ClamAV at: {}", clamScanPath);
 >>>>>>> clean-feature-branch
 
-        ProcessBuilder pb = new ProcessBuilder(
+        List<String> command = List.of(
                 clamScanPath.toString(),
                 "--infected",
                 "--no-summary",
                 filePath.toString()
         );
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
 
 <<<<<<< HEAD
         // Read and print scan output
@@ -97,21 +148,15 @@ public class ScanForVirusService {
         // Read and capture scan output
         StringBuilder output = new StringBuilder();
 >>>>>>> clean-feature-branch
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream()))) {
-
-            String line;
-            while ((line = reader.readLine()) != null) {
+        int exitCode = ExternalProcessRunner.shared().run(ExternalProcessRunner.Kind.CLAMSCAN, command,
+                Charset.defaultCharset(), line -> {
 <<<<<<< HEAD
                 System.out.println(line);
 =======
                 output.append(line).append("\n");
                 log.debug("ClamAV: {}", line);
 >>>>>>> clean-feature-branch
-            }
-        }
-
-        int exitCode = process.waitFor();
+        });
 
 <<<<<<< HEAD
         if (exitCode == 0) {
@@ -142,5 +187,212 @@ public class ScanForVirusService {
             return false; // Treat as not infected if scan had errors
         }
     }
+
+    /**
+     * Returns true if files are currently scanned by the clamd daemon, so batching them gains nothing.
+     */
+    public static boolean isDaemonAvailable() {
+        ClamdClient daemon = clamdClient;
+        return daemon != null && daemon.isAvailable();
+    }
+
+    /**
+     * Scans several files at once. Files go to clamd one by one when the daemon is available; all
+     * others are scanned by a single clamscan --file-list run, so the signature database is loaded
+     * once for the whole batch instead of once per file.
+     *
+     * @param filePaths Files to scan
+     * @return Verdict per file. Files that could not be scanned (unreadable, vanished, scanner error,
+     *         timeout) have no verdict.
+     * @throws IOException if clamscan cannot be started
+     * @throws InterruptedException if the thread is interrupted while waiting for clamscan
+     */
+    public static BatchScan scanFilesWithClam(List<Path> filePaths) throws IOException, InterruptedException {
+        Map<Path, ScanVerdict> verdicts = new HashMap<>();
+        Map<Path, IOException> failures = new HashMap<>();
+        List<Path> remaining = new ArrayList<>();
+        ClamdClient daemon = clamdClient;
+        boolean useDaemon = daemon != null && daemon.isAvailable();
+        for (Path filePath : filePaths) {
+            if (useDaemon) {
+                try {
+                    if (daemon.accepts(Files.size(filePath))) {
+                        ClamdClient.Result result = daemon.scan(filePath);
+                        verdicts.put(filePath, new ScanVerdict(result.infected(), result.signature(), "clamd"));
+                        continue;
+                    }
+                } catch (IOException e) {
+                    log.debug("clamd scan of {} failed ({}); retrying with clamscan.", filePath.getFileName(), e.getMessage());
+                }
+            }
+            remaining.add(filePath);
+        }
+        if (!remaining.isEmpty()) {
+            scanBatchWithClamscan(remaining, verdicts, failures);
+        }
+        for (Map.Entry<Path, ScanVerdict> entry : verdicts.entrySet()) {
+            if (entry.getValue().infected()) {
+                log.warn("VIRUS DETECTED in: {} ({})", entry.getKey().getFileName(), entry.getValue().signature());
+            }
+        }
+        return new BatchScan(verdicts, failures);
+    }
+
+    /**
+     * Returns the engine and signature database version, e.g. "1.2.1/27150", as reported by clamd
+     * (the database it has loaded) or clamscan --version. Cached for an hour, since freshclam updates the database at most a few
+     * times a day.
+     *
+     * @return The version, or null if ClamAV is not available.
+     */
+    public static String getSignatureVersion() {
+        if (signatureVersion != null && System.currentTimeMillis() - signatureVersionReadMillis < SIGNATURE_VERSION_TTL_MILLIS) {
+            return signatureVersion;
+        }
+        synchronized (ScanForVirusService.class) {
+            if (signatureVersion == null || System.currentTimeMillis() - signatureVersionReadMillis >= SIGNATURE_VERSION_TTL_MILLIS) {
+                signatureVersion = readSignatureVersion();
+                signatureVersionReadMillis = System.currentTimeMillis();
+            }
+            return signatureVersion;
+        }
+    }
+
+    // Output looks like "ClamAV 1.2.1/27150/Tue Jan  9 09:36:45 2024"; the date is dropped.
+    private static String readSignatureVersion() {
+        ClamdClient daemon = clamdClient;
+        if (daemon != null && daemon.isAvailable()) {
+            try {
+                String version = parseVersion(daemon.version());
+                if (version != null) {
+                    return version;
+                }
+            } catch (IOException e) {
+                log.debug("Could not read clamd version: {}", e.getMessage());
+            }
+        }
+        try {
+            ensureClamInstalled();
+            Path clamScanPath = getClamScanPath();
+            if (clamScanPath == null || !Files.exists(clamScanPath)) {
+                return null;
+            }
+            List<String> lines = new ArrayList<>();
+            ExternalProcessRunner.shared().run(ExternalProcessRunner.Kind.CLAM_VERSION,
+                    List.of(clamScanPath.toString(), "--version"), Charset.defaultCharset(), lines::add);
+            return lines.isEmpty() ? null : parseVersion(lines.get(0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.debug("Could not read ClamAV version: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Runs one clamscan over all files, adding to verdicts and failures; its output has one
+     * "<path>: OK", "<path>: <signature> FOUND" or "<path>: <reason> ERROR" line per file, in list order.
+     * If clamscan hangs, the files it answered keep their verdicts, the file it was working on is
+     * recorded as timed out, and the files after it are scanned by a new run.
+     */
+    private static void scanBatchWithClamscan(List<Path> filePaths, Map<Path, ScanVerdict> verdicts,
+                                              Map<Path, IOException> failures) throws IOException, InterruptedException {
+        ensureClamInstalled();
+        Path clamScanPath = getClamScanPath();
+        if (clamScanPath == null || !Files.exists(clamScanPath)) {
+            throw new IllegalStateException("ClamAV executable not found. Please install ClamAV manually.");
+        }
+
+        Map<String, Path> byName = new HashMap<>();
+        List<String> listed = new ArrayList<>();
+        for (Path filePath : filePaths) {
+            String name = filePath.toString();
+            if (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+                // A line break would split the entry in the file list; scan it on its own.
+                try {
+                    verdicts.put(filePath, new ScanVerdict(scanFileWithClam(filePath), null, "clamscan"));
+                } catch (IOException e) {
+                    log.warn("ClamAV scan failed for {}: {}", filePath.getFileName(), e.getMessage());
+                    failures.put(filePath, e);
+                }
+                continue;
+            }
+            byName.put(name, filePath);
+            listed.add(name);
+        }
+        if (listed.isEmpty()) {
+            return;
+        }
+
+        // clamscan reads the list and prints paths in the platform's file name encoding.
+        Charset charset = Charset.forName(System.getProperty("sun.jnu.encoding", StandardCharsets.UTF_8.name()));
+        Path fileList = Files.createTempFile("clamscan-", ".lst");
+        Set<Path> answered = new HashSet<>();
+        String[] lastMessage = new String[1];
+        int exitCode;
+        try {
+            Files.write(fileList, listed, charset);
+            List<String> command = List.of(
+                    clamScanPath.toString(),
+                    "--no-summary",
+                    "--file-list=" + fileList
+            );
+            exitCode = ExternalProcessRunner.shared().run(ExternalProcessRunner.Kind.CLAMSCAN, command, charset, line -> {
+                int separator = line.lastIndexOf(": ");
+                Path filePath = separator > 0 ? byName.get(line.substring(0, separator)) : null;
+                if (filePath == null) {
+                    log.debug("ClamAV: {}", line);
+                    lastMessage[0] = line;
+                    return;
+                }
+                answered.add(filePath);
+                String result = line.substring(separator + 2);
+                if (result.equals("OK")) {
+                    verdicts.put(filePath, new ScanVerdict(false, null, "clamscan"));
+                } else if (result.endsWith(" FOUND")) {
+                    String signature = result.substring(0, result.length() - " FOUND".length());
+                    verdicts.put(filePath, new ScanVerdict(true, signature, "clamscan"));
+                } else {
+                    log.warn("ClamAV could not scan {}: {}", filePath.getFileName(), result);
+                }
+            });
+        } catch (ExternalProcessRunner.ProcessTimeoutException e) {
+            if (answered.isEmpty()) {
+                throw e; // Stuck before the first file (e.g. loading signatures); nothing to single out.
+            }
+            List<Path> unanswered = listed.stream().map(byName::get).filter(path -> !answered.contains(path)).toList();
+            if (!unanswered.isEmpty()) {
+                log.warn("ClamAV hung on {}; scanning the {} files after it again.",
+                        unanswered.get(0).getFileName(), unanswered.size() - 1);
+                failures.put(unanswered.get(0), e);
+                if (unanswered.size() > 1) {
+                    scanBatchWithClamscan(unanswered.subList(1, unanswered.size()), verdicts, failures);
+                }
+            }
+            return;
+        } finally {
+            Files.deleteIfExists(fileList);
+        }
+
+        if (exitCode > 1 && answered.isEmpty()) {
+            // Nothing was scanned at all (e.g. the signature database could not be loaded).
+            throw new IOException("clamscan exited with code " + exitCode + (lastMessage[0] != null ? ": " + lastMessage[0] : ""));
+        }
+        if (exitCode > 1) {
+            log.warn("ClamAV batch scan of {} files finished with exit code {}; {} files answered.",
+                    listed.size(), exitCode, answered.size());
+        } else {
+            log.debug("ClamAV batch scan of {} files finished; {} files answered.", listed.size(), answered.size());
+        }
+    }
+
+    private static String parseVersion(String line) {
+        if (line == null || !line.startsWith("ClamAV ")) {
+            return null;
+        }
+        String[] parts = line.substring("ClamAV ".length()).trim().split("/");
+        return parts.length >= 2 ? parts[0] + "/" + parts[1] : parts[0];
+    }
 }
 >>>>>>> clean-feature-branch
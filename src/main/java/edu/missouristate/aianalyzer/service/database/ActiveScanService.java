@@ -1,9 +1,11 @@
 package edu.missouristate.aianalyzer.service.database;
 
+import edu.missouristate.aianalyzer.model.FileInterpretation;
 import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
-import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -12,9 +14,10 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
  This will be the "Producer" which finds files on disk and adds them to the scan_queue table for processing
@@ -24,160 +27,424 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class ActiveScanService {
 
-    private final ScanQueueItemRepository scanQueueItemRepository;
+    private final ScanQueueBatchWriter scanQueueBatchWriter;
+    private final FileManifest fileManifest;
+    private final FileRecordRepository fileRecordRepository;
+    private final ScanRuleService scanRuleService;
+    private final IoGovernor ioGovernor;
+    private final ScanFocusService scanFocusService;
+    private final ScanRoots scanRoots;
 
-    // --- Configuration (from old FileScanner and PassiveScanner) ---
-    private static final Set<String> EXCLUDED_DIRS = Set.of("$recycle.bin", "node_modules", ".git");
-    private static final Set<String> ALLOWED_EXTENSIONS = Set.of(
-            "jpg", "jpeg", "png", "gif", "bmp", "tif", "tiff", "webp", "heic", // Images
-            "mp4", "mov", "mkv", "avi", "wmv", // Videos
-            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "txt", "md", "csv", "json" // Docs
-    );
+    // Number of walker threads for the active scan (0 = one per available processor).
+    @Value("${scan.walker.parallelism:0}")
+    private int walkerParallelism;
+
+    // When enabled, files whose size/mtime match the manifest are not enqueued again.
+    @Value("${scan.incremental:true}")
+    private boolean incrementalScan;
+
+    // Quiet period before a changed file seen by the passive watcher is enqueued.
+    @Value("${scan.watcher.settle-ms:2000}")
+    private long watcherSettleMillis;
+
+    // Polling fallback for subtrees the WatchService cannot cover.
+    @Value("${scan.watcher.poll-interval-ms:30000}")
+    private long pollIntervalMillis;
+
+    // I/O budget of the polling fallback: directory stats plus listings per cycle.
+    @Value("${scan.watcher.poll-max-dirs-per-cycle:2000}")
+    private int pollMaxDirsPerCycle;
+
+    // File system types that never deliver watch events and are always polled.
+    @Value("${scan.watcher.poll-fs-types:nfs,nfs4,cifs,smb,smbfs,smb2,smb3,fuse.sshfs,9p,afpfs,webdav}")
+    private Set<String> pollFileSystemTypes;
+
+    // Passive watcher state (created by startPassiveWatcher).
+    private WatchService watchService;
+    private ChangeDebouncer changeDebouncer;
+    private ExecutorService watcherRescanExecutor;
+    private PollingDirectoryWatcher pollingWatcher;
+    private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+    private volatile boolean watchLimitReached = false;
 
     /**
      * Performs a high-speed, multi-threaded scan of the given root directories.
-     * This is the replacement for the old ActiveScanner.
+     * Directory listings are distributed over a work-stealing pool, so even a single
+     * very large root is enumerated by all walker threads.
      *
      * @param roots A list of starting directories to scan.
      */
     public void performActiveScan(List<Path> roots) {
+        performActiveScan(roots, ScanJobControl.unmanaged());
+    }
+
+    /**
+     * Same as performActiveScan(roots), but lets the caller pause, cancel and checkpoint the walk.
+     * Subtrees the control reports as already completed are skipped without being listed.
+     * If the walk fails, the error is recorded on the control, so the caller can tell an incomplete
+     * walk from a complete one.
+     *
+     * @param roots   A list of starting directories to scan.
+     * @param control Job state shared with the caller (see InitialScanService).
+     */
+    public void performActiveScan(List<Path> roots, ScanJobControl control) {
         log.info("Starting active scan on roots: {}", roots);
-        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
-        ExecutorService executor = Executors.newFixedThreadPool(threads);
-
-        for (final Path root : roots) {
-            executor.submit(() -> {
-                try {
-                    Files.walkFileTree(root, new SimpleFileVisitor<>() {
-                        @Override
-                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                            String dirName = dir.getFileName().toString().toLowerCase();
-                            if (EXCLUDED_DIRS.contains(dirName)) {
-                                return FileVisitResult.SKIP_SUBTREE;
-                            }
-                            return FileVisitResult.CONTINUE;
-                        }
+        scanRoots.register(roots);
+        long insertedBefore = scanQueueBatchWriter.getInsertedTotal();
+        long mergedBefore = scanQueueBatchWriter.getMergedTotal();
+        AtomicLong unchangedSkipped = new AtomicLong();
 
-                        @Override
-                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                            if (attrs.isRegularFile() && isFileTypeAllowed(file)) {
-                                enqueueFileTask(file, "file");
-                            }
-                            return FileVisitResult.CONTINUE;
-                        }
+        ParallelFileWalker walker = new ParallelFileWalker(walkerParallelism);
+        try {
+            walker.walk(roots, new ParallelFileWalker.Visitor() {
+                @Override
+                public boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (isDirectoryExcluded(dir) || !control.shouldEnter(dir)) {
+                        return false;
+                    }
+                    ioGovernor.acquireDirectories(1);
+                    return true;
+                }
 
-                        @Override
-                        public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                            log.warn("Failed to visit file: {}", file, exc);
-                            return FileVisitResult.CONTINUE;
-                        }
-                    });
-                } catch (IOException e) {
-                    log.error("Error during active scan of root: {}", root, e);
+                @Override
+                public void leaveDirectory(Path dir) {
+                    control.directoryCompleted(dir);
+                }
+
+                @Override
+                public void visitFile(Path file, BasicFileAttributes attrs) {
+                    control.fileSeen();
+                    if (!isFileIncluded(file, attrs)) {
+                        return;
+                    }
+                    boolean unchanged = isUnchangedSinceLastScan(file, attrs);
+                    if (incrementalScan && unchanged) {
+                        unchangedSkipped.incrementAndGet();
+                        return;
+                    }
+                    enqueueFileTask(file, unchanged ? ScanQueueItem.PRIORITY_BACKGROUND : ScanQueueItem.PRIORITY_NEW);
                 }
             });
+        } catch (Exception e) {
+            log.error("Error during active scan of roots: {}", roots, e);
+            control.failed(e);
+        } finally {
+            walker.shutdown();
         }
 
-        try {
-            executor.shutdown();
-            executor.awaitTermination(1, TimeUnit.HOURS); // Wait for scan to complete
-        } catch (InterruptedException e) {
-            log.error("Active scan was interrupted.", e);
-            Thread.currentThread().interrupt();
-        }
-        log.info("Active scan finished.");
+        // Push whatever is still buffered so the consumer sees the complete scan.
+        scanQueueBatchWriter.flush();
+        log.info("Active scan finished. Queue rows inserted: {}, merged into existing entries: {}, unchanged files skipped: {}.",
+                scanQueueBatchWriter.getInsertedTotal() - insertedBefore,
+                scanQueueBatchWriter.getMergedTotal() - mergedBefore,
+                unchangedSkipped.get());
     }
 
 
     /**
      * Starts a background thread that continuously watches directories for real-time changes.
      * This is the replacement for the old PassiveScanner.
+     *
+     * Events are coalesced per path (see ChangeDebouncer), so a file is only enqueued once it
+     * has been quiet for the settle window. Folders created after startup are registered as they
+     * appear, an OVERFLOW triggers a rescan of the affected directory, and deletions mark the
+     * file records as missing without going through the scan queue.
+     *
+     * Subtrees that cannot be watched (network file systems, inotify watch limit reached,
+     * registration failures) are handed to a PollingDirectoryWatcher instead, and if the
+     * watcher thread dies, all roots fall back to polling.
      */
     public void startPassiveWatcher(List<Path> roots) {
         log.info("Starting passive watcher on roots: {}", roots);
-        try {
-            WatchService watchService = FileSystems.getDefault().newWatchService();
-            for (Path root : roots) {
-                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+        scanRoots.register(roots);
+        changeDebouncer = new ChangeDebouncer(watcherSettleMillis,
+                file -> enqueueFileTask(file, ScanQueueItem.PRIORITY_NEW, true));
+        watcherRescanExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Passive-Watcher-Rescan");
+            t.setDaemon(true);
+            return t;
+        });
+        pollingWatcher = new PollingDirectoryWatcher(pollIntervalMillis, pollMaxDirsPerCycle,
+                dir -> !isDirectoryExcluded(dir),
+                new PollingDirectoryWatcher.Listener() {
                     @Override
-                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                        String dirName = dir.getFileName().toString().toLowerCase();
-                        if (EXCLUDED_DIRS.contains(dirName)) {
-                            return FileVisitResult.SKIP_SUBTREE;
+                    public void fileChanged(Path file, BasicFileAttributes attrs) {
+                        if (isFileIncluded(file, attrs) && !(incrementalScan && isUnchangedSinceLastScan(file, attrs))) {
+                            changeDebouncer.touch(file);
                         }
-                        dir.register(watchService,
-                                StandardWatchEventKinds.ENTRY_CREATE,
-                                StandardWatchEventKinds.ENTRY_MODIFY,
-                                StandardWatchEventKinds.ENTRY_DELETE);
-                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public void pathDeleted(Path path) {
+                        markDeleted(path);
                     }
                 });
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            log.warn("WatchService unavailable ({}); all roots will be polled.", e.getMessage());
+        }
+
+        for (Path root : roots) {
+            if (watchService == null || isPollOnlyFileSystem(root)) {
+                pollingWatcher.addSubtree(root, false);
+            } else {
+                registerTree(root, false);
             }
+        }
+        log.info("Passive watcher coverage: {} directories watched by events, {} subtree(s) handed to polling.",
+                watchedDirectories.size(), pollingWatcher.subtreeCount());
+
+        if (watchService == null) {
+            return;
+        }
 
-            // Start a new thread to handle watch events
-            Thread watcherThread = new Thread(() -> {
-                WatchKey key;
-                try {
-                    while ((key = watchService.take()) != null && !Thread.currentThread().isInterrupted()) {
-                        Path dir = (Path) key.watchable();
-                        for (WatchEvent<?> event : key.pollEvents()) {
-                            Path filePath = dir.resolve((Path) event.context());
-                            if (isFileTypeAllowed(filePath)) {
-                                log.debug("Passive watcher detected change: {} on {}", event.kind(), filePath);
-                                enqueueFileTask(filePath, "file");
-                            }
+        // Start a new thread to handle watch events
+        Thread watcherThread = new Thread(() -> {
+            WatchKey key;
+            try {
+                while ((key = watchService.take()) != null && !Thread.currentThread().isInterrupted()) {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        try {
+                            handleWatchEvent(dir, event);
+                        } catch (Exception e) {
+                            log.warn("Failed to handle {} event in {}", event.kind(), dir, e);
                         }
-                        key.reset();
                     }
-                } catch (InterruptedException e) {
-                    log.info("Passive watcher thread interrupted.");
-                    Thread.currentThread().interrupt();
-                } catch (Exception e) {
-                    log.error("Error in passive watcher", e);
+                    if (!key.reset()) {
+                        watchedDirectories.remove(dir);
+                        log.debug("Stopped watching {} (directory no longer accessible).", dir);
+                    }
                 }
-            }, "Passive-File-Watcher");
+            } catch (InterruptedException e) {
+                log.info("Passive watcher thread interrupted.");
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Passive watcher stopped unexpectedly; falling back to polling for all roots.", e);
+                roots.forEach(root -> pollingWatcher.addSubtree(root, false));
+            }
+        }, "Passive-File-Watcher");
 
-            watcherThread.setDaemon(true); // This allows the app to exit even if this thread is running
-            watcherThread.start();
+        watcherThread.setDaemon(true); // This allows the app to exit even if this thread is running
+        watcherThread.start();
+    }
 
-        } catch (IOException e) {
-            log.error("Failed to start passive watcher.", e);
+    /**
+     * Dispatches a single watch event. Runs on the watcher thread, so anything that
+     * has to walk the disk is handed to the rescan executor.
+     */
+    private void handleWatchEvent(Path dir, WatchEvent<?> event) {
+        WatchEvent.Kind<?> kind = event.kind();
+
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            // Events were dropped, so we no longer know what changed below this directory.
+            log.warn("Passive watcher event overflow in {}; rescanning the directory.", dir);
+            watcherRescanExecutor.submit(() -> registerTree(dir, true));
+            return;
+        }
+
+        Path path = dir.resolve((Path) event.context());
+
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            markDeleted(path);
+            return;
+        }
+
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE && !isDirectoryExcluded(path)) {
+                // New or moved-in folder: watch it and pick up files copied in before it was registered.
+                watcherRescanExecutor.submit(() -> registerTree(path, true));
+            }
+            return;
+        }
+
+        if (scanRuleService.current().isFileIncluded(path, -1)) {
+            log.debug("Passive watcher detected change: {} on {}", kind, path);
+            changeDebouncer.touch(path);
         }
     }
 
+    /**
+     * Registers every non-excluded directory below start with the watch service.
+     * Registering an already watched directory is a no-op, so this doubles as the overflow rescan.
+     *
+     * @param pickUpFiles If true, new or changed files found during the walk are passed to the debouncer.
+     */
+    private void registerTree(Path start, boolean pickUpFiles) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (isDirectoryExcluded(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    if (!watchLimitReached) {
+                        try {
+                            dir.register(watchService,
+                                    StandardWatchEventKinds.ENTRY_CREATE,
+                                    StandardWatchEventKinds.ENTRY_MODIFY,
+                                    StandardWatchEventKinds.ENTRY_DELETE);
+                            watchedDirectories.add(dir);
+                            return FileVisitResult.CONTINUE;
+                        } catch (IOException e) {
+                            onRegisterFailed(dir, e);
+                        }
+                    }
+                    // Not watchable: poll this subtree instead of giving up on it.
+                    pollingWatcher.addSubtree(dir, pickUpFiles);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (pickUpFiles && attrs.isRegularFile() && isFileIncluded(file, attrs)
+                            && !(incrementalScan && isUnchangedSinceLastScan(file, attrs))) {
+                        changeDebouncer.touch(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
 
-    // --- Helper Methods ---
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    log.debug("Passive watcher could not visit {}: {}", file, exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.error("Failed to register directories for watching under {}", start, e);
+        }
+    }
 
     /**
-     * Creates a new ScanQueueItem and saves it to the database.
-     * This is the modern replacement for the manual SQL inserts.
+     * Once the OS watch limit is hit (e.g. fs.inotify.max_user_watches), every further register
+     * call would fail too, so the remaining directories go straight to polling.
      */
-    private void enqueueFileTask(Path file, String kind) {
+    private void onRegisterFailed(Path dir, IOException e) {
+        String message = String.valueOf(e.getMessage()).toLowerCase();
+        if (message.contains("limit")) {
+            watchLimitReached = true;
+            log.warn("Watch limit reached at {} directories ({}). Remaining directories will be polled; "
+                    + "raise fs.inotify.max_user_watches to restore event-based coverage.",
+                    watchedDirectories.size(), e.getMessage());
+        } else {
+            log.warn("Could not watch {} ({}); polling this subtree instead.", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * Network file systems accept watch registrations but never deliver events for remote changes.
+     */
+    private boolean isPollOnlyFileSystem(Path root) {
         try {
-            ScanQueueItem item = new ScanQueueItem();
-            item.setPath(file.toAbsolutePath().toString());
-            item.setKind(ScanQueueItem.Kind.ACTIVE_AI);
-            item.setNotBeforeUnix(Instant.now().getEpochSecond());
-            item.setAttempts(0);
-            scanQueueItemRepository.save(item);
-        } catch (Exception e) {
-            // This might happen if there's a unique constraint violation, which is okay.
-            log.trace("Could not enqueue file task for {}: {}", file, e.getMessage());
+            String type = Files.getFileStore(root).type().toLowerCase();
+            if (pollFileSystemTypes.contains(type)) {
+                log.info("Root {} is on a {} file system; it will be polled.", root, type);
+                return true;
+            }
+        } catch (IOException e) {
+            log.debug("Could not determine the file system of {}: {}", root, e.getMessage());
         }
+        return false;
     }
 
     /**
-     * Checks if a file's extension is in our list of allowed types.
+     * Marks the deleted path (and, for a folder, everything that was below it) as missing.
+     * The scan queue is not involved; pending debounced changes for the path are dropped.
      */
-    private boolean isFileTypeAllowed(Path file) {
-        String fileName = file.getFileName().toString();
-        int dotIndex = fileName.lastIndexOf('.');
-        if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
-            String extension = fileName.substring(dotIndex + 1).toLowerCase();
-            return ALLOWED_EXTENSIONS.contains(extension);
+    private void markDeleted(Path path) {
+        changeDebouncer.cancelTree(path);
+
+        String pathStr = path.toAbsolutePath().toString();
+        String prefix = escapeLike(pathStr + path.getFileSystem().getSeparator()) + "%";
+        List<String> paths = fileRecordRepository.findPathsAtOrBelow(pathStr, prefix);
+        for (int i = 0; i < paths.size(); i += 500) {
+            fileRecordRepository.markMissing(paths.subList(i, Math.min(paths.size(), i + 500)));
+        }
+        paths.forEach(fileManifest::remove);
+
+        if (!paths.isEmpty()) {
+            log.debug("Marked {} record(s) missing after delete of {}", paths.size(), path);
         }
-        // Allow files with no extension (e.g., text files)
-        return dotIndex == -1;
+    }
+
+
+    // --- Helper Methods ---
+
+    /**
+     * Creates a new ScanQueueItem and hands it to the batch writer.
+     * Duplicates are merged by the writer's upsert, so no exception handling is needed here.
+     *
+     * @param priority PRIORITY_NEW or PRIORITY_BACKGROUND; raised for files the user is looking at
+     *                 and for file types that commonly carry malware.
+     */
+    private void enqueueFileTask(Path file, int priority) {
+        enqueueFileTask(file, priority, false);
+    }
+
+    /**
+     * @param immediate Write the item out now instead of with the next batch, so the consumers are
+     *                  woken right away. Used for watcher events, which arrive one at a time.
+     */
+    private void enqueueFileTask(Path file, int priority, boolean immediate) {
+        String path = file.toAbsolutePath().toString();
+        if (scanFocusService.isFocused(file)) {
+            priority = ScanQueueItem.PRIORITY_USER_FOCUS;
+        } else if (FileInterpretation.VIRUS_FILE_TYPES.contains(extensionOf(path))) {
+            priority = Math.max(priority, ScanQueueItem.PRIORITY_VIRUS_TYPE);
+        }
+
+        ScanQueueItem item = new ScanQueueItem();
+        item.setPath(path);
+        item.setKind(ScanQueueItem.Kind.ACTIVE_AI);
+        item.setNotBeforeUnix(Instant.now().getEpochSecond());
+        item.setAttempts(0);
+        item.setPriority(priority);
+        item.setRoot(scanRoots.rootOf(path));
+        if (immediate) {
+            scanQueueBatchWriter.enqueueNow(item);
+        } else {
+            scanQueueBatchWriter.enqueue(item);
+        }
+    }
+
+    private static String extensionOf(String path) {
+        int dotIndex = path.lastIndexOf('.');
+        int separatorIndex = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return dotIndex > separatorIndex ? path.substring(dotIndex + 1).toLowerCase() : "";
+    }
+
+    /**
+     * Escapes LIKE wildcards so a path can be used as a literal prefix (escape character is '!').
+     */
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * Checks the manifest to see whether the file was already processed with this exact size and mtime.
+     */
+    private boolean isUnchangedSinceLastScan(Path file, BasicFileAttributes attrs) {
+        return fileManifest.isUnchanged(
+                file.toAbsolutePath().toString(),
+                attrs.size(),
+                attrs.lastModifiedTime().toMillis() / 1000,
+                attrs.fileKey());
+    }
+
+    /**
+     * Checks the scan rules before a directory is listed, so excluded subtrees are never read.
+     */
+    private boolean isDirectoryExcluded(Path dir) {
+        return scanRuleService.current().isDirectoryExcluded(dir);
+    }
+
+    /**
+     * Checks the file's name, extension and size against the scan rules.
+     */
+    private boolean isFileIncluded(Path file, BasicFileAttributes attrs) {
+        return scanRuleService.current().isFileIncluded(file, attrs.size());
     }
 
 }
@@ -0,0 +1,126 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces bursts of file system events into a single notification per path.
+ *
+ * A large file copy produces dozens of ENTRY_MODIFY events. Each event only pushes the path's
+ * deadline back; once a path has been quiet for the settle window and its size/mtime stopped
+ * changing, the callback is invoked exactly once.
+ */
+@Slf4j
+public class ChangeDebouncer {
+
+    private final long settleMillis;
+    private final Consumer<Path> onSettled;
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    /** Deadline plus the size/mtime observed when the path was last touched. */
+    private record Pending(long deadlineMillis, long size, long mtimeMillis) {}
+
+    /**
+     * @param settleMillis Quiet period required before a path is reported.
+     * @param onSettled    Callback invoked (on the debouncer thread) for each settled path.
+     */
+    public ChangeDebouncer(long settleMillis, Consumer<Path> onSettled) {
+        this.settleMillis = settleMillis;
+        this.onSettled = onSettled;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Passive-Watcher-Debounce");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = Math.max(100, settleMillis / 2);
+        timer.scheduleWithFixedDelay(this::releaseSettled, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records a change event for the path and (re)starts its settle window.
+     */
+    public void touch(Path file) {
+        BasicFileAttributes attrs = stat(file);
+        long size = attrs == null ? -1 : attrs.size();
+        long mtime = attrs == null ? -1 : attrs.lastModifiedTime().toMillis();
+        pending.put(file, new Pending(System.currentTimeMillis() + settleMillis, size, mtime));
+    }
+
+    /**
+     * Drops any pending notification for the path (e.g. because it was deleted).
+     */
+    public void cancel(Path file) {
+        pending.remove(file);
+    }
+
+    /**
+     * Drops pending notifications for everything at or below the directory.
+     */
+    public void cancelTree(Path dir) {
+        pending.keySet().removeIf(p -> p.startsWith(dir));
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    // --- Helper Methods ---
+
+    private void releaseSettled() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, Pending> entry : pending.entrySet()) {
+            Pending p = entry.getValue();
+            if (p.deadlineMillis() > now) continue;
+
+            Path file = entry.getKey();
+            BasicFileAttributes attrs = stat(file);
+            if (attrs == null) {
+                // Gone again before it settled (temp files, moves); the delete event handles the rest.
+                pending.remove(file, p);
+                continue;
+            }
+            long size = attrs.size();
+            long mtime = attrs.lastModifiedTime().toMillis();
+            if (size != p.size() || mtime != p.mtimeMillis()) {
+                // Still being written even though no event arrived; wait another window.
+                pending.replace(file, p, new Pending(now + settleMillis, size, mtime));
+                continue;
+            }
+            if (pending.remove(file, p)) {
+                try {
+                    onSettled.accept(file);
+                } catch (Exception e) {
+                    log.warn("Failed to handle settled change for {}", file, e);
+                }
+            }
+        }
+    }
+
+    private static BasicFileAttributes stat(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.debug("Could not stat {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes whole files for duplicate detection and the label cache.
+ *
+ * The default hash is a tree of XXH64 hashes: the file is cut into 4 MB chunks, each chunk is hashed
+ * on its own, and the root is the XXH64 of all chunk hashes followed by the file length. Chunks of
+ * large files are hashed in parallel; the result is the same either way. XXH64 runs at memory speed
+ * but is not collision resistant, so SHA-256 is only computed where an identical-content claim has
+ * consequences (reusing another file's label, see LabelCacheService).
+ *
+ * Files are read through a FileChannel into direct buffers with positional reads, so parallel chunk
+ * reads share one channel without copying through the Java heap. Memory mapping is avoided on purpose:
+ * on Windows a mapped file cannot be deleted or quarantined until the mapping is garbage collected.
+ * All reads take tokens from the IoGovernor.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContentHashService {
+
+    /** Value of FileRecord.contentHashAlgo for hashes produced by fastHash. */
+    public static final String FAST_ALGORITHM = "xxh64-tree-4m";
+
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final IoGovernor ioGovernor;
+
+    // Files at least this large have their chunks hashed in parallel.
+    @Value("${hash.parallel-threshold-bytes:268435456}")
+    private long parallelThresholdBytes;
+
+    // Threads used for parallel chunk hashing (0 = half the cores).
+    @Value("${hash.parallelism:0}")
+    private int parallelism;
+
+    // One read buffer per thread; allocated once, since direct buffers are expensive to create.
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+
+    private ExecutorService chunkPool;
+
+    /**
+     * Hashes the whole file with the XXH64 tree hash.
+     * @return 16 hex digits.
+     */
+    public String fastHash(Path path) throws IOException {
+        ioGovernor.acquireFiles(1);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            long[] leaves = new long[chunks];
+
+            if (size >= parallelThresholdBytes && chunks > 1) {
+                List<Callable<Long>> tasks = new ArrayList<>(chunks);
+                for (int i = 0; i < chunks; i++) {
+                    long position = (long) i * CHUNK_SIZE;
+                    tasks.add(() -> hashChunk(channel, position, size));
+                }
+                try {
+                    List<Future<Long>> results = pool().invokeAll(tasks);
+                    for (int i = 0; i < chunks; i++) {
+                        leaves[i] = results.get(i).get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while hashing " + path, e);
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            } else {
+                for (int i = 0; i < chunks; i++) {
+                    leaves[i] = hashChunk(channel, (long) i * CHUNK_SIZE, size);
+                }
+            }
+
+            ByteBuffer root = ByteBuffer.allocate(leaves.length * 8 + 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (long leaf : leaves) {
+                root.putLong(leaf);
+            }
+            root.putLong(size).flip();
+            return String.format("%016x", xxh64(root, 0));
+        }
+    }
+
+    /**
+     * XXH64 of the first and last edgeBytes of the file and its length; the whole file if it is no larger
+     * than 2 * edgeBytes. Cheap way to tell apart most same-sized files without reading them completely.
+     * @return 16 hex digits; only comparable between calls with the same edgeBytes.
+     */
+    public String partialHash(Path path, int edgeBytes) throws IOException {
+        ioGovernor.acquireFiles(1);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = BUFFERS.get();
+            buffer.clear();
+            int head = (int) Math.min(size, Math.min(CHUNK_SIZE / 2 - 8, edgeBytes));
+            readFully(channel, buffer, 0, head);
+            long tailStart = Math.max(head, size - head);
+            readFully(channel, buffer, tailStart, (int) (size - tailStart));
+            buffer.putLong(size).flip();
+            return String.format("%016x", xxh64(buffer, 0));
+        }
+    }
+
+    /**
+     * SHA-256 of the whole file.
+     * @return 64 hex digits.
+     */
+    public String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required by the Java spec
+        }
+        ioGovernor.acquireFiles(1);
+        ByteBuffer buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                ioGovernor.acquireBytes(read);
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (chunkPool != null) {
+            chunkPool.shutdownNow();
+        }
+    }
+
+    // --- Helper Methods ---
+
+    private synchronized ExecutorService pool() {
+        if (chunkPool == null) {
+            int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            AtomicInteger index = new AtomicInteger();
+            chunkPool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "Hash-Worker-" + index.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return chunkPool;
+    }
+
+    // Reads one chunk with positional reads (safe to run concurrently on the same channel) and hashes it.
+    private long hashChunk(FileChannel channel, long position, long size) throws IOException {
+        int length = (int) Math.min(CHUNK_SIZE, size - position);
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        readFully(channel, buffer, position, length);
+        buffer.flip();
+        return xxh64(buffer, 0);
+    }
+
+    // Appends length bytes starting at the file position to the buffer.
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        int end = buffer.position() + length;
+        buffer.limit(end);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + length - (end - buffer.position()));
+            if (read < 0) {
+                throw new IOException("File shrank while it was being hashed");
+            }
+            ioGovernor.acquireBytes(read);
+        }
+        buffer.limit(buffer.capacity());
+    }
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    /**
+     * XXH64 (https://github.com/Cyan4973/xxHash) of the buffer's remaining bytes, which must be in
+     * little-endian order. Leaves the buffer's position unchanged.
+     */
+    static long xxh64(ByteBuffer buffer, long seed) {
+        int pos = buffer.position();
+        int end = buffer.limit();
+        long h;
+
+        if (end - pos >= 32) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            do {
+                v1 = round(v1, buffer.getLong(pos));
+                v2 = round(v2, buffer.getLong(pos + 8));
+                v3 = round(v3, buffer.getLong(pos + 16));
+                v4 = round(v4, buffer.getLong(pos + 24));
+                pos += 32;
+            } while (pos <= end - 32);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + P5;
+        }
+
+        h += end - buffer.position();
+
+        while (pos + 8 <= end) {
+            h ^= round(0, buffer.getLong(pos));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+            pos += 8;
+        }
+        if (pos + 4 <= end) {
+            h ^= (buffer.getInt(pos) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            pos += 4;
+        }
+        while (pos < end) {
+            h ^= (buffer.get(pos) & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+            pos++;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+}
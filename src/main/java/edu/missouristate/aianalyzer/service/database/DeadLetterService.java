@@ -0,0 +1,273 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import com.google.cloud.BaseServiceException;
+import com.google.genai.errors.ApiException;
+import edu.missouristate.aianalyzer.model.database.ErrorLog;
+import edu.missouristate.aianalyzer.model.database.ScanDeadLetter;
+import edu.missouristate.aianalyzer.model.database.ScanDeadLetter.FailureClass;
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import edu.missouristate.aianalyzer.repository.database.ScanDeadLetterRepository;
+import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
+import edu.missouristate.aianalyzer.service.ai.ExternalProcessRunner.ProcessTimeoutException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.poi.EmptyFileException;
+import org.apache.poi.UnsupportedFileFormatException;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.ZipException;
+
+/**
+ * Retry policy for failed scan queue items, and the dead-letter table for items that are given up on.
+ *
+ * Failures are classified (see ScanDeadLetter.FailureClass). Each class has an attempt limit and an
+ * exponential backoff with jitter, so items that failed together do not all come back at the same
+ * moment. Permanent failures are dead-lettered at once; the others once they run out of attempts.
+ * Every dead letter is also written to the error log, and is resolved there when the user requeues it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeadLetterService {
+
+    private static final String COMPONENT = "scan-queue";
+
+    private final ScanDeadLetterRepository scanDeadLetterRepository;
+    private final ScanQueueItemRepository scanQueueItemRepository;
+    private final ScanQueueBatchWriter scanQueueBatchWriter;
+    private final ErrorLogService errorLogService;
+    private final TransactionTemplate transactionTemplate;
+
+    // Attempts before a transient I/O failure is dead-lettered.
+    @Value("${scan.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    // Attempts before an unreadable (corrupt, encrypted, malformed) file is dead-lettered.
+    @Value("${scan.retry.parse-max-attempts:2}")
+    private int parseMaxAttempts;
+
+    // Attempts before an item that keeps hitting a remote quota is dead-lettered.
+    @Value("${scan.retry.quota-max-attempts:10}")
+    private int quotaMaxAttempts;
+
+    // Attempts before a file that keeps making an external tool hang is dead-lettered.
+    @Value("${scan.retry.timeout-max-attempts:3}")
+    private int timeoutMaxAttempts;
+
+    // Attempts before an item failing with an unrecognized error is dead-lettered.
+    @Value("${scan.retry.unknown-max-attempts:3}")
+    private int unknownMaxAttempts;
+
+    // Backoff before the first retry; doubles with every further attempt.
+    @Value("${scan.retry.base-delay-seconds:60}")
+    private long baseDelaySeconds;
+
+    // Backoff before the first retry after a quota error, since quota windows are long.
+    @Value("${scan.retry.quota-base-delay-seconds:900}")
+    private long quotaBaseDelaySeconds;
+
+    // Backoff before the first retry after a tool timeout; the hang may have been caused by load.
+    @Value("${scan.retry.timeout-base-delay-seconds:1800}")
+    private long timeoutBaseDelaySeconds;
+
+    // Upper bound for any single backoff.
+    @Value("${scan.retry.max-delay-seconds:21600}")
+    private long maxDelaySeconds;
+
+    /**
+     * Dead letters per failure class, for the Metrics view.
+     */
+    public record DeadLetterCounts(long total, Map<FailureClass, Long> byClass) {
+        public static final DeadLetterCounts NONE = new DeadLetterCounts(0, Map.of());
+    }
+
+    /**
+     * Works out what kind of failure an exception represents, looking through its causes.
+     */
+    public FailureClass classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof ApiException api) {
+                return classifyStatus(api.code(), api.code() >= 500);
+            }
+            if (t instanceof BaseServiceException service) {
+                return classifyStatus(service.getCode(), service.isRetryable());
+            }
+            if (t instanceof ProcessTimeoutException) {
+                return FailureClass.TIMEOUT;
+            }
+            if (t instanceof NoSuchFileException || t instanceof AccessDeniedException
+                    || t instanceof FileNotFoundException) {
+                return FailureClass.PERMANENT;
+            }
+            if (t instanceof InvalidPasswordException || t instanceof EmptyFileException
+                    || t instanceof UnsupportedFileFormatException || t instanceof InvalidFormatException
+                    || t instanceof ZipException || t instanceof CharacterCodingException
+                    || t instanceof IIOException) {
+                return FailureClass.PARSE_ERROR;
+            }
+        }
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof IOException || t instanceof DataAccessException) {
+                return FailureClass.TRANSIENT_IO;
+            }
+        }
+        // Not known to be about the file's content, so it is not treated as a parse error.
+        return FailureClass.UNKNOWN;
+    }
+
+    /**
+     * @param attempts Attempts made so far, including the one that just failed.
+     * @return true if the item should be dead-lettered instead of retried.
+     */
+    public boolean isExhausted(FailureClass failure, int attempts) {
+        return switch (failure) {
+            case PERMANENT -> true;
+            case PARSE_ERROR -> attempts >= parseMaxAttempts;
+            case REMOTE_QUOTA -> attempts >= quotaMaxAttempts;
+            case TIMEOUT -> attempts >= timeoutMaxAttempts;
+            case UNKNOWN -> attempts >= unknownMaxAttempts;
+            case TRANSIENT_IO -> attempts >= maxAttempts;
+        };
+    }
+
+    /**
+     * Backoff before the next attempt: base * 2^(attempts - 1), capped, with "equal jitter"
+     * (half fixed, half random) so the delay never collapses to zero.
+     */
+    public long backoffSeconds(FailureClass failure, int attempts) {
+        long base = switch (failure) {
+            case REMOTE_QUOTA -> quotaBaseDelaySeconds;
+            case TIMEOUT -> timeoutBaseDelaySeconds;
+            default -> baseDelaySeconds;
+        };
+        int shift = Math.min(30, Math.max(0, attempts - 1));
+        long delay = Math.min(maxDelaySeconds, base << shift);
+        long half = Math.max(1, delay / 2);
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    /**
+     * Moves a claimed item to the dead-letter table and logs it. If the path was re-enqueued while it
+     * was processed (the file changed), the queue row is left alone so the new version gets its try.
+     */
+    public void deadLetter(ScanQueueItem item, FailureClass failure, int attempts, Throwable error) {
+        boolean moved = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (scanQueueItemRepository.deleteIfUnchanged(item.getId(), item.getRevision()) == 0) {
+                return false;
+            }
+            long now = Instant.now().getEpochSecond();
+            ScanDeadLetter letter = scanDeadLetterRepository.findByPath(item.getPath()).orElseGet(() -> {
+                ScanDeadLetter created = new ScanDeadLetter();
+                created.setPath(item.getPath());
+                created.setFirstFailedUnix(now);
+                return created;
+            });
+            letter.setKind(item.getKind());
+            letter.setPriority(item.getPriority());
+            letter.setRoot(item.getRoot() != null ? item.getRoot() : "");
+            letter.setAttempts(attempts);
+            letter.setFailureClass(failure);
+            letter.setMessage(truncate(String.valueOf(error.getMessage())));
+            letter.setLastFailedUnix(now);
+            scanDeadLetterRepository.save(letter);
+            return true;
+        }));
+        if (!moved) {
+            log.debug("{} changed while it was processed; keeping it queued instead of dead-lettering.", item.getPath());
+            return;
+        }
+        log.warn("Dead-lettered {} after {} attempt(s): {} ({})", item.getPath(), attempts, failure, error.getMessage());
+
+        // Outside the transaction above: the error log is best effort and must not undo the move.
+        try {
+            ErrorLog logged = errorLogService.logError(COMPONENT, item.getPath(), 0, failure.name(),
+                    truncate("Gave up after " + attempts + " attempt(s): " + error.getMessage()), error,
+                    "{\"attempts\":" + attempts + ",\"failureClass\":\"" + failure.name() + "\"}");
+            errorLogService.markDeadLettered(logged.getId());
+            scanDeadLetterRepository.findByPath(item.getPath()).ifPresent(letter -> {
+                letter.setErrorLogId(logged.getId());
+                scanDeadLetterRepository.save(letter);
+            });
+        } catch (Exception e) {
+            log.warn("Could not write error log entry for dead letter {}", item.getPath(), e);
+        }
+    }
+
+    /**
+     * Puts every dead letter back on the scan queue with a fresh attempt count, e.g. after the user
+     * fixed an API key or installed a missing tool. Resolves the matching error log entries.
+     * @return The number of items requeued.
+     */
+    public int requeueAll() {
+        int requeued = 0;
+        List<ScanDeadLetter> page;
+        while (!(page = scanDeadLetterRepository.findAllByOrderByIdAsc(PageRequest.of(0, 500))).isEmpty()) {
+            long now = Instant.now().getEpochSecond();
+            for (ScanDeadLetter letter : page) {
+                ScanQueueItem item = new ScanQueueItem();
+                item.setPath(letter.getPath());
+                item.setKind(letter.getKind());
+                item.setNotBeforeUnix(now);
+                item.setAttempts(0);
+                item.setPriority(letter.getPriority());
+                item.setRoot(letter.getRoot());
+                scanQueueBatchWriter.enqueue(item);
+            }
+            scanQueueBatchWriter.flush();
+            scanDeadLetterRepository.deleteAllInBatch(page);
+            for (ScanDeadLetter letter : page) {
+                if (letter.getErrorLogId() != null) {
+                    errorLogService.markResolved(letter.getErrorLogId());
+                }
+            }
+            requeued += page.size();
+        }
+        if (requeued > 0) {
+            log.info("Requeued {} dead-lettered scan queue items.", requeued);
+        }
+        return requeued;
+    }
+
+    public DeadLetterCounts getCounts() {
+        Map<FailureClass, Long> byClass = new EnumMap<>(FailureClass.class);
+        long total = 0;
+        for (FailureClass failure : FailureClass.values()) {
+            long count = scanDeadLetterRepository.countByFailureClass(failure);
+            if (count > 0) {
+                byClass.put(failure, count);
+                total += count;
+            }
+        }
+        return new DeadLetterCounts(total, byClass);
+    }
+
+    // --- Helper Methods ---
+
+    // 429 / RESOURCE_EXHAUSTED is a quota problem; other retryable statuses are transient; the rest is permanent.
+    private static FailureClass classifyStatus(int code, boolean retryable) {
+        if (code == 429) return FailureClass.REMOTE_QUOTA;
+        if (retryable || code >= 500 || code == 408) return FailureClass.TRANSIENT_IO;
+        return FailureClass.PERMANENT;
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= 1024 ? message : message.substring(0, 1021) + "...";
+    }
+}
@@ -0,0 +1,235 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds byte-identical files of any type, in the style of fdupes. Only files that could be duplicates
+ * are read, and only as much as needed:
+ * 1. Files are grouped by size (a database query); a file with a unique size has no duplicate.
+ * 2. Within a size group, the first and last 64 KB of each file are hashed (ContentHashService.partialHash).
+ * 3. Files that still match are compared by their full content hash. The hash stored by the scanner is
+ *    reused when the file has not changed since; otherwise the file is hashed here.
+ *
+ * Files that were deleted or changed size since they were scanned are left out until they are rescanned.
+ * Image records carry a perceptual hash (see FindDuplicatesService), so images are always hashed here;
+ * the "Duplicate Images" category still uses the perceptual hash for look-alike images.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DuplicateFinderService {
+
+    private final FileRecordRepository fileRecordRepository;
+    private final ContentHashService contentHashService;
+
+    // Bytes hashed at each end of a file in the partial hash pass.
+    @Value("${duplicates.edge-bytes:65536}")
+    private int edgeBytes;
+
+    // Files smaller than this are not reported (empty files are all "identical").
+    @Value("${duplicates.min-size-bytes:1}")
+    private long minSizeBytes;
+
+    /**
+     * Files with identical content. All but one copy could be deleted to reclaim space.
+     * @param contentHash The hash shared by the files (for files up to 128 KB, the partial hash, which covers them completely).
+     */
+    public record DuplicateGroup(String contentHash, long sizeBytes, List<FileRecord> files) {
+        public long reclaimableBytes() {
+            return sizeBytes * (files.size() - 1);
+        }
+    }
+
+    /**
+     * Result of one run.
+     * @param duplicateFiles Files that are copies of another file (group size - 1, summed).
+     * @param bytesRead      Bytes read from disk for the partial and full hashes.
+     */
+    public record DuplicateReport(List<DuplicateGroup> groups, long duplicateFiles, long reclaimableBytes,
+                                  long candidateFiles, long bytesRead, long finishedUnix) {
+        public static final DuplicateReport NONE = new DuplicateReport(List.of(), 0, 0, 0, 0, 0);
+    }
+
+    // Latest completed report; the Home view shows its totals without searching again.
+    private volatile DuplicateReport lastReport = DuplicateReport.NONE;
+
+    // Runs the background refresh, which can hash for hours on a large drive.
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Duplicate-Refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * Searches all indexed files for duplicates.
+     * @return Groups ordered by reclaimable bytes, largest first.
+     */
+    public synchronized DuplicateReport findDuplicates() {
+        long started = System.currentTimeMillis();
+        List<DuplicateGroup> groups = new ArrayList<>();
+        long candidates = 0;
+        long[] bytesRead = {0};
+
+        for (long size : fileRecordRepository.findCollidingSizes(Math.max(1, minSizeBytes))) {
+            List<FileRecord> sameSize = fileRecordRepository.findPresentBySize(size);
+            candidates += sameSize.size();
+            groups.addAll(findInSizeGroup(size, sameSize, bytesRead));
+        }
+
+        groups.sort(Comparator.comparingLong(DuplicateGroup::reclaimableBytes).reversed());
+        long duplicateFiles = groups.stream().mapToLong(g -> g.files().size() - 1).sum();
+        long reclaimable = groups.stream().mapToLong(DuplicateGroup::reclaimableBytes).sum();
+        DuplicateReport report = new DuplicateReport(List.copyOf(groups), duplicateFiles, reclaimable,
+                candidates, bytesRead[0], Instant.now().getEpochSecond());
+        lastReport = report;
+        log.info("Duplicate search: {} groups, {} reclaimable bytes; {} candidates, {} bytes read in {} ms.",
+                groups.size(), reclaimable, candidates, bytesRead[0], System.currentTimeMillis() - started);
+        return report;
+    }
+
+    /**
+     * Refreshes the report in the background, so the Home view's totals stay roughly current.
+     * Skipped while the previous refresh is still running.
+     */
+    @Scheduled(initialDelayString = "${duplicates.initial-delay-ms:300000}",
+            fixedDelayString = "${duplicates.refresh-interval-ms:21600000}")
+    public void refresh() {
+        // The scheduler thread only starts the search, so lease renewal and the other scheduled jobs keep running.
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    findDuplicates();
+                } catch (Exception e) {
+                    log.warn("Background duplicate search failed", e);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false); // Shutting down
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    public DuplicateReport getLastReport() {
+        return lastReport;
+    }
+
+    // --- Helper Methods ---
+
+    private List<DuplicateGroup> findInSizeGroup(long size, List<FileRecord> sameSize, long[] bytesRead) {
+        // Files whose stored hash still describes the bytes on disk skip the partial pass entirely.
+        Map<String, List<FileRecord>> byFullHash = new HashMap<>();
+        List<FileRecord> unhashed = new ArrayList<>();
+        for (FileRecord record : sameSize) {
+            Boolean current = isStoredHashCurrent(record, size);
+            if (current == null) continue; // Gone or resized since the scan
+            if (current) {
+                byFullHash.computeIfAbsent(record.getContentHash(), k -> new ArrayList<>()).add(record);
+            } else {
+                unhashed.add(record);
+            }
+        }
+
+        if (!unhashed.isEmpty() && (unhashed.size() > 1 || !byFullHash.isEmpty())) {
+            // Partial hashes are only comparable with each other, so every file left in play gets one.
+            Map<Long, String> known = new HashMap<>();
+            List<FileRecord> inPlay = new ArrayList<>(unhashed);
+            byFullHash.forEach((hash, records) -> records.forEach(r -> {
+                known.put(r.getId(), hash);
+                inPlay.add(r);
+            }));
+            byFullHash.clear();
+
+            Map<String, List<FileRecord>> byPartial = new HashMap<>();
+            for (FileRecord record : inPlay) {
+                String partial = hash(record, true, bytesRead, size);
+                if (partial != null) {
+                    byPartial.computeIfAbsent(partial, k -> new ArrayList<>()).add(record);
+                }
+            }
+            byPartial.forEach((partial, survivors) -> {
+                if (survivors.size() < 2) return;
+                for (FileRecord record : survivors) {
+                    // Files no larger than both edges were read completely, so their partial hash is final.
+                    String full = size <= 2L * edgeBytes ? "partial:" + partial
+                            : known.containsKey(record.getId()) ? known.get(record.getId())
+                            : hash(record, false, bytesRead, size);
+                    if (full != null) {
+                        byFullHash.computeIfAbsent(full, k -> new ArrayList<>()).add(record);
+                    }
+                }
+            });
+        }
+
+        List<DuplicateGroup> groups = new ArrayList<>();
+        byFullHash.forEach((hash, records) -> {
+            if (records.size() > 1) {
+                records.sort(Comparator.comparing(FileRecord::getPath));
+                groups.add(new DuplicateGroup(hash, size, records));
+            }
+        });
+        return groups;
+    }
+
+    /**
+     * @return true if the record's content hash is a full-file hash for the file as it is on disk now,
+     * false if the file has to be hashed, null if the file is gone or no longer has the expected size.
+     */
+    private static Boolean isStoredHashCurrent(FileRecord record, long size) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(Paths.get(record.getPath()), BasicFileAttributes.class);
+            if (!attrs.isRegularFile() || attrs.size() != size) {
+                return null;
+            }
+            return ContentHashService.FAST_ALGORITHM.equals(record.getContentHashAlgo())
+                    && record.getContentHash() != null
+                    && attrs.lastModifiedTime().toMillis() / 1000 == record.getMtimeUnix();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String hash(FileRecord record, boolean partial, long[] bytesRead, long size) {
+        Path path = Paths.get(record.getPath());
+        try {
+            String hash = partial ? contentHashService.partialHash(path, edgeBytes) : contentHashService.fastHash(path);
+            bytesRead[0] += partial ? Math.min(size, 2L * edgeBytes) : size;
+            return hash;
+        } catch (IOException e) {
+            log.debug("Skipping {} in the duplicate search: {}", path, e.getMessage());
+            return null;
+        }
+    }
+}
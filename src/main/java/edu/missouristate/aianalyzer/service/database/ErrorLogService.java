@@ -57,6 +57,11 @@ public class ErrorLogService {
         repo.findById(id).ifPresent(e -> { e.setStatus("resolved"); repo.save(e); });
     }
 
+    // Given up on by the scan queue (see DeadLetterService); resolved again when the user requeues it.
+    public void markDeadLettered(Long id) {
+        repo.findById(id).ifPresent(e -> { e.setStatus("dead_letter"); repo.save(e); });
+    }
+
 <<<<<<< HEAD
     /**
      * Returns list of errors that are pending or retrying
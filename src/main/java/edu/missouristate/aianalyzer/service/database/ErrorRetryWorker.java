@@ -2,7 +2,6 @@ package edu.missouristate.aianalyzer.service.database;
 
 import edu.missouristate.aianalyzer.model.database.ErrorLog;
 import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
-import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -17,12 +16,15 @@ import java.time.Instant;
 @Component
 public class ErrorRetryWorker {
     private final ErrorLogService errorLogService;
-    private final ScanQueueItemRepository scanQueueItemRepository;
+    private final ScanQueueBatchWriter scanQueueBatchWriter;
+    private final ScanRoots scanRoots;
 
     public ErrorRetryWorker(ErrorLogService errorLogService,
-                            ScanQueueItemRepository scanQueueItemRepository) {
+                            ScanQueueBatchWriter scanQueueBatchWriter,
+                            ScanRoots scanRoots) {
         this.errorLogService = errorLogService;
-        this.scanQueueItemRepository = scanQueueItemRepository;
+        this.scanQueueBatchWriter = scanQueueBatchWriter;
+        this.scanRoots = scanRoots;
     }
 
 <<<<<<< HEAD
@@ -43,6 +45,8 @@ public class ErrorRetryWorker {
                 errorLogService.markResolved(e.getId());
             }
         }
+        // Write the retries out now so the consumers are woken instead of waiting for the flush interval.
+        scanQueueBatchWriter.flush();
     }
 
 <<<<<<< HEAD
@@ -58,7 +62,9 @@ public class ErrorRetryWorker {
             item.setKind(ScanQueueItem.Kind.ACTIVE_AI); // <-- enum, not a String
             item.setNotBeforeUnix(Instant.now().getEpochSecond());
             item.setAttempts(0);
-            scanQueueItemRepository.save(item);
+            item.setPriority(ScanQueueItem.PRIORITY_NEW);
+            item.setRoot(scanRoots.rootOf(pathStr));
+            scanQueueBatchWriter.enqueue(item);
             return true;
         } catch (Exception ex) {
             return false;
@@ -0,0 +1,390 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import jakarta.annotation.PreDestroy;
+import edu.missouristate.aianalyzer.utility.database.DatabasePathUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact, memory-mapped manifest of every file that has already been processed.
+ *
+ * Maps path -> (size, mtime, fileKey) so that an incremental active scan can skip files
+ * that have not changed since they were last processed. The table lives in a memory-mapped
+ * file (open addressing, 32 bytes per slot) instead of the Java heap, so 10M+ entries cost
+ * only a few hundred MB of page cache and survive restarts without re-reading the database.
+ *
+ * Paths are stored as 64-bit hashes. A hash collision can at worst make the scan treat a
+ * changed file as unchanged until its size or mtime changes again, which at 10M entries has
+ * a probability in the order of one in a million.
+ *
+ * On first use (or when the file is missing/corrupt) the manifest is seeded from the
+ * sizeBytes/mtimeUnix columns of the files table.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FileManifest {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Location of the manifest file; a relative path is resolved next to the SQLite database.
+    @Value("${scan.manifest.path:aianalyzer.manifest}")
+    private String manifestPath;
+
+    // JDBC URL of the database, used to place the manifest beside it.
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+
+    // File layout: 64 byte header followed by capacity * 32 byte slots.
+    private static final long MAGIC = 0x41494D414E494631L; // "AIMANIF1"
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 32;
+    private static final int SEGMENT_SHIFT = 24;              // 16M slots (512 MB) per mapped segment
+    private static final long SEGMENT_SLOTS = 1L << SEGMENT_SHIFT;
+    private static final long INITIAL_CAPACITY = 1L << 20;    // 1M slots (32 MB)
+    private static final double MAX_LOAD = 0.7;
+
+    // Slot field offsets. A path hash of 0 marks an empty slot.
+    private static final int KEY = 0, SIZE = 8, MTIME = 16, FILE_KEY = 24;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private long capacity;
+    private long mask;
+    private long size;
+    private volatile boolean open = false;
+
+    /**
+     * @return true if the manifest holds the file with exactly this size and mtime (and fileKey,
+     *         when both sides know it). False for unknown or changed files.
+     */
+    public boolean isUnchanged(String path, long sizeBytes, long mtimeUnix, Object fileKey) {
+        ensureOpen();
+        long key = hashPath(path);
+        lock.readLock().lock();
+        try {
+            long slot = findSlot(key);
+            if (getLong(slot, KEY) != key) {
+                return false;
+            }
+            long storedFileKey = getLong(slot, FILE_KEY);
+            long currentFileKey = hashFileKey(fileKey);
+            return getLong(slot, SIZE) == sizeBytes
+                    && getLong(slot, MTIME) == mtimeUnix
+                    && (storedFileKey == 0 || currentFileKey == 0 || storedFileKey == currentFileKey);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the current state of a processed file.
+     */
+    public void put(String path, long sizeBytes, long mtimeUnix, Object fileKey) {
+        ensureOpen();
+        putHashed(hashPath(path), sizeBytes, mtimeUnix, hashFileKey(fileKey));
+    }
+
+    /**
+     * Forgets a file, e.g. because it was deleted. The next scan will treat it as new.
+     */
+    public void remove(String path) {
+        ensureOpen();
+        long key = hashPath(path);
+        lock.writeLock().lock();
+        try {
+            long slot = findSlot(key);
+            if (getLong(slot, KEY) == key) {
+                deleteSlot(slot);
+                size--;
+                header.putLong(24, size);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        ensureOpen();
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!open) return;
+            header.force();
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            channel.close();
+            open = false;
+        } catch (IOException e) {
+            log.warn("Failed to close file manifest cleanly: {}", manifestPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Opens (or creates and seeds) the manifest on first use. Done lazily so the files table
+     * is guaranteed to exist by the time it is seeded.
+     */
+    private void ensureOpen() {
+        if (open) return;
+        lock.writeLock().lock();
+        try {
+            if (open) return;
+            Path file = DatabasePathUtil.resolveNextToDatabase(manifestPath, datasourceUrl);
+            boolean existing = Files.exists(file) && Files.size(file) >= HEADER_BYTES;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+
+            if (existing && header.getLong(0) == MAGIC) {
+                capacity = header.getLong(8);
+                size = header.getLong(24);
+                mapSegments();
+                open = true;
+                log.info("Loaded file manifest {} with {} entries.", file, size);
+                return;
+            }
+
+            capacity = INITIAL_CAPACITY;
+            size = 0;
+            mapSegments();
+            zeroSegments();
+            writeHeader();
+            open = true;
+            seedFromDatabase();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open file manifest: " + manifestPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Seeds a fresh manifest from files that have already been hashed.
+     * Called with the write lock held.
+     */
+    private void seedFromDatabase() {
+        try {
+            jdbcTemplate.query("""
+                    SELECT path, size_bytes, mtime_unix FROM files
+                    WHERE content_hash IS NOT NULL AND (kind IS NULL OR kind <> 'missing')
+                    """, rs -> {
+                putHashed(hashPath(rs.getString(1)), rs.getLong(2), rs.getLong(3), 0);
+            });
+            log.info("Seeded file manifest {} with {} entries from the database.", manifestPath, size);
+        } catch (Exception e) {
+            // An empty manifest only costs one full scan, so this is not fatal.
+            log.warn("Could not seed file manifest from the database: {}", e.getMessage());
+        }
+    }
+
+    private void putHashed(long key, long sizeBytes, long mtimeUnix, long fileKeyHash) {
+        lock.writeLock().lock();
+        try {
+            if (size + 1 > capacity * MAX_LOAD) {
+                grow();
+            }
+            long slot = findSlot(key);
+            boolean isNew = getLong(slot, KEY) != key;
+            putLong(slot, SIZE, sizeBytes);
+            putLong(slot, MTIME, mtimeUnix);
+            putLong(slot, FILE_KEY, fileKeyHash);
+            putLong(slot, KEY, key); // written last so a half-written slot is never matched
+            if (isNew) {
+                size++;
+                header.putLong(24, size);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Linear probing: returns the slot holding the key, or the first empty slot of its probe chain.
+     */
+    private long findSlot(long key) {
+        long slot = key & mask;
+        while (true) {
+            long stored = getLong(slot, KEY);
+            if (stored == key || stored == 0) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Backward-shift deletion, so no tombstones accumulate in the probe chains.
+     */
+    private void deleteSlot(long hole) {
+        long next = (hole + 1) & mask;
+        while (true) {
+            long key = getLong(next, KEY);
+            if (key == 0) break;
+            long home = key & mask;
+            // The entry may move into the hole if the hole lies between its home slot and its current slot.
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                putLong(hole, SIZE, getLong(next, SIZE));
+                putLong(hole, MTIME, getLong(next, MTIME));
+                putLong(hole, FILE_KEY, getLong(next, FILE_KEY));
+                putLong(hole, KEY, key);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        putLong(hole, KEY, 0);
+    }
+
+    /**
+     * Doubles the table in place. Live entries are spooled to a temporary file first, because
+     * a mapped file cannot be replaced on Windows while the old mapping is still alive.
+     */
+    private void grow() {
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("aianalyzer-manifest", ".spool");
+            try (FileChannel out = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(SLOT_BYTES * 4096);
+                for (long slot = 0; slot < capacity; slot++) {
+                    if (getLong(slot, KEY) == 0) continue;
+                    buf.putLong(getLong(slot, KEY)).putLong(getLong(slot, SIZE))
+                            .putLong(getLong(slot, MTIME)).putLong(getLong(slot, FILE_KEY));
+                    if (!buf.hasRemaining()) {
+                        buf.flip();
+                        while (buf.hasRemaining()) out.write(buf);
+                        buf.clear();
+                    }
+                }
+                buf.flip();
+                while (buf.hasRemaining()) out.write(buf);
+            }
+
+            capacity *= 2;
+            mapSegments();
+            zeroSegments();
+            size = 0;
+            writeHeader();
+
+            try (FileChannel in = FileChannel.open(spool, StandardOpenOption.READ)) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(SLOT_BYTES * 4096);
+                while (in.read(buf) != -1) {
+                    buf.flip();
+                    while (buf.remaining() >= SLOT_BYTES) {
+                        long key = buf.getLong();
+                        long slot = findSlot(key);
+                        putLong(slot, SIZE, buf.getLong());
+                        putLong(slot, MTIME, buf.getLong());
+                        putLong(slot, FILE_KEY, buf.getLong());
+                        putLong(slot, KEY, key);
+                        size++;
+                    }
+                    buf.compact();
+                }
+            }
+            header.putLong(24, size);
+            log.info("Grew file manifest to {} slots ({} entries).", capacity, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow file manifest: " + manifestPath, e);
+        } finally {
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException e) {
+                    log.debug("Could not delete manifest spool file {}", spool);
+                }
+            }
+        }
+    }
+
+    private void mapSegments() throws IOException {
+        mask = capacity - 1;
+        int count = (int) ((capacity + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long slots = Math.min(SEGMENT_SLOTS, capacity - i * SEGMENT_SLOTS);
+            long offset = HEADER_BYTES + i * SEGMENT_SLOTS * SLOT_BYTES;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, slots * SLOT_BYTES);
+        }
+    }
+
+    private void zeroSegments() {
+        byte[] zeros = new byte[64 * 1024];
+        for (MappedByteBuffer segment : segments) {
+            ByteBuffer view = segment.duplicate();
+            view.clear();
+            while (view.hasRemaining()) {
+                view.put(zeros, 0, Math.min(zeros.length, view.remaining()));
+            }
+        }
+    }
+
+    private void writeHeader() {
+        header.putLong(0, MAGIC);
+        header.putLong(8, capacity);
+        header.putLong(24, size);
+    }
+
+    private long getLong(long slot, int field) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) ((slot & (SEGMENT_SLOTS - 1)) * SLOT_BYTES) + field);
+    }
+
+    private void putLong(long slot, int field, long value) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) ((slot & (SEGMENT_SLOTS - 1)) * SLOT_BYTES) + field, value);
+    }
+
+    /**
+     * 64-bit FNV-1a over the path characters, finished with the MurmurHash3 mixer so the
+     * low bits (used as the table index) are well distributed. Never returns 0 (empty slot).
+     */
+    private static long hashPath(String path) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            h ^= path.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h = mix(h);
+        return h == 0 ? 1 : h;
+    }
+
+    private static long hashFileKey(Object fileKey) {
+        if (fileKey == null) return 0;
+        long h = mix(fileKey.hashCode());
+        return h == 0 ? 1 : h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,17 +1,26 @@
 package edu.missouristate.aianalyzer.service.database;
 
 import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.model.database.ScanDeadLetter;
 import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
 import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
 import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
 <<<<<<< HEAD
 =======
+import edu.missouristate.aianalyzer.service.ai.ExternalProcessRunner;
 import edu.missouristate.aianalyzer.service.ai.ProcessFileService;
+import edu.missouristate.aianalyzer.service.ai.ScanForVirusService.ScanVerdict;
+import edu.missouristate.aianalyzer.service.metrics.PipelineMetrics;
+import edu.missouristate.aianalyzer.service.metrics.PipelineMetrics.Outcome;
+import edu.missouristate.aianalyzer.service.metrics.PipelineMetrics.Stage;
+import edu.missouristate.aianalyzer.utility.ai.VirtualThreadUtil;
 >>>>>>> clean-feature-branch
 import edu.missouristate.aianalyzer.service.ai.ScanForVirusService;
 import edu.missouristate.aianalyzer.service.photos.FindDuplicatesService;
 import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -34,14 +43,34 @@ import java.util.Set;
 <<<<<<< HEAD
 =======
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 >>>>>>> clean-feature-branch
 
 import static edu.missouristate.aianalyzer.model.FileInterpretation.IMAGE_TYPES;
+import static edu.missouristate.aianalyzer.model.FileInterpretation.KIND_BY_EXTENSION;
 import static edu.missouristate.aianalyzer.model.FileInterpretation.SUPPORTED_FILE_TYPES;
 
 /*
-    This will be the "Consumer" which runs in the background and pulls tasks from the scan_queue
+    This will be the "Consumer" which runs in the background and pulls tasks from the scan_queue.
+    Each file passes through independent stages connected by bounded queues:
+        claim + metadata/hash -> virus scan -> extraction -> AI -> persist
+    Every stage has its own worker count. A full queue blocks the stage feeding it, so backpressure
+    reaches the claim workers, which then stop taking new items from the scan queue.
 */
 @Slf4j
 @Service
@@ -58,13 +87,125 @@ public class FileProcessingService {
 =======
     private final ProcessFileService processFileService;
     private final LabelService labelService;
+    private final FileManifest fileManifest;
+    private final ScanRuleService scanRuleService;
+    private final IoGovernor ioGovernor;
+    private final ScanQueueBatchWriter scanQueueBatchWriter;
+    private final ScanQueueLeases scanQueueLeases;
+    private final QueueSignal queueSignal;
+    private final DeadLetterService deadLetterService;
+    private final PipelineMetrics pipelineMetrics;
+    private final LabelCacheService labelCacheService;
+    private final ContentHashService contentHashService;
+    private final VirusScanService virusScanService;
 
+    // Number of consumer threads claiming queue items and reading metadata/hashes.
+    @Value("${scan.consumer.workers:4}")
+    private int workerCount;
 
-    private static final int BATCH_SIZE = 50; // How many items to process per run
+    @Value("${scan.pipeline.virus-workers:2}")
+    private int virusWorkers;
+
+    // Without clamd, files waiting for the virus scan are scanned together by one clamscan run of up
+    // to this many files, so the signature database is loaded once per batch.
+    @Value("${scan.pipeline.virus-batch-size:200}")
+    private int virusBatchSize;
+
+    // How long a virus worker waits for more files before scanning a batch that is not full.
+    @Value("${scan.pipeline.virus-batch-linger-ms:500}")
+    private long virusBatchLingerMillis;
+
+    @Value("${scan.pipeline.extract-workers:2}")
+    private int extractWorkers;
+
+    @Value("${scan.pipeline.ai-workers:2}")
+    private int aiWorkers;
+
+    // Capacity of the queues holding files that are waiting for a stage (path and metadata only).
+    @Value("${scan.pipeline.queue-capacity:2000}")
+    private int queueCapacity;
+
+    // Capacity of the queue in front of the AI stage, whose entries hold extracted file content.
+    @Value("${scan.pipeline.ai-queue-capacity:16}")
+    private int aiQueueCapacity;
+
+    // "virtual" runs the network-bound extraction (upload) and AI stages on virtual threads when the
+    // JDK supports them (21+); "platform" (or an older JDK) uses the fixed worker counts above.
+    @Value("${scan.pipeline.network-threads:platform}")
+    private String networkThreads;
+
+    // With virtual threads: maximum number of uploads/AI requests in flight per stage.
+    @Value("${scan.pipeline.network-concurrency:32}")
+    private int networkConcurrency;
+
+    // Largest number of items a worker claims at once.
+    @Value("${scan.consumer.claim-batch:10}")
+    private int claimBatchSize;
+
+    // Smallest number of items a worker claims at once.
+    @Value("${scan.consumer.min-claim-batch:1}")
+    private int minClaimBatchSize;
+
+    // How long one claimed batch should take in the claim stage; the batch size follows from the
+    // observed time per item.
+    @Value("${scan.consumer.target-batch-ms:1000}")
+    private long targetBatchMillis;
+
+    // Safety net: how long an idle worker waits for a producer signal before checking the queue anyway.
+    @Value("${scan.consumer.poll-interval-ms:30000}")
+    private long pollIntervalMillis;
+
+    // Weight of the newest batch in the smoothed per-item time.
+    private static final double ITEM_MILLIS_ALPHA = 0.2;
+
+    // FileRecord.contentHashAlgo for images, whose contentHash is FindDuplicatesService's perceptual hash.
+    private static final String IMAGE_HASH_ALGORITHM = "average-hash-32";
+
+    // Smoothed claim-stage time per item (ms) across all workers, or -1 before the first batch.
+    private double itemMillisEwma = -1;
+
+    private ExecutorService workers;
+    private ExecutorService virtualWorkers; // null unless the network stages run on virtual threads
+    private ExecutorService persistHandoff; // waits for room in the persist queue for AI callbacks
+    private volatile boolean stopping = false;
+
+    private BlockingQueue<FileTask> virusQueue;
+    private BlockingQueue<FileTask> extractQueue;
+    private BlockingQueue<FileTask> aiQueue;
+    private BlockingQueue<FileTask> persistQueue;
+
+    // Claimed items anywhere in the pipeline, by queue item id; their leases are renewed periodically.
+    private final Map<Long, FileTask> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * A claimed file moving through the stages. Each stage fills in what the next one needs.
+     */
+    private static final class FileTask {
+        private final ScanQueueItem item;
+        private String ext;                                // set once metadata and hash are stored
+        private long sizeBytes;                            // set by the hash stage, for the stage metrics and manifest
+        private long mtimeUnix;                            // set by the hash stage, for the manifest
+        private Object fileKey;                            // set by the hash stage, for the manifest
+        private String contentHash;                        // set by the hash stage
+        private String sha256;                             // set by the hash stage if the content hash has copies
+        private String contentKey;                         // algorithm:hash of a full-content hash, else null
+        private boolean rescanOnly;                        // VIRUS_RESCAN of an unchanged, labeled file
+        private ProcessFileService.PreparedFile prepared;  // set by the extraction stage
+        private String aiResponse;                         // set by the AI stage
+
+        private FileTask(ScanQueueItem item) {
+            this.item = item;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageStep {
+        void process(FileTask task) throws Exception;
+    }
 >>>>>>> clean-feature-branch
 
     /**
-     * This method runs on a fixed schedule, acting as our main worker loop.
+     * This method runs on a fixed schedule and makes sure the queue consumers are running.
      * It replaces the `while(true)` loop from the original Main.java.
      */
     @Scheduled(fixedDelay = 5000) // Runs every 5 seconds
@@ -81,11 +222,146 @@ public class FileProcessingService {
                                 PageRequest.of(0, BATCH_SIZE)
                         );
 =======
-    public void processQueue() {
-        long now = Instant.now().getEpochSecond();
+    public synchronized void processQueue() {
+        // The scheduler thread only starts the stages, so a slow file never delays other scheduled jobs.
+        if (workers != null || stopping) {
+            return;
+        }
+        virusQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        extractQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        aiQueue = new ArrayBlockingQueue<>(Math.max(1, aiQueueCapacity));
+        persistQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        int claimers = Math.max(1, workerCount);
+        int total = claimers + Math.max(1, virusWorkers) + Math.max(1, extractWorkers) + Math.max(1, aiWorkers) + 1;
+        AtomicInteger index = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(total, r -> {
+            Thread t = new Thread(r, "Queue-Worker-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Worker names double as lease owners, so they must be unique across restarts.
+        String instance = ManagementFactory.getRuntimeMXBean().getName() + "-" + Long.toHexString(System.nanoTime());
+        for (int i = 1; i <= claimers; i++) {
+            String owner = instance + "/" + i;
+            workers.submit(() -> runWorker(owner));
+        }
+        for (int i = 0; i < Math.max(1, virusWorkers); i++) {
+            workers.submit(this::runVirusStage);
+        }
+        startStage(1, persistQueue, this::persistStage); // One writer keeps SQLite uncontended.
+        persistHandoff = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Persist-Handoff");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if ("virtual".equalsIgnoreCase(networkThreads.trim())) {
+            virtualWorkers = VirtualThreadUtil.newVirtualThreadPerTaskExecutor().orElse(null);
+            if (virtualWorkers == null) {
+                log.warn("Virtual threads are not available on Java {}; using platform threads.",
+                        Runtime.version().feature());
+            }
+        }
+        if (virtualWorkers != null) {
+            // The dispatchers take the place of the platform extract/AI workers in the pool.
+            int permits = Math.max(1, networkConcurrency);
+            workers.submit(() -> dispatchToVirtualThreads(extractQueue, this::extractStage, new Semaphore(permits)));
+            workers.submit(() -> dispatchToVirtualThreads(aiQueue, this::aiStage, new Semaphore(permits)));
+            log.info("Started scan queue pipeline: {} claim/hash, {} virus workers; up to {} uploads and {} AI "
+                    + "requests in flight on virtual threads.", claimers, Math.max(1, virusWorkers), permits, permits);
+        } else {
+            startStage(extractWorkers, extractQueue, this::extractStage);
+            startStage(aiWorkers, aiQueue, this::aiStage);
+            log.info("Started scan queue pipeline: {} claim/hash, {} virus, {} extract, {} AI workers.",
+                    claimers, Math.max(1, virusWorkers), Math.max(1, extractWorkers), Math.max(1, aiWorkers));
+        }
+    }
+
+    /**
+     * Keeps the leases of in-flight items alive while they wait behind slower stages.
+     */
+    @Scheduled(fixedDelayString = "${scan.consumer.renew-interval-ms:120000}")
+    public void renewInFlightLeases() {
+        try {
+            scanQueueLeases.renewAll(inFlight.values().stream().map(task -> task.item).toList());
+        } catch (Exception e) {
+            log.warn("Failed to renew scan queue leases", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        stopping = true;
+        if (workers != null) {
+            // Items still being processed keep their lease and are picked up again once it expires.
+            workers.shutdownNow();
+        }
+        if (virtualWorkers != null) {
+            virtualWorkers.shutdownNow();
+        }
+        if (persistHandoff != null) {
+            persistHandoff.shutdownNow();
+        }
+    }
+
+    /**
+     * Worker loop: claim a batch of due items and process it. When the queue has nothing due, wait
+     * until a producer signals new rows (or the poll interval passes).
+     */
+    private void runWorker(String owner) {
+        while (!stopping) {
+            try {
+                long generation = queueSignal.generation();
+                List<ScanQueueItem> claimed = scanQueueLeases.claim(owner, nextClaimBatchSize());
+                if (claimed.isEmpty()) {
+                    queueSignal.await(generation, pollIntervalMillis);
+                } else {
+                    long start = System.nanoTime();
+                    processClaimed(claimed);
+                    recordClaimedBatch(claimed.size(), System.nanoTime() - start);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Scan queue worker {} failed; retrying shortly.", owner, e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(Math.min(pollIntervalMillis, 5000));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sizes the next claim so that it takes about targetBatchMillis in the claim stage. Slow items
+     * (large files, or the virus stage pushing back) give small batches, so a worker never sits on
+     * many leased rows while new high-priority rows arrive; fast items give larger batches to spread
+     * the cost of the claim queries.
+     */
+    private synchronized int nextClaimBatchSize() {
+        int max = Math.max(1, claimBatchSize);
+        int min = Math.max(1, Math.min(minClaimBatchSize, max));
+        if (itemMillisEwma <= 0) {
+            return max;
+        }
+        return (int) Math.max(min, Math.min(max, targetBatchMillis / itemMillisEwma));
+    }
 
-        // 1. Fetch a batch of due items from the queue.
-        List<ScanQueueItem> items = scanQueueItemRepository.findAllByNotBeforeUnixLessThanEqualOrderByNotBeforeUnix(now, PageRequest.of(0, BATCH_SIZE));
+    private synchronized void recordClaimedBatch(int items, long elapsedNanos) {
+        double perItem = elapsedNanos / 1e6 / items;
+        itemMillisEwma = itemMillisEwma < 0 ? perItem : itemMillisEwma + ITEM_MILLIS_ALPHA * (perItem - itemMillisEwma);
+    }
+
+    /**
+     * Claim stage: stores metadata and hash for each claimed item, then hands it to the virus scan.
+     * Blocks when the virus scan queue is full, which stops this worker from claiming more.
+     */
+    private void processClaimed(List<ScanQueueItem> items) throws InterruptedException {
 >>>>>>> clean-feature-branch
 
         if (items.isEmpty()) {
@@ -103,10 +379,22 @@ public class FileProcessingService {
                 log.error("Failed to process file task for path: {}", item.getPath(), e);
                 requeueFailedTask(item); // Task failed, requeue for later with backoff.
 =======
-                handleFileTaskTransactional(item); // Process each item in its own transaction
+                if (stopping) {
+                    return;
+                }
+                if (!scanQueueLeases.renew(item)) {
+                    log.debug("Lease on {} expired before it was started; skipping.", item.getPath());
+                    continue;
+                }
+                // From here on, re-enqueues of this path must reach the row (see ScanQueueBatchWriter).
+                scanQueueBatchWriter.forget(item.getPath());
+                FileTask task = new FileTask(item);
+                inFlight.put(item.getId(), task);
+                hashStage(task);
+            } catch (InterruptedException e) {
+                throw e;
             } catch (Exception e) {
-                log.error("Failed to process file task for path: {}", item.getPath(), e);
-                requeueFailedTask(item); // Task failed, requeue for later.
+                failed(item, e);
 >>>>>>> clean-feature-branch
             }
         }
@@ -123,19 +411,46 @@ public class FileProcessingService {
             throws IOException, NoSuchAlgorithmException, InterruptedException {
 
 =======
-     * Processes a single file in its own transaction to avoid long-running locks.
-     * MUST be public (or protected) for Spring's @Transactional proxy to work.
+     * Metadata/hash stage for a claimed item. There is deliberately no surrounding transaction in any
+     * stage: each repository call commits on its own, so the single SQLite connection is never held
+     * while a file is hashed, scanned or sent to the AI, and the workers do not serialize on it.
      */
-    @Transactional
-    public void handleFileTaskTransactional(ScanQueueItem item) throws IOException, NoSuchAlgorithmException {
-        handleFileTask(item.getPath());
-        scanQueueItemRepository.delete(item); // Task succeeded, remove from queue.
+    private void hashStage(FileTask task) throws IOException, NoSuchAlgorithmException, InterruptedException {
+        // The rules may have changed since the item was queued.
+        if (!scanRuleService.current().isFileIncluded(Paths.get(task.item.getPath()), -1)) {
+            log.debug("Skipping {}; it is excluded by the current scan rules.", task.item.getPath());
+            completed(task);
+            return;
+        }
+        FileRecord before = task.item.getKind() == ScanQueueItem.Kind.VIRUS_RESCAN
+                ? fileRecordRepository.findByPath(task.item.getPath()).orElse(null) : null;
+        long start = System.nanoTime();
+        try {
+            handleFileTask(task.item.getPath(), task);
+        } catch (Exception e) {
+            pipelineMetrics.record(Stage.HASH, extensionOf(task), Outcome.ERROR, task.sizeBytes, start);
+            throw e;
+        }
+        pipelineMetrics.record(Stage.HASH, extensionOf(task), task.ext == null ? Outcome.SKIPPED : Outcome.OK,
+                task.sizeBytes, start);
+        // A rescan for new signatures only repeats the virus scan, unless the file changed or has no usable label.
+        task.rescanOnly = before != null && task.contentHash != null
+                && task.contentHash.equals(before.getContentHash()) && keepsLabelOnRescan(before);
+        if (task.ext == null) {
+            completed(task); // Missing or unreadable; nothing left to do.
+        } else if (!task.rescanOnly && applyCachedLabel(task)) {
+            completed(task); // An identical file was already scanned and analyzed.
+        } else {
+            virusQueue.put(task);
+        }
     }
 
     /**
-     * Processes a single file path from the queue. This contains the core logic from QueueWorker.java.
+     * Processes a single file path from the queue: metadata and content hash.
+     * This contains the core logic from QueueWorker.java. Sets task.ext if the file should go on
+     * to the virus scan.
      */
-    private void handleFileTask(String pathStr) throws IOException, NoSuchAlgorithmException {
+    private void handleFileTask(String pathStr, FileTask task) throws IOException, NoSuchAlgorithmException {
 >>>>>>> clean-feature-branch
         Path path = Paths.get(pathStr);
         FileRecord fileRecord = fileRecordRepository.findByPath(pathStr)
@@ -150,6 +465,7 @@ public class FileProcessingService {
             fileRecord.setKind("missing");
             fileRecord.setSizeBytes(0);
             fileRecordRepository.save(fileRecord);
+            fileManifest.remove(pathStr);
             return;
         }
 
@@ -173,6 +489,9 @@ public class FileProcessingService {
 =======
 >>>>>>> clean-feature-branch
         BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        task.sizeBytes = attrs.size();
+        task.mtimeUnix = attrs.lastModifiedTime().toMillis() / 1000;
+        task.fileKey = attrs.fileKey();
         fileRecord.setSizeBytes(attrs.size());
         fileRecord.setMtimeUnix(attrs.lastModifiedTime().toMillis() / 1000);
         fileRecord.setCtimeUnix(attrs.creationTime().toMillis() / 1000);
@@ -221,9 +540,17 @@ public class FileProcessingService {
         // Calculate content hash (SAFELY - catch FileSystemException for quarantined files)
         try {
             if (IMAGE_TYPES.contains(ext.toLowerCase())) {
+                ioGovernor.acquireRead(path); // ImageIO reads the whole file itself
                 hash = String.valueOf(FindDuplicatesService.calculateImageHash(String.valueOf(path)));
+                fileRecord.setContentHashAlgo(IMAGE_HASH_ALGORITHM);
+                fileRecord.setSha256(null);
             } else {
-                hash = calculateSha256(path, 256 * 1024 * 1024); // 256MB limit
+                hash = contentHashService.fastHash(path);
+                fileRecord.setContentHashAlgo(ContentHashService.FAST_ALGORITHM);
+                task.contentKey = ContentHashService.FAST_ALGORITHM + ":" + hash;
+                // SHA-256 only where another file claims the same content; the label cache needs the proof.
+                fileRecord.setSha256(fileRecordRepository.existsByContentHashAndPathNot(hash, pathStr)
+                        ? contentHashService.sha256(path) : null);
             }
             fileRecord.setContentHash(hash);
         } catch (FileSystemException fse) {
@@ -254,26 +581,144 @@ public class FileProcessingService {
         // Save basic file metadata first (before labeling)
         fileRecordRepository.save(fileRecord);
 
-        // File classification occurs in two stages
-        // ===== STAGE 1: SECURITY SCAN (ClamAV) =====
-        boolean isInfected = false;
-        try {
-            log.info("Running virus scan for: {}", pathStr);
-            isInfected = ScanForVirusService.scanFileWithClam(path);
+        task.contentHash = fileRecord.getContentHash();
+        task.sha256 = fileRecord.getSha256();
+        task.ext = ext; // Continue with the virus scan.
+    }
+
+    /**
+     * Virus stage worker loop. Without clamd, each clamscan run costs seconds for loading the
+     * signatures, so the worker takes the next task plus whatever else is waiting (up to the batch
+     * size, lingering briefly for more) and scans them together. With clamd, tasks go one at a time.
+     */
+    private void runVirusStage() {
+        List<FileTask> batch = new ArrayList<>();
+        while (!stopping) {
+            batch.clear();
+            try {
+                batch.add(virusQueue.take());
+                if (!ScanForVirusService.isDaemonAvailable()) {
+                    int max = Math.max(1, virusBatchSize);
+                    virusQueue.drainTo(batch, max - batch.size());
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(virusBatchLingerMillis);
+                    while (batch.size() < max) {
+                        long wait = deadline - System.nanoTime();
+                        FileTask next = wait > 0 ? virusQueue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) break;
+                        batch.add(next);
+                        virusQueue.drainTo(batch, max - batch.size());
+                    }
+                }
+                virusScanStage(batch);
+            } catch (InterruptedException e) {
+                // Tasks of an unfinished batch keep their lease and are claimed again once it expires.
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * File classification occurs in two stages.
+     * ===== STAGE 1: SECURITY SCAN (ClamAV) =====
+     * Reuses earlier verdicts for content already scanned with the current signatures, scans the
+     * rest of the batch, then handles every file on its own: infected files stop here; clean files
+     * that the AI supports go on to extraction.
+     */
+    private void virusScanStage(List<FileTask> batch) throws InterruptedException {
+        List<Path> paths = batch.stream().map(task -> Paths.get(task.item.getPath())).toList();
+        long start = System.nanoTime();
+        Map<Path, ScanVerdict> verdicts = new HashMap<>(virusScanService.reuseCachedVerdicts(paths));
+        List<Path> toScan = paths.stream().filter(path -> !verdicts.containsKey(path)).toList();
+        long lookupShare = (System.nanoTime() - start) / batch.size();
+
+        long scanStart = System.nanoTime();
+        Map<Path, IOException> failures = new HashMap<>();
+        Exception failure = null;
+        if (!toScan.isEmpty()) {
+            log.info("Running virus scan for {} file(s)", toScan.size());
+            try {
+                ScanForVirusService.BatchScan scan = virusScanService.scanAndPersist(toScan);
+                verdicts.putAll(scan.verdicts());
+                failures.putAll(scan.failures());
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+        // Each scanned file is charged an equal share of the batch's scan time in the stage metrics.
+        long scanShare = toScan.isEmpty() ? 0 : (System.nanoTime() - scanStart) / toScan.size();
+
+        for (int i = 0; i < batch.size(); i++) {
+            FileTask task = batch.get(i);
+            ScanVerdict verdict = verdicts.get(paths.get(i));
+            boolean cached = verdict != null && VirusVerdictCache.ENGINE.equals(verdict.engine());
+            long charged = lookupShare + (cached ? 0 : scanShare);
+            try {
+                applyVirusVerdict(task, verdict, failures.containsKey(paths.get(i)) ? failures.get(paths.get(i)) : failure,
+                        System.nanoTime() - charged);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failed(task.item, e);
+            }
+        }
+    }
 
-            if (isInfected) {
-                log.warn("INFECTED FILE DETECTED: {}", pathStr);
+    /**
+     * Labels one file with its ClamAV verdict and passes it on.
+     * @param verdict The file's verdict, or null if it could not be scanned.
+     * @param failure Why the whole batch could not be scanned, if it could not.
+     */
+    private void applyVirusVerdict(FileTask task, ScanVerdict verdict, Exception failure, long startNanos)
+            throws InterruptedException {
+        String pathStr = task.item.getPath();
+        if (verdict == null) {
+            pipelineMetrics.record(Stage.VIRUS_SCAN, task.ext, Outcome.ERROR, task.sizeBytes, startNanos);
+            String reason = failure != null ? failure.getMessage() : "ClamAV could not read the file";
+            log.warn("ClamAV scan failed for {}: {}", pathStr, reason);
+            if (task.rescanOnly || failure instanceof ExternalProcessRunner.ProcessTimeoutException) {
+                // Keep the existing label and retry later (timeouts have their own retry budget).
+                failed(task.item, failure != null ? failure : new IOException(reason));
+                return;
+            }
+            labelService.applyLabel(
+                    pathStr,
+                    "Unclassified",
+                    0.1,
+                    "Error",
+                    "ClamAV scan failed: " + reason
+            );
+        } else {
+            boolean cached = VirusVerdictCache.ENGINE.equals(verdict.engine());
+            pipelineMetrics.record(Stage.VIRUS_SCAN, task.ext,
+                    cached ? Outcome.CACHED : verdict.infected() ? Outcome.INFECTED : Outcome.OK,
+                    task.sizeBytes, startNanos);
+
+            if (verdict.infected()) {
+                log.warn("INFECTED FILE DETECTED: {} ({})", pathStr, verdict.signature());
 
                 // LabelService handles EVERYTHING - DB update + history insert
+                String signature = verdict.signature() != null ? " (" + verdict.signature() + ")" : "";
                 labelService.applyLabel(
                         pathStr,
                         "Malicious",
                         1.0,
                         "ClamAV",
-                        "WARNING: This file contains malware and should be deleted immediately."
+                        "WARNING: This file contains malware" + signature + " and should be deleted immediately."
                 );
 
-                return; // Skip AI analysis for infected files
+                completed(task); // Skip AI analysis for infected files
+                return;
+            }
+
+            if (task.rescanOnly) {
+                // Still clean under the new signatures: the existing label stands and may be reused again.
+                log.info("ClamAV: File is still clean: {}", pathStr);
+                fileRecordRepository.updateClamSignatureVersion(pathStr, ScanForVirusService.getSignatureVersion());
+                completed(task);
+                return;
             }
 
             // ClamAV says file is clean - record baseline
@@ -285,66 +730,295 @@ public class FileProcessingService {
                     "ClamAV",
                     "File passed ClamAV virus scan with no threats detected."
             );
+        }
 
-        } catch (Exception clamEx) {
-            log.warn("ClamAV scan failed for {}: {}", pathStr, clamEx.getMessage());
-            labelService.applyLabel(
-                    pathStr,
-                    "Unclassified",
-                    0.1,
-                    "Error",
-                    "ClamAV scan failed: " + clamEx.getMessage()
-            );
+        if (SUPPORTED_FILE_TYPES.contains(task.ext.toLowerCase())) {
+            extractQueue.put(task);
+        } else {
+            // If file type not supported by AI, ClamAV's "Safe" label remains
+            completed(task);
         }
+    }
 
-        // ===== STAGE 2: AI CONTENT ANALYSIS (Only for clean files) =====
-        if (SUPPORTED_FILE_TYPES.contains(ext.toLowerCase())) {
-            try {
-                log.info("Requesting AI analysis for: {}", pathStr);
-                String aiResponse = processFileService.processFileAIResponse(path, ext);
-
-                if (aiResponse != null && aiResponse.contains("%")) {
-                    String[] parts = aiResponse.split("%", 2);
-                    String classification = parts[0].trim();
-                    String description = parts.length > 1 ? parts[1].trim() : "";
-
-                    if (classification.equals("Safe") ||
-                            classification.equals("Suspicious") ||
-                            classification.equals("Malicious")) {
-
-                        // AI can override ClamAV's label - LabelService handles everything
-                        labelService.applyLabel(
-                                pathStr,
-                                classification,
-                                0.85,
-                                "AI",
-                                description
-                        );
+    /**
+     * ===== STAGE 2a: EXTRACTION (Only for clean files) =====
+     * Reads the file as text, or uploads it to Google Cloud if it is large.
+     */
+    private void extractStage(FileTask task) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            task.prepared = processFileService.prepareFile(Paths.get(task.item.getPath()), task.ext);
+        } catch (Exception e) {
+            pipelineMetrics.record(Stage.EXTRACT, task.ext, Outcome.ERROR, task.sizeBytes, start);
+            keepClamLabel(task, e);
+            return;
+        }
+        pipelineMetrics.record(task.prepared.gcsUri() != null ? Stage.UPLOAD : Stage.EXTRACT, task.ext, Outcome.OK,
+                task.sizeBytes, start);
+        aiQueue.put(task);
+    }
 
-                        log.info("AI analysis complete: {} - {}", classification,
-                                description.substring(0, Math.min(50, description.length())));
-                    } else {
-                        log.warn("AI returned invalid classification '{}', keeping ClamAV label", classification);
-                    }
-                } else {
-                    log.warn("AI response invalid format: {}, keeping ClamAV label", aiResponse);
+    /**
+     * ===== STAGE 2b: AI CONTENT ANALYSIS =====
+     * Sends the request and moves on to the next file; onAiResponse handles the answer. The worker
+     * only waits while AiQueryUtil's in-flight limit is reached, which backs up the AI queue.
+     * Copies of a file (same content hash) that are in flight together share one request. Images are
+     * not keyed: their perceptual hash also matches images that merely look alike.
+     */
+    private void aiStage(FileTask task) {
+        long start = System.nanoTime();
+        CompletableFuture<String> response;
+        try {
+            log.info("Requesting AI analysis for: {}", task.item.getPath());
+            response = processFileService.analyzePreparedFileAsync(task.prepared, task.contentKey);
+        } catch (Exception aiEx) {
+            pipelineMetrics.record(Stage.AI, task.ext, Outcome.ERROR, task.sizeBytes, start);
+            keepClamLabel(task, aiEx);
+            return;
+        } finally {
+            task.prepared = null; // The pending request holds the content only until it is answered.
+        }
+        response.whenComplete((aiResponse, aiEx) -> onAiResponse(task, aiResponse, aiEx, start));
+    }
+
+    /**
+     * Completion of an AI request, on the thread that received the response: hands the task to the
+     * persist stage, or keeps the ClamAV label if the request failed. This thread belongs to the AI
+     * client, so it never waits here; if the persist queue is full, the handoff thread waits instead.
+     */
+    private void onAiResponse(FileTask task, String aiResponse, Throwable aiEx, long start) {
+        Throwable cause = aiEx instanceof CompletionException && aiEx.getCause() != null ? aiEx.getCause() : aiEx;
+        if (stopping || cause instanceof InterruptedException) {
+            return; // The item keeps its lease and is picked up again once it expires.
+        }
+        if (cause != null) {
+            pipelineMetrics.record(Stage.AI, task.ext, Outcome.ERROR, task.sizeBytes, start);
+            keepClamLabel(task, cause instanceof Exception e ? e : new RuntimeException(cause));
+            return;
+        }
+        pipelineMetrics.record(Stage.AI, task.ext, Outcome.OK, task.sizeBytes, start);
+        task.aiResponse = aiResponse;
+        if (persistQueue.offer(task)) {
+            return;
+        }
+        try {
+            persistHandoff.execute(() -> {
+                try {
+                    persistQueue.put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-            } catch (Exception aiEx) {
-                log.warn("AI processing failed for {}: {}", pathStr, aiEx.getMessage());
-                log.info("Keeping ClamAV baseline label due to AI failure");
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the item keeps its lease and is picked up again once it expires.
+        }
+    }
+
+    /**
+     * Applies the AI classification, then removes the item from the scan queue.
+     */
+    private void persistStage(FileTask task) {
+        String pathStr = task.item.getPath();
+        String aiResponse = task.aiResponse;
+
+        if (aiResponse != null && aiResponse.contains("%")) {
+            String[] parts = aiResponse.split("%", 2);
+            String classification = parts[0].trim();
+            String description = parts.length > 1 ? parts[1].trim() : "";
+
+            if (classification.equals("Safe") ||
+                    classification.equals("Suspicious") ||
+                    classification.equals("Malicious")) {
+
+                // AI can override ClamAV's label - LabelService handles everything
+                long start = System.nanoTime();
+                labelService.applyLabel(
+                        pathStr,
+                        classification,
+                        0.85,
+                        "AI",
+                        description
+                );
+                pipelineMetrics.record(Stage.DB_WRITE, task.ext, Outcome.OK, 0, start);
+
+                log.info("AI analysis complete: {} - {}", classification,
+                        description.substring(0, Math.min(50, description.length())));
+            } else {
+                log.warn("AI returned invalid classification '{}', keeping ClamAV label", classification);
             }
+        } else {
+            log.warn("AI response invalid format: {}, keeping ClamAV label", aiResponse);
         }
-        // If file type not supported by AI, ClamAV's "Safe" label remains
-        // END Josh D. Added AI processing here
         // NOTE: No reposity save required since labelService.applyLabel() already saves the FileRecord
+        completed(task);
     }
 
-    @Transactional
-    public void requeueFailedTask(ScanQueueItem item) {
+    // Cache lookup step between hashing and the virus scan; a lookup failure only means a miss.
+    private boolean applyCachedLabel(FileTask task) {
+        long start = System.nanoTime();
+        try {
+            boolean hit = labelCacheService.applyCachedLabel(task.item.getPath(), task.ext, task.contentHash, task.sha256);
+            pipelineMetrics.record(Stage.CACHE, task.ext, hit ? Outcome.CACHED : Outcome.OK, task.sizeBytes, start);
+            return hit;
+        } catch (Exception e) {
+            log.warn("Label cache lookup failed for {}: {}", task.item.getPath(), e.getMessage());
+            pipelineMetrics.record(Stage.CACHE, task.ext, Outcome.ERROR, task.sizeBytes, start);
+            return false;
+        }
+    }
+
+    /**
+     * Whether a clean rescan may keep the file's label: only real classifications are kept. Files
+     * ClamAV flagged before, scan errors and unlabeled files go through the full pipeline instead.
+     */
+    private static boolean keepsLabelOnRescan(FileRecord record) {
+        String label = record.getTypeLabel();
+        String source = record.getTypeLabelSource();
+        if (label == null || "Error".equalsIgnoreCase(source)) {
+            return false;
+        }
+        return !("ClamAV".equalsIgnoreCase(source) && "Malicious".equalsIgnoreCase(label));
+    }
+
+    // Extension tag for the stage metrics; task.ext is only set once the hash stage succeeded.
+    private String extensionOf(FileTask task) {
+        return task.ext != null ? task.ext : getFileExtension(Paths.get(task.item.getPath()));
+    }
+
+    // An AI failure is not a task failure: the ClamAV baseline label stays and the item is done.
+    // Failures that may go away (a hung tool, quota, transport errors) are retried with backoff instead,
+    // while the ClamAV label stays in place.
+    private void keepClamLabel(FileTask task, Exception aiEx) {
+        ScanDeadLetter.FailureClass failure = deadLetterService.classify(aiEx);
+        if (failure == ScanDeadLetter.FailureClass.TIMEOUT || failure == ScanDeadLetter.FailureClass.REMOTE_QUOTA
+                || failure == ScanDeadLetter.FailureClass.TRANSIENT_IO) {
+            failed(task.item, aiEx);
+            return;
+        }
+        log.warn("AI processing failed for {}: {}", task.item.getPath(), aiEx.getMessage());
+        log.info("Keeping ClamAV baseline label due to AI failure");
+        completed(task);
+    }
+
+    private void startStage(int count, BlockingQueue<FileTask> input, StageStep stage) {
+        for (int i = 0; i < Math.max(1, count); i++) {
+            workers.submit(() -> runStage(input, stage));
+        }
+    }
+
+    /**
+     * Stage worker loop: take the next task from the stage's queue and process it.
+     */
+    private void runStage(BlockingQueue<FileTask> input, StageStep stage) {
+        while (!stopping) {
+            FileTask task;
+            try {
+                task = input.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!runTask(task, stage)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Virtual-thread variant of runStage: starts one virtual thread per task, with the semaphore
+     * capping how many are in flight. While all permits are taken the stage's queue fills up, so
+     * backpressure works the same way as with platform workers.
+     */
+    private void dispatchToVirtualThreads(BlockingQueue<FileTask> input, StageStep stage, Semaphore inFlightLimit) {
+        while (!stopping) {
+            try {
+                inFlightLimit.acquire();
+                FileTask task;
+                try {
+                    task = input.take();
+                } catch (InterruptedException e) {
+                    inFlightLimit.release();
+                    throw e;
+                }
+                virtualWorkers.submit(() -> {
+                    try {
+                        runTask(task, stage);
+                    } finally {
+                        inFlightLimit.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs one stage step; failures requeue the item.
+     * @return false if the thread was interrupted and should stop.
+     */
+    private boolean runTask(FileTask task, StageStep stage) {
+        try {
+            stage.process(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            failed(task.item, e);
+        }
+        return true;
+    }
+
+    /**
+     * Task succeeded: remove it from the scan queue (unless the file changed again while it was
+     * processed, in which case the row stays for another pass) and release the lease. A file that
+     * was hashed is remembered in the manifest so the next incremental scan can skip it; one whose
+     * hash could not be read is not, so that scan tries it again.
+     */
+    private void completed(FileTask task) {
+        ScanQueueItem item = task.item;
+        try {
+            if (task.ext != null && !"ERROR".equals(task.contentHash)) {
+                fileManifest.put(item.getPath(), task.sizeBytes, task.mtimeUnix, task.fileKey);
+            }
+            long start = System.nanoTime();
+            scanQueueItemRepository.deleteIfUnchanged(item.getId(), item.getRevision());
+            pipelineMetrics.record(Stage.DB_WRITE, extensionOf(task), Outcome.OK, 0, start);
+            scanQueueLeases.release(item);
+        } finally {
+            inFlight.remove(item.getId());
+        }
+    }
+
+    /**
+     * Task failed: retry it later with backoff, or move it to the dead-letter table if the failure is
+     * permanent or the item has used up its attempts (see DeadLetterService).
+     */
+    private void failed(ScanQueueItem item, Exception e) {
+        ScanDeadLetter.FailureClass failure = deadLetterService.classify(e);
+        int attempts = item.getAttempts() + 1;
+        log.error("Failed to process file task for path: {} ({}, attempt {})", item.getPath(), failure, attempts, e);
+        try {
+            if (deadLetterService.isExhausted(failure, attempts)) {
+                deadLetterService.deadLetter(item, failure, attempts, e);
+            } else {
+                requeueFailedTask(item, failure);
+            }
+            scanQueueLeases.release(item);
+        } catch (Exception ex) {
+            log.warn("Could not requeue {}; it is retried once its lease expires.", item.getPath(), ex);
+        } finally {
+            inFlight.remove(item.getId());
+        }
+    }
+
+    public void requeueFailedTask(ScanQueueItem item, ScanDeadLetter.FailureClass failure) {
         item.setAttempts(item.getAttempts() + 1);
-        item.setNotBeforeUnix(Instant.now().getEpochSecond() + 300); // Try again in 5 minutes
+        item.setNotBeforeUnix(Instant.now().getEpochSecond() + deadLetterService.backoffSeconds(failure, item.getAttempts()));
 >>>>>>> clean-feature-branch
-        scanQueueItemRepository.save(item);
+        scanQueueItemRepository.rescheduleIfUnchanged(item.getId(), item.getRevision(),
+                item.getAttempts(), item.getNotBeforeUnix());
     }
 
     // --- Helper methods from the original QueueWorker ---
@@ -367,13 +1041,12 @@ public class FileProcessingService {
     }
 
     private String detectKindFromExtension(String ext) {
-        if (Set.of("jpg", "jpeg", "png", "gif", "bmp", "tif", "tiff", "webp", "heic").contains(ext)) return "image";
-        if (Set.of("mp4", "mov", "mkv", "avi", "wmv").contains(ext)) return "video";
-        if (Set.of("pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "txt", "md", "csv", "json").contains(ext))
-            return "doc";
+        String kind = KIND_BY_EXTENSION.get(ext);
+        if (kind != null) return kind;
 >>>>>>> clean-feature-branch
         return "other";
     }
+<<<<<<< HEAD
 
     private String calculateSha256(Path path, long maxBytes) throws IOException, NoSuchAlgorithmException {
         MessageDigest md = MessageDigest.getInstance("SHA-256");
@@ -384,18 +1057,13 @@ public class FileProcessingService {
              DigestInputStream dis = new DigestInputStream(is, md)) {
             byte[] buffer = new byte[8192];
             int read;
-<<<<<<< HEAD
             while (bytesRead < bytesToRead &&
                     (read = dis.read(buffer, 0, (int) Math.min(buffer.length, bytesToRead - bytesRead))) != -1) {
-=======
-            while (bytesRead < bytesToRead && (read = dis.read(buffer, 0, (int) Math.min(buffer.length, bytesToRead - bytesRead))) != -1) {
->>>>>>> clean-feature-branch
                 bytesRead += read;
             }
         }
         return HexFormat.of().formatHex(md.digest());
     }
-<<<<<<< HEAD
 =======
 
     /**
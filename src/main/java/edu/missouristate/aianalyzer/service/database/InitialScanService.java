@@ -0,0 +1,287 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanJob;
+import edu.missouristate.aianalyzer.repository.database.ScanCheckpointRepository;
+import edu.missouristate.aianalyzer.repository.database.ScanJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the initial active scan as a background job so startup is not blocked by the walk.
+ *
+ * Completed directories are checkpointed periodically (always after the batch writer has been
+ * flushed, so a checkpointed subtree is guaranteed to be in the scan queue). After a crash or
+ * restart, an unfinished job over the same roots resumes and skips the checkpointed subtrees. A job
+ * whose walk failed is marked FAILED and keeps its checkpoints, so it resumes the same way.
+ * Progress and pause/resume/cancel are exposed for the Metrics view.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InitialScanService {
+
+    private final ActiveScanService activeScanService;
+    private final ScanQueueBatchWriter scanQueueBatchWriter;
+    private final ScanJobRepository scanJobRepository;
+    private final ScanCheckpointRepository scanCheckpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // How often completed directories are persisted while the scan runs.
+    @Value("${scan.checkpoint.interval-ms:10000}")
+    private long checkpointIntervalMillis;
+
+    private static final List<ScanJob.Status> UNFINISHED =
+            List.of(ScanJob.Status.RUNNING, ScanJob.Status.PAUSED, ScanJob.Status.FAILED);
+
+    private ScanJob job;
+    private ScanJobControl control;
+
+    // Counters the job already had when this session started.
+    private long baseDirs;
+    private long baseFiles;
+
+    // Last progress sample, used to turn counters into rates.
+    private long sampleMillis;
+    private long sampleDirs;
+    private long sampleFiles;
+
+    /**
+     * Snapshot of the current job for display.
+     */
+    public record ScanProgress(String status, long dirsScanned, long filesSeen,
+                               double dirsPerSecond, double filesPerSecond) {
+
+        public static final ScanProgress IDLE = new ScanProgress("IDLE", 0, 0, 0, 0);
+    }
+
+    /**
+     * Starts the initial scan in the background, resuming an unfinished job over the same roots.
+     * Returns immediately. Unfinished jobs over different roots are cancelled.
+     */
+    public synchronized void start(List<Path> roots) {
+        if (isActive()) {
+            log.info("Initial scan job {} is already active.", job.getId());
+            return;
+        }
+
+        String rootsKey = roots.stream().map(p -> p.toAbsolutePath().toString()).collect(Collectors.joining(","));
+        Set<String> checkpointed = new HashSet<>();
+        job = null;
+
+        for (ScanJob unfinished : scanJobRepository.findAllByStatusInOrderByIdDesc(UNFINISHED)) {
+            if (job == null && unfinished.getRoots().equals(rootsKey)) {
+                job = unfinished;
+                checkpointed.addAll(scanCheckpointRepository.findPathsByJobId(job.getId()));
+            } else {
+                // Roots changed since this job was started; its checkpoints no longer apply.
+                finish(unfinished, ScanJob.Status.CANCELLED);
+            }
+        }
+
+        boolean startPaused = false;
+        if (job != null) {
+            startPaused = job.getStatus() == ScanJob.Status.PAUSED;
+            if (job.getStatus() == ScanJob.Status.FAILED) {
+                job.setStatus(ScanJob.Status.RUNNING);
+                scanJobRepository.save(job);
+            }
+            log.info("Resuming initial scan job {} ({} subtrees already completed).", job.getId(), checkpointed.size());
+        } else {
+            job = new ScanJob();
+            job.setRoots(rootsKey);
+            job.setStatus(ScanJob.Status.RUNNING);
+            job.setStartedUnix(Instant.now().getEpochSecond());
+            scanJobRepository.save(job);
+            log.info("Starting initial scan job {} on roots: {}", job.getId(), roots);
+        }
+
+        baseDirs = job.getDirsScanned();
+        baseFiles = job.getFilesSeen();
+        control = new ScanJobControl(checkpointed);
+        if (startPaused) {
+            control.pause();
+        }
+        sampleMillis = System.currentTimeMillis();
+        sampleDirs = 0;
+        sampleFiles = 0;
+
+        ScanJob runningJob = job;
+        ScanJobControl runningControl = control;
+        Thread scanThread = new Thread(() -> runJob(runningJob, runningControl, roots), "Initial-Scan");
+        scanThread.setDaemon(true);
+        scanThread.start();
+    }
+
+    public synchronized void pause() {
+        if (!isActive()) return;
+        control.pause();
+        job.setStatus(ScanJob.Status.PAUSED);
+        scanJobRepository.save(job);
+        log.info("Initial scan job {} paused.", job.getId());
+    }
+
+    public synchronized void resume() {
+        if (!isActive()) return;
+        control.resume();
+        job.setStatus(ScanJob.Status.RUNNING);
+        scanJobRepository.save(job);
+        log.info("Initial scan job {} resumed.", job.getId());
+    }
+
+    /**
+     * Stops the walk as soon as the walker threads notice. The job cannot be resumed afterwards.
+     */
+    public synchronized void cancel() {
+        if (!isActive()) return;
+        control.cancel();
+        log.info("Initial scan job {} cancelled.", job.getId());
+    }
+
+    /**
+     * Current status plus directory/file rates since the previous call.
+     */
+    public synchronized ScanProgress getProgress() {
+        if (job == null) {
+            return ScanProgress.IDLE;
+        }
+        if (control == null) {
+            return new ScanProgress(job.getStatus().name(), job.getDirsScanned(), job.getFilesSeen(), 0, 0);
+        }
+        long now = System.currentTimeMillis();
+        long dirs = control.getDirsScanned();
+        long files = control.getFilesSeen();
+        double seconds = Math.max(0.001, (now - sampleMillis) / 1000.0);
+        double dirsPerSecond = (dirs - sampleDirs) / seconds;
+        double filesPerSecond = (files - sampleFiles) / seconds;
+        sampleMillis = now;
+        sampleDirs = dirs;
+        sampleFiles = files;
+
+        String status = control.isCancelled() ? "CANCELLING" : job.getStatus().name();
+        return new ScanProgress(status, baseDirs + dirs, baseFiles + files, dirsPerSecond, filesPerSecond);
+    }
+
+    // --- Helper Methods ---
+
+    private void runJob(ScanJob runningJob, ScanJobControl runningControl, List<Path> roots) {
+        ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Initial-Scan-Checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(() -> writeCheckpoint(runningJob, runningControl),
+                checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+
+        Exception failure;
+        try {
+            activeScanService.performActiveScan(roots, runningControl);
+            failure = runningControl.getFailure();
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            stopCheckpointer(checkpointer);
+        }
+
+        if (failure != null) {
+            // Keep the checkpoints, so the next startup resumes the walk where it stopped.
+            log.error("Initial scan job {} failed; it will resume on next startup.", runningJob.getId(), failure);
+            writeCheckpoint(runningJob, runningControl);
+            synchronized (this) {
+                if (runningJob == job && control == runningControl) {
+                    syncCounters();
+                    control = null;
+                }
+                runningJob.setStatus(ScanJob.Status.FAILED);
+                scanJobRepository.save(runningJob);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            finish(runningJob, runningControl.isCancelled() ? ScanJob.Status.CANCELLED : ScanJob.Status.COMPLETED);
+            log.info("Initial scan job {} {}: {} directories, {} files.", runningJob.getId(),
+                    runningJob.getStatus().name().toLowerCase(),
+                    runningJob.getDirsScanned(), runningJob.getFilesSeen());
+        }
+    }
+
+    /**
+     * Persists the directories completed since the last checkpoint. The batch writer is flushed
+     * first, so every file below a checkpointed directory is already in the scan queue. If the flush
+     * fails, the directories are kept for the next checkpoint.
+     */
+    private void writeCheckpoint(ScanJob runningJob, ScanJobControl runningControl) {
+        try {
+            List<String> completed = runningControl.drainCompleted();
+            if (completed.isEmpty()) return;
+            if (!scanQueueBatchWriter.flush()) {
+                log.warn("Not checkpointing {} directories for initial scan job {} yet: the scan queue could not "
+                        + "be written.", completed.size(), runningJob.getId());
+                runningControl.restoreCompleted(completed);
+                return;
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT OR IGNORE INTO scan_checkpoint (job_id, path) VALUES (?, ?)",
+                    completed, completed.size(), (ps, path) -> {
+                        ps.setLong(1, runningJob.getId());
+                        ps.setString(2, path);
+                    });
+            synchronized (this) {
+                if (control == runningControl) {
+                    syncCounters();
+                    scanJobRepository.save(runningJob);
+                }
+            }
+            log.debug("Checkpointed {} directories for initial scan job {}.", completed.size(), runningJob.getId());
+        } catch (Exception e) {
+            log.warn("Failed to write checkpoint for initial scan job {}", runningJob.getId(), e);
+        }
+    }
+
+    /**
+     * Marks a job finished, folds this session's counters into it, and drops its checkpoints.
+     */
+    private void finish(ScanJob finishedJob, ScanJob.Status status) {
+        if (finishedJob == job && control != null) {
+            syncCounters();
+            control = null;
+        }
+        finishedJob.setStatus(status);
+        finishedJob.setFinishedUnix(Instant.now().getEpochSecond());
+        scanJobRepository.save(finishedJob);
+        scanCheckpointRepository.deleteByJobId(finishedJob.getId());
+    }
+
+    // Lets an in-flight checkpoint finish so it cannot insert rows after the job's checkpoints are deleted.
+    private void stopCheckpointer(ScheduledExecutorService checkpointer) {
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Copies the running totals into the current job. Caller must hold the monitor.
+    private void syncCounters() {
+        job.setDirsScanned(baseDirs + control.getDirsScanned());
+        job.setFilesSeen(baseFiles + control.getFilesSeen());
+    }
+
+    private boolean isActive() {
+        return control != null;
+    }
+}
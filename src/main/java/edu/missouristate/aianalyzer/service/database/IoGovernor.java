@@ -0,0 +1,290 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket limiter for background disk I/O (directory listings, hashing, extraction, image hashing).
+ *
+ * Three buckets are kept: bytes read per second, files opened per second and directories listed per
+ * second. Listings get their own bucket because they are cheap metadata reads; charged as file opens
+ * they would cap the walker at a few dozen directories per second. Each has a budget for
+ * "user active" and one for "idle"; the mode is re-evaluated every few seconds. Java has no portable
+ * way to read keyboard/mouse idle time, so CPU load from other processes is used as the activity
+ * signal: the machine counts as in use while that load is above the threshold, and for a hold period
+ * afterwards. Work done on the scan's behalf does not count: the CPU time of this application's child
+ * processes (clamscan, ImageMagick) and of clamd is subtracted. A limit of 0 means unlimited.
+ */
+@Slf4j
+@Service
+public class IoGovernor {
+
+    public enum Mode { ACTIVE, IDLE }
+
+    /**
+     * Current limits and observed throughput, for the Metrics view.
+     */
+    public record ThrottleState(Mode mode, long bytesPerSecondLimit, long filesPerSecondLimit,
+                                double bytesPerSecond, double filesPerSecond, double throttledPercent) {
+    }
+
+    @Value("${io.governor.active.bytes-per-sec:20971520}")
+    private long activeBytesPerSecond;
+
+    @Value("${io.governor.active.files-per-sec:50}")
+    private long activeFilesPerSecond;
+
+    // Directory listings per second; at the default the walker enters up to 1000 directories a second.
+    @Value("${io.governor.active.dirs-per-sec:1000}")
+    private long activeDirsPerSecond;
+
+    @Value("${io.governor.idle.bytes-per-sec:0}")
+    private long idleBytesPerSecond;
+
+    @Value("${io.governor.idle.files-per-sec:0}")
+    private long idleFilesPerSecond;
+
+    @Value("${io.governor.idle.dirs-per-sec:0}")
+    private long idleDirsPerSecond;
+
+    // Share of CPU used by other processes (0..1) above which the user is considered active.
+    @Value("${io.governor.busy-cpu-threshold:0.25}")
+    private double busyCpuThreshold;
+
+    // How long the machine must stay below the threshold before switching to the idle budget.
+    @Value("${io.governor.idle-after-ms:120000}")
+    private long idleAfterMillis;
+
+    private final TokenBucket bytes = new TokenBucket();
+    private final TokenBucket files = new TokenBucket();
+    private final TokenBucket directories = new TokenBucket();
+
+    private volatile Mode mode;
+    private long lastBusyMillis = System.currentTimeMillis();
+
+    // CPU time of the helper processes (children and clamd) at the previous mode check, by pid.
+    private Map<Long, Long> helperCpuNanos = Map.of();
+    private long helperSampleNanos = System.nanoTime();
+
+    // clamd is not a child of this process, so it is looked up by name, at most once a minute.
+    private static final long CLAMD_LOOKUP_MILLIS = 60_000;
+    private List<ProcessHandle> clamdProcesses = List.of();
+    private long clamdLookupMillis;
+
+    // Counters behind getState(); the sample fields turn them into rates.
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong filesOpened = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private long sampleNanos = System.nanoTime();
+    private long sampleBytes;
+    private long sampleFiles;
+    private long sampleThrottled;
+
+    /**
+     * For readers that consume a whole file outside our control (ImageIO, document parsers, uploads):
+     * waits for one file token and the file's size in byte tokens up front.
+     */
+    public void acquireRead(Path path) throws IOException {
+        acquireFiles(1);
+        acquireBytes(Files.size(path));
+    }
+
+    public void acquireFiles(long count) {
+        filesOpened.addAndGet(count);
+        throttledNanos.addAndGet(files.acquire(count));
+    }
+
+    public void acquireBytes(long count) {
+        bytesRead.addAndGet(count);
+        throttledNanos.addAndGet(bytes.acquire(count));
+    }
+
+    /**
+     * Waits for tokens to list the given number of directories.
+     */
+    public void acquireDirectories(long count) {
+        throttledNanos.addAndGet(directories.acquire(count));
+    }
+
+    /**
+     * Applies a budget right away; until the first check every bucket would be unlimited.
+     */
+    @PostConstruct
+    void init() {
+        refreshMode();
+    }
+
+    /**
+     * Re-evaluates whether the user is active and applies the matching budget.
+     */
+    @Scheduled(fixedDelayString = "${io.governor.mode-check-ms:2000}")
+    public synchronized void refreshMode() {
+        long now = System.currentTimeMillis();
+        if (foreignCpuLoad() >= busyCpuThreshold) {
+            lastBusyMillis = now;
+        }
+        Mode next = now - lastBusyMillis >= idleAfterMillis ? Mode.IDLE : Mode.ACTIVE;
+        if (next != mode) {
+            mode = next;
+            bytes.setRate(next == Mode.ACTIVE ? activeBytesPerSecond : idleBytesPerSecond);
+            files.setRate(next == Mode.ACTIVE ? activeFilesPerSecond : idleFilesPerSecond);
+            directories.setRate(next == Mode.ACTIVE ? activeDirsPerSecond : idleDirsPerSecond);
+            log.info("I/O governor switched to {} budget.", next);
+        }
+    }
+
+    /**
+     * Returns the current mode and limits plus throughput since the previous call.
+     */
+    public synchronized ThrottleState getState() {
+        if (mode == null) refreshMode();
+
+        long now = System.nanoTime();
+        double seconds = Math.max(0.001, (now - sampleNanos) / 1e9);
+        long b = bytesRead.get();
+        long f = filesOpened.get();
+        long t = throttledNanos.get();
+        ThrottleState state = new ThrottleState(mode, bytes.getRate(), files.getRate(),
+                (b - sampleBytes) / seconds,
+                (f - sampleFiles) / seconds,
+                Math.min(100.0, (t - sampleThrottled) / 1e9 / seconds * 100.0));
+        sampleNanos = now;
+        sampleBytes = b;
+        sampleFiles = f;
+        sampleThrottled = t;
+        return state;
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * CPU load of the whole machine minus this process and its helper processes (0..1), or 0 if the
+     * JVM cannot report it.
+     */
+    private double foreignCpuLoad() {
+        double helpers = helperCpuLoad();
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            double system = os.getCpuLoad();
+            double process = os.getProcessCpuLoad();
+            if (system >= 0 && process >= 0) {
+                return Math.max(0, system - process - helpers);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Share of the machine's CPU (0..1) used by child processes and clamd since the previous call, from
+     * the growth of their CPU time. A child seen for the first time started since then and counts with
+     * all of its CPU time; one that exited since is missed for its last interval. Processes whose CPU
+     * time the OS does not report (e.g. a clamd service running as another user) count as foreign load.
+     */
+    private double helperCpuLoad() {
+        long now = System.nanoTime();
+        Map<Long, Long> cpu = new HashMap<>();
+        long usedNanos = 0;
+        for (ProcessHandle child : ProcessHandle.current().descendants().toList()) {
+            long nanos = cpuNanos(child, cpu);
+            usedNanos += nanos - helperCpuNanos.getOrDefault(child.pid(), 0L);
+        }
+        for (ProcessHandle daemon : clamdProcesses()) {
+            long nanos = cpuNanos(daemon, cpu);
+            usedNanos += nanos - helperCpuNanos.getOrDefault(daemon.pid(), nanos);
+        }
+        long elapsedNanos = now - helperSampleNanos;
+        helperCpuNanos = cpu;
+        helperSampleNanos = now;
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return Math.min(1, Math.max(0, usedNanos) / (double) elapsedNanos / Runtime.getRuntime().availableProcessors());
+    }
+
+    // Records and returns the process's CPU time, or its previous value if the OS does not report it.
+    private long cpuNanos(ProcessHandle process, Map<Long, Long> cpu) {
+        long nanos = process.info().totalCpuDuration().map(Duration::toNanos)
+                .orElse(helperCpuNanos.getOrDefault(process.pid(), 0L));
+        cpu.put(process.pid(), nanos);
+        return nanos;
+    }
+
+    private List<ProcessHandle> clamdProcesses() {
+        long now = System.currentTimeMillis();
+        if (now - clamdLookupMillis >= CLAMD_LOOKUP_MILLIS || !clamdProcesses.stream().allMatch(ProcessHandle::isAlive)) {
+            clamdProcesses = ProcessHandle.allProcesses().filter(IoGovernor::isClamd).toList();
+            clamdLookupMillis = now;
+        }
+        return clamdProcesses;
+    }
+
+    private static boolean isClamd(ProcessHandle process) {
+        return process.info().command()
+                .map(command -> command.substring(Math.max(command.lastIndexOf('/'), command.lastIndexOf('\\')) + 1))
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .filter(name -> name.equals("clamd") || name.equals("clamd.exe"))
+                .isPresent();
+    }
+
+    /**
+     * Classic token bucket with a one-second burst. Requests larger than the bucket are allowed to
+     * drive it negative, so big reads are never starved; later callers wait until it refills.
+     */
+    private static final class TokenBucket {
+        private long rate; // tokens per second, 0 = unlimited
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        synchronized void setRate(long rate) {
+            refill();
+            this.rate = Math.max(0, rate);
+            this.tokens = Math.min(tokens, this.rate);
+        }
+
+        synchronized long getRate() {
+            return rate;
+        }
+
+        /**
+         * Takes the tokens, sleeping first if the bucket is in debt.
+         * @return Nanoseconds spent waiting.
+         */
+        long acquire(long count) {
+            long waitNanos;
+            synchronized (this) {
+                if (rate == 0) return 0;
+                refill();
+                waitNanos = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+                tokens -= count;
+            }
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return waitNanos;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(rate, tokens + (now - lastRefillNanos) / 1e9 * rate);
+            lastRefillNanos = now;
+        }
+    }
+}
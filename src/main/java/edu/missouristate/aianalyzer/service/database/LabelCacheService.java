@@ -0,0 +1,111 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import edu.missouristate.aianalyzer.service.ai.ScanForVirusService;
+import edu.missouristate.aianalyzer.utility.ai.AiQueryUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import static edu.missouristate.aianalyzer.model.FileInterpretation.IMAGE_TYPES;
+import static edu.missouristate.aianalyzer.model.FileInterpretation.SUPPORTED_FILE_TYPES;
+
+/**
+ * Reuses the label of a byte-identical file so copies of the same installer, PDF or document skip
+ * ClamAV and the AI. Candidates are found by the fast content hash; the bytes are only considered
+ * identical if the whole-file SHA-256 matches as well (see ContentHashService).
+ *
+ * A label is only reused if it was produced with the current ClamAV signatures and, for AI labels,
+ * the current prompt (AiQueryUtil.PROMPT_VERSION). Reusable labels are:
+ * - an AI classification,
+ * - a ClamAV "Malicious" verdict (the AI is never asked about infected files),
+ * - a ClamAV "Safe" verdict for a file type the AI does not support.
+ * A ClamAV "Safe" label on a supported type means the AI step failed, so it is not reused.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LabelCacheService {
+
+    private final FileRecordRepository fileRecordRepository;
+    private final LabelService labelService;
+    private final ContentHashService contentHashService;
+
+    // Turns the content-hash label cache on or off.
+    @Value("${scan.label-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Looks for a reusable label for the file's content and applies it.
+     * @param ext The file's extension.
+     * @param contentHash The fast hash stored by the hash stage.
+     * @param sha256 The file's SHA-256, or null if no other file had the same content hash when it was hashed.
+     * @return true if a cached label was applied and the file needs no further processing.
+     */
+    public boolean applyCachedLabel(String path, String ext, String contentHash, String sha256) {
+        // Image hashes are perceptual (similar-looking images share them), so they do not prove identical bytes.
+        if (!enabled || contentHash == null || sha256 == null || IMAGE_TYPES.contains(ext.toLowerCase())) {
+            return false;
+        }
+        String clamVersion = ScanForVirusService.getSignatureVersion();
+        if (clamVersion == null) {
+            return false;
+        }
+        Optional<FileRecord> cached = fileRecordRepository
+                .findLabeledCopies(contentHash, path, clamVersion, PageRequest.of(0, 5)).stream()
+                .filter(copy -> isReusable(copy, ext))
+                .filter(copy -> sha256.equals(sha256Of(copy)))
+                .findFirst();
+        if (cached.isEmpty()) {
+            return false;
+        }
+        labelService.applyCachedLabel(path, cached.get());
+        log.info("Reused {} label of identical file {} for {}", cached.get().getTypeLabel(), cached.get().getPath(), path);
+        return true;
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * The copy's SHA-256. The first file with some content is hashed before any copy exists, so its
+     * SHA-256 is computed here when a copy first needs it, provided the file still looks unchanged.
+     */
+    private String sha256Of(FileRecord copy) {
+        if (copy.getSha256() != null) {
+            return copy.getSha256();
+        }
+        try {
+            Path copyPath = Paths.get(copy.getPath());
+            if (!Files.isRegularFile(copyPath) || Files.size(copyPath) != copy.getSizeBytes()
+                    || Files.getLastModifiedTime(copyPath).toMillis() / 1000 != copy.getMtimeUnix()) {
+                return null;
+            }
+            String sha256 = contentHashService.sha256(copyPath);
+            fileRecordRepository.updateSha256(copy.getId(), sha256);
+            return sha256;
+        } catch (IOException e) {
+            log.debug("Could not hash {} for the label cache: {}", copy.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isReusable(FileRecord copy, String ext) {
+        String source = copy.getTypeLabelSource();
+        if ("AI".equalsIgnoreCase(source)) {
+            return AiQueryUtil.PROMPT_VERSION.equals(copy.getPromptVersion());
+        }
+        if ("ClamAV".equalsIgnoreCase(source)) {
+            return "Malicious".equalsIgnoreCase(copy.getTypeLabel()) || !SUPPORTED_FILE_TYPES.contains(ext.toLowerCase());
+        }
+        return false; // User decisions, scan errors, quarantine labels
+    }
+}
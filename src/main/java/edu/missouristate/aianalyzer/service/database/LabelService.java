@@ -7,7 +7,9 @@ import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
 import edu.missouristate.aianalyzer.repository.database.LabelHistoryRepository; // You will create this repository next
 =======
 import edu.missouristate.aianalyzer.repository.database.LabelHistoryRepository;
+import edu.missouristate.aianalyzer.service.ai.ScanForVirusService;
 import edu.missouristate.aianalyzer.service.metrics.MetricsService;
+import edu.missouristate.aianalyzer.utility.ai.AiQueryUtil;
 >>>>>>> clean-feature-branch
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -66,6 +68,14 @@ public class LabelService {
         fileRecordRepository.save(fileRecord); // Save the changes.
 =======
         fileRecord.setAiAnalyzedUnix(now);
+        fileRecord.setLabelCachedFrom(null);
+
+        // Record what produced the label, so it can be reused for identical content (see LabelCacheService).
+        if ("ClamAV".equalsIgnoreCase(source)) {
+            fileRecord.setClamSignatureVersion(ScanForVirusService.getSignatureVersion());
+        } else if ("AI".equalsIgnoreCase(source)) {
+            fileRecord.setPromptVersion(AiQueryUtil.PROMPT_VERSION);
+        }
 
         // Set summary if provided
         if (summary != null && !summary.isBlank()) {
@@ -99,6 +109,36 @@ public class LabelService {
         }
     }
 
+    /**
+     * Copies the label of a file with identical content instead of scanning and analyzing this one.
+     * @param path The full path of the file.
+     * @param cached The record whose label is reused (see LabelCacheService).
+     */
+    @Transactional
+    public void applyCachedLabel(String path, FileRecord cached) {
+        long now = Instant.now().getEpochSecond();
+
+        FileRecord fileRecord = fileRecordRepository.findByPath(path)
+                .orElseThrow(() -> new IllegalArgumentException("No such file in database: " + path));
+        fileRecord.setTypeLabel(cached.getTypeLabel());
+        fileRecord.setTypeLabelConfidence(cached.getTypeLabelConfidence());
+        fileRecord.setTypeLabelSource(cached.getTypeLabelSource());
+        fileRecord.setTypeLabelUpdatedUnix(now);
+        fileRecord.setAiSummary(cached.getAiSummary());
+        fileRecord.setAiAnalyzedUnix(cached.getAiAnalyzedUnix());
+        fileRecord.setPromptVersion(cached.getPromptVersion());
+        fileRecord.setClamSignatureVersion(cached.getClamSignatureVersion());
+        fileRecord.setLabelCachedFrom(cached.getId());
+
+        LabelHistory history = new LabelHistory();
+        history.setPath(path);
+        history.setLabel(cached.getTypeLabel());
+        history.setConfidence(cached.getTypeLabelConfidence());
+        history.setSource("Cache");
+        history.setCreatedUnix(now);
+        labelHistoryRepository.save(history);
+    }
+
     /**
      * Overload without summary for backward compatibility.
      */
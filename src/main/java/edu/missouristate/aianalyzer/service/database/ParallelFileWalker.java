@@ -0,0 +1,151 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Work-stealing directory walker built on a ForkJoinPool.
+ *
+ * Every directory listing is its own task, so subdirectories discovered by one thread
+ * can be stolen by idle threads. This keeps all cores busy even when only a single
+ * (very large) root is being scanned, unlike one Files.walkFileTree per root.
+ */
+@Slf4j
+public class ParallelFileWalker {
+
+    /**
+     * Callbacks invoked by the walker. Implementations must be thread-safe,
+     * since they are called concurrently from all pool threads.
+     */
+    public interface Visitor {
+
+        /**
+         * Called before a directory is listed.
+         * @return false to skip the directory and its whole subtree without listing it.
+         */
+        boolean enterDirectory(Path dir, BasicFileAttributes attrs);
+
+        /**
+         * Called for every regular file found in a listed directory.
+         */
+        void visitFile(Path file, BasicFileAttributes attrs);
+
+        /**
+         * Called once a directory and its whole (accepted) subtree have been walked. Not called if the
+         * directory, one of its entries or any directory below it could not be read, so the directory
+         * is not reported as complete while part of it was never visited.
+         */
+        default void leaveDirectory(Path dir) {
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism Number of worker threads. Values below 1 use the number of available processors.
+     */
+    public ParallelFileWalker(int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads, forkJoinPool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("active-scan-walker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Walks all roots in parallel and blocks until every reachable directory has been listed.
+     */
+    public void walk(List<Path> roots, Visitor visitor) {
+        List<ForkJoinTask<Boolean>> rootTasks = new ArrayList<>();
+        for (Path root : roots) {
+            BasicFileAttributes attrs = readAttributes(root);
+            if (attrs == null || !attrs.isDirectory()) {
+                log.warn("Scan root is not a readable directory, skipping: {}", root);
+                continue;
+            }
+            if (visitor.enterDirectory(root, attrs)) {
+                rootTasks.add(pool.submit(new DirectoryTask(root, visitor)));
+            }
+        }
+        for (ForkJoinTask<Boolean> task : rootTasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Stops the worker threads. The walker cannot be reused afterwards.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            log.warn("Failed to read attributes: {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Lists a single directory, reports its files, and forks one task per accepted subdirectory.
+     * Yields true if the directory and everything below it were read without errors.
+     */
+    private static class DirectoryTask extends RecursiveTask<Boolean> {
+        private final Path dir;
+        private final Visitor visitor;
+
+        DirectoryTask(Path dir, Visitor visitor) {
+            this.dir = dir;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected Boolean compute() {
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            boolean complete = true;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs = readAttributes(entry);
+                    if (attrs == null) {
+                        complete = false;
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (visitor.enterDirectory(entry, attrs)) {
+                            subtasks.add(new DirectoryTask(entry, visitor));
+                        }
+                    } else if (attrs.isRegularFile()) {
+                        visitor.visitFile(entry, attrs);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                log.warn("Failed to list directory: {}", dir, e);
+                complete = false;
+            }
+            invokeAll(subtasks);
+            for (DirectoryTask subtask : subtasks) {
+                complete &= subtask.join();
+            }
+            if (complete) {
+                visitor.leaveDirectory(dir);
+            }
+            return complete;
+        }
+    }
+}
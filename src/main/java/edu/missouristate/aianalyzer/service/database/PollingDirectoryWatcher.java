@@ -0,0 +1,286 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Polling fallback for subtrees the WatchService cannot cover (inotify watch limit reached,
+ * NFS/SMB mounts that never deliver events, directories that failed to register).
+ *
+ * Each polled directory keeps a snapshot of its own mtime and entries. A cycle stats directories
+ * round-robin and only re-lists the ones whose mtime moved, diffing the listing against the
+ * snapshot. The number of directory stats/listings per cycle is capped, so a huge polled tree is
+ * covered over several cycles instead of producing an I/O spike.
+ *
+ * Note that rewriting a file in place does not change its directory's mtime; such edits are
+ * picked up the next time the directory is re-listed or by the next active scan.
+ */
+@Slf4j
+public class PollingDirectoryWatcher {
+
+    /**
+     * Callbacks invoked on the polling thread.
+     */
+    public interface Listener {
+
+        /** A regular file appeared or its size/mtime changed. */
+        void fileChanged(Path file, BasicFileAttributes attrs);
+
+        /** A file or directory (including everything below it) disappeared. */
+        void pathDeleted(Path path);
+    }
+
+    /** Size/mtime of a directory entry as of the last listing. */
+    private record EntryState(boolean directory, long size, long mtimeMillis) {}
+
+    /** Directory mtime plus its entries (by file name) as of the last listing. */
+    private record DirSnapshot(long mtimeMillis, Map<String, EntryState> entries) {}
+
+    /** A directory that still has to be listed for the first time. */
+    private record Discovery(Path dir, boolean reportFiles) {}
+
+    private final int maxDirsPerCycle;
+    private final long intervalMillis;
+    private final Predicate<Path> directoryFilter;
+    private final Listener listener;
+
+    private final Map<Path, DirSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<Path> subtreeRoots = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Discovery> discovery = new ConcurrentLinkedQueue<>();
+    // Only touched by the polling thread.
+    private final ArrayDeque<Path> rotation = new ArrayDeque<>();
+    private final ScheduledExecutorService timer;
+
+    private boolean discoveryInProgress = false;
+
+    /**
+     * @param intervalMillis  Delay between polling cycles.
+     * @param maxDirsPerCycle I/O budget: directory stats plus listings allowed per cycle.
+     * @param directoryFilter Returns false for directories that must not be polled (and not descended into).
+     * @param listener        Receives the detected changes.
+     */
+    public PollingDirectoryWatcher(long intervalMillis, int maxDirsPerCycle,
+                                   Predicate<Path> directoryFilter, Listener listener) {
+        this.intervalMillis = intervalMillis;
+        this.maxDirsPerCycle = Math.max(1, maxDirsPerCycle);
+        this.directoryFilter = directoryFilter;
+        this.listener = listener;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Passive-Watcher-Poll");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::pollCycle, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts polling the directory and everything below it. Directories that are already
+     * polled are ignored.
+     *
+     * @param reportExisting If true, files already present are reported as changed when first listed.
+     */
+    public void addSubtree(Path dir, boolean reportExisting) {
+        if (snapshots.containsKey(dir) || !subtreeRoots.add(dir)) {
+            return;
+        }
+        discovery.add(new Discovery(dir, reportExisting));
+    }
+
+    /** Number of subtrees handed to the poller. */
+    public int subtreeCount() {
+        return subtreeRoots.size();
+    }
+
+    /** Number of directories currently covered by polling. */
+    public int directoryCount() {
+        return snapshots.size();
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    // --- Helper Methods ---
+
+    private void pollCycle() {
+        try {
+            int budget = maxDirsPerCycle;
+
+            // Newly added subtrees are indexed first, a budget's worth at a time.
+            Discovery next;
+            while (budget > 0 && (next = discovery.poll()) != null) {
+                discoveryInProgress = true;
+                budget -= index(next.dir(), next.reportFiles());
+            }
+            if (discoveryInProgress && discovery.isEmpty()) {
+                discoveryInProgress = false;
+                logCoverage();
+            }
+
+            // Then check known directories round-robin with what is left.
+            int checks = Math.min(budget, rotation.size());
+            for (int i = 0; i < checks && budget > 0; i++) {
+                Path dir = rotation.poll();
+                int cost = check(dir);
+                if (cost > 0) {
+                    rotation.add(dir);
+                }
+                budget -= Math.abs(cost);
+            }
+        } catch (Exception e) {
+            log.error("Polling watcher cycle failed", e);
+        }
+    }
+
+    /**
+     * Lists a directory for the first time and queues its subdirectories.
+     * @return The I/O cost of the call.
+     */
+    private int index(Path dir, boolean reportFiles) {
+        if (snapshots.containsKey(dir)) {
+            return 0;
+        }
+        BasicFileAttributes dirAttrs = stat(dir);
+        if (dirAttrs == null || !dirAttrs.isDirectory()) {
+            subtreeRoots.remove(dir);
+            return 1;
+        }
+        Map<String, EntryState> entries = list(dir, (child, attrs) -> {
+            if (attrs.isDirectory()) {
+                discovery.add(new Discovery(child, reportFiles));
+            } else if (reportFiles) {
+                listener.fileChanged(child, attrs);
+            }
+        });
+        snapshots.put(dir, new DirSnapshot(dirAttrs.lastModifiedTime().toMillis(), entries));
+        rotation.add(dir);
+        return 2;
+    }
+
+    /**
+     * Stats a known directory and, if its mtime moved, re-lists and diffs it.
+     * @return The I/O cost of the call; zero or negative (the cost negated) if the directory should
+     *         leave the rotation. A directory created again later is added back by index().
+     */
+    private int check(Path dir) {
+        DirSnapshot previous = snapshots.get(dir);
+        if (previous == null) {
+            // Dropped together with a deleted parent; no I/O was done.
+            return 0;
+        }
+        BasicFileAttributes dirAttrs = stat(dir);
+        if (dirAttrs == null || !dirAttrs.isDirectory()) {
+            forgetTree(dir);
+            // A parent that is still polled reports the delete when it is re-listed.
+            if (!snapshots.containsKey(dir.getParent())) {
+                subtreeRoots.remove(dir);
+                listener.pathDeleted(dir);
+            }
+            return -1;
+        }
+        long mtime = dirAttrs.lastModifiedTime().toMillis();
+        if (mtime == previous.mtimeMillis()) {
+            return 1;
+        }
+
+        Map<String, EntryState> current = list(dir, (child, attrs) -> {
+            EntryState before = previous.entries().get(child.getFileName().toString());
+            if (before != null && before.directory() != attrs.isDirectory()) {
+                // Replaced by an entry of the other type.
+                if (before.directory()) forgetTree(child);
+                listener.pathDeleted(child);
+                before = null;
+            }
+            if (attrs.isDirectory()) {
+                if (before == null) {
+                    discovery.add(new Discovery(child, true));
+                }
+            } else if (before == null
+                    || before.size() != attrs.size()
+                    || before.mtimeMillis() != attrs.lastModifiedTime().toMillis()) {
+                listener.fileChanged(child, attrs);
+            }
+        });
+        for (Map.Entry<String, EntryState> gone : previous.entries().entrySet()) {
+            if (!current.containsKey(gone.getKey())) {
+                Path child = dir.resolve(gone.getKey());
+                if (gone.getValue().directory()) forgetTree(child);
+                listener.pathDeleted(child);
+            }
+        }
+        snapshots.put(dir, new DirSnapshot(mtime, current));
+        return 2;
+    }
+
+    /**
+     * Lists the directory's entries, passing each to the visitor.
+     * Excluded subdirectories are neither recorded nor visited.
+     */
+    private Map<String, EntryState> list(Path dir, EntryVisitor visitor) {
+        Map<String, EntryState> entries = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                BasicFileAttributes attrs = stat(child);
+                if (attrs == null) continue;
+                if (attrs.isDirectory()) {
+                    if (!directoryFilter.test(child)) continue;
+                    entries.put(child.getFileName().toString(), new EntryState(true, 0, 0));
+                } else if (attrs.isRegularFile()) {
+                    entries.put(child.getFileName().toString(),
+                            new EntryState(false, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                } else {
+                    continue;
+                }
+                visitor.visit(child, attrs);
+            }
+        } catch (IOException e) {
+            log.debug("Polling watcher could not list {}: {}", dir, e.getMessage());
+        }
+        return entries;
+    }
+
+    /** Drops the snapshots of a directory and everything below it. */
+    private void forgetTree(Path dir) {
+        snapshots.keySet().removeIf(p -> p.startsWith(dir));
+    }
+
+    private void logCoverage() {
+        int dirs = snapshots.size();
+        long cyclesPerPass = Math.max(1, (dirs + maxDirsPerCycle - 1) / maxDirsPerCycle);
+        log.info("Polling watcher covers {} directories in {} subtree(s); a full pass takes about {} s.",
+                dirs, subtreeRoots.size(), cyclesPerPass * intervalMillis / 1000);
+    }
+
+    private static BasicFileAttributes stat(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.debug("Polling watcher could not stat {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryVisitor {
+        void visit(Path child, BasicFileAttributes attrs);
+    }
+}
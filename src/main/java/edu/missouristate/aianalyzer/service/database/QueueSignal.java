@@ -0,0 +1,65 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process wakeup for the scan queue consumers.
+ *
+ * Producers call signal() whenever rows may have become claimable (a flush by the batch writer,
+ * a released or reclaimed lease). Idle workers wait on it instead of sleeping a fixed poll interval,
+ * so a new file is picked up as soon as it reaches the table. The poll interval remains as an upper
+ * bound on the wait, for rows whose not_before_unix passes while nobody signals.
+ *
+ * A worker reads generation() before it claims and passes the value to await(), so a signal that
+ * arrives between an empty claim and the wait is not lost.
+ */
+@Service
+public class QueueSignal {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private long generation = 0;
+
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes all waiting workers.
+     */
+    public void signal() {
+        lock.lock();
+        try {
+            generation++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until signal() is called after the given generation was read, or the timeout elapses.
+     * @return true if woken by a signal, false on timeout.
+     */
+    public boolean await(long seenGeneration, long timeoutMillis) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (generation == seenGeneration && nanos > 0) {
+                nanos = changed.awaitNanos(nanos);
+            }
+            return generation != seenGeneration;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the folders the user opens in the UI so their files jump ahead of the background backlog.
+ *
+ * Opening a folder raises its files that are already queued to PRIORITY_USER_FOCUS, and files in it
+ * that are enqueued while the focus lasts get that class too (see ActiveScanService).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScanFocusService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ScanQueueLeases scanQueueLeases;
+
+    // How long an opened folder keeps its files at the front of the scan queue.
+    @Value("${scan.focus.ttl-ms:600000}")
+    private long focusTtlMillis;
+
+    // Focused folder -> expiry (epoch millis).
+    private final Map<String, Long> focused = new ConcurrentHashMap<>();
+
+    /**
+     * Records that the user opened a folder and moves its queued entries to the user-focus class.
+     * Never throws, since it is called from the UI's directory listing.
+     *
+     * @param dir      The folder the user opened.
+     * @param children Its entries as listed for display (folders in the list are simply not matched).
+     */
+    public void focus(Path dir, List<Path> children) {
+        long now = System.currentTimeMillis();
+        focused.values().removeIf(expiry -> expiry < now);
+        focused.put(dir.toAbsolutePath().toString(), now + focusTtlMillis);
+
+        try {
+            int raised = 0;
+            for (int i = 0; i < children.size(); i += 500) {
+                List<Path> chunk = children.subList(i, Math.min(children.size(), i + 500));
+                List<Object> args = new ArrayList<>(chunk.size() + 2);
+                args.add(ScanQueueItem.PRIORITY_USER_FOCUS);
+                chunk.forEach(p -> args.add(p.toAbsolutePath().toString()));
+                args.add(ScanQueueItem.PRIORITY_USER_FOCUS);
+                raised += jdbcTemplate.update("UPDATE scan_queue SET priority = ? WHERE path IN ("
+                        + String.join(",", Collections.nCopies(chunk.size(), "?")) + ") AND priority < ?",
+                        args.toArray());
+            }
+            if (raised > 0) {
+                scanQueueLeases.refreshLanesSoon();
+                log.debug("Raised {} queued file(s) in {} to user-focus priority.", raised, dir);
+            }
+        } catch (Exception e) {
+            log.warn("Could not prioritize queued files in {}: {}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if the file's folder was opened by the user within the focus window.
+     */
+    public boolean isFocused(Path file) {
+        if (focused.isEmpty()) return false;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent == null) return false;
+        Long expiry = focused.get(parent.toString());
+        return expiry != null && expiry >= System.currentTimeMillis();
+    }
+}
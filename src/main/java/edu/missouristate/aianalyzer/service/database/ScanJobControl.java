@@ -0,0 +1,144 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared state between a running active scan and whoever controls it.
+ *
+ * Walker threads ask shouldEnter before listing a directory (blocking while paused, refusing
+ * once cancelled or when the subtree is already checkpointed) and report finished directories
+ * via directoryCompleted. The controller pauses/resumes/cancels and drains the completed
+ * directories to persist them as checkpoints.
+ */
+public class ScanJobControl {
+
+    private final Set<String> alreadyCompleted;
+    private final ConcurrentLinkedQueue<String> newlyCompleted = new ConcurrentLinkedQueue<>();
+    private final AtomicLong dirsScanned = new AtomicLong();
+    private final AtomicLong filesSeen = new AtomicLong();
+    private final Object pauseLock = new Object();
+
+    private volatile boolean paused = false;
+    private volatile boolean cancelled = false;
+    private volatile Exception failure;
+
+    /**
+     * @param alreadyCompleted Directories checkpointed by an earlier session of the same job.
+     */
+    public ScanJobControl(Set<String> alreadyCompleted) {
+        this.alreadyCompleted = alreadyCompleted;
+    }
+
+    /** A control with no checkpoints that is never paused or cancelled. */
+    public static ScanJobControl unmanaged() {
+        return new ScanJobControl(Set.of());
+    }
+
+    /**
+     * Called by walker threads before a directory is listed. Blocks while the scan is paused.
+     * @return false if the subtree must be skipped.
+     */
+    public boolean shouldEnter(Path dir) {
+        awaitIfPaused();
+        return !cancelled && !alreadyCompleted.contains(dir.toAbsolutePath().toString());
+    }
+
+    public void fileSeen() {
+        filesSeen.incrementAndGet();
+    }
+
+    /**
+     * Called once a directory and everything below it has been walked.
+     * Ignored after a cancel, since subtrees may then have been skipped.
+     */
+    public void directoryCompleted(Path dir) {
+        if (cancelled) return;
+        dirsScanned.incrementAndGet();
+        newlyCompleted.add(dir.toAbsolutePath().toString());
+    }
+
+    /**
+     * Removes and returns the directories completed since the last call.
+     */
+    public List<String> drainCompleted() {
+        List<String> drained = new ArrayList<>();
+        String next;
+        while ((next = newlyCompleted.poll()) != null) {
+            drained.add(next);
+        }
+        return drained;
+    }
+
+    /**
+     * Puts back directories that were drained but could not be persisted, so the next drain returns them again.
+     */
+    public void restoreCompleted(List<String> dirs) {
+        newlyCompleted.addAll(dirs);
+    }
+
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        resume();
+    }
+
+    /**
+     * Records that the walk stopped with an error. Directories reported as completed before that
+     * remain valid checkpoints.
+     */
+    public void failed(Exception e) {
+        failure = e;
+    }
+
+    /** @return The error the walk stopped with, or null if it ran to the end (or was cancelled). */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getDirsScanned() {
+        return dirsScanned.get();
+    }
+
+    public long getFilesSeen() {
+        return filesSeen.get();
+    }
+
+    // --- Helper Methods ---
+
+    private void awaitIfPaused() {
+        if (!paused) return;
+        synchronized (pauseLock) {
+            while (paused) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffered enqueue stage for the scan_queue table.
+ *
+ * Walker threads hand their ScanQueueItems to this writer instead of saving them one by one.
+ * Items are flushed in large JDBC batches using SQLite's INSERT ... ON CONFLICT(path) DO UPDATE,
+ * either when the buffer reaches the batch size or when the flush interval elapses.
+ * The queue holds at most one row per path: re-enqueuing a queued path keeps the earliest
+ * notBeforeUnix and the highest priority, upgrades a VIRUS_RESCAN row to ACTIVE_AI, and bumps the
+ * row's revision.
+ *
+ * In front of the database sits a bounded, exact set of recently enqueued paths. An item whose
+ * path is in it and that asks for nothing earlier or more urgent than what is already queued is
+ * dropped without touching SQLite (the watcher and repeated scans produce many of these). The
+ * consumer calls forget() when it takes an item, so changes made while a file is being processed
+ * always reach the row.
+ *
+ * A batch that cannot be written (for example while another connection holds SQLite's write lock)
+ * is retried with a doubling delay. If it still fails, it goes back to the head of the buffer and
+ * the next flush tries again, so nothing that was admitted is lost.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScanQueueBatchWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScanQueueLeases scanQueueLeases;
+    private final QueueSignal queueSignal;
+
+    // Number of buffered items that triggers an immediate flush.
+    @Value("${scan.enqueue.batch-size:2000}")
+    private int batchSize;
+
+    // Number of recently enqueued paths remembered by the front filter (least recently used are dropped).
+    @Value("${scan.enqueue.front-filter-size:50000}")
+    private int frontFilterSize;
+
+    // Attempts to write a batch before the flush gives up and keeps it for the next flush.
+    @Value("${scan.enqueue.max-attempts:4}")
+    private int maxAttempts;
+
+    // Wait before the first retry of a failed batch; doubled for each further retry.
+    @Value("${scan.enqueue.retry-delay-ms:100}")
+    private long retryDelayMillis;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO scan_queue (path, kind, not_before_unix, attempts, priority, root, revision)
+            VALUES (?, ?, ?, ?, ?, ?, 0)
+            ON CONFLICT(path) DO UPDATE SET
+                not_before_unix = MIN(scan_queue.not_before_unix, excluded.not_before_unix),
+                priority = MAX(scan_queue.priority, excluded.priority),
+                kind = CASE WHEN excluded.kind = 'ACTIVE_AI' THEN excluded.kind ELSE scan_queue.kind END,
+                revision = scan_queue.revision + 1
+            """;
+
+    // What the queue row of a recently enqueued path is known to already ask for.
+    private record Requested(long notBeforeUnix, int priority, boolean fullScan) {
+    }
+
+    private Map<String, Requested> recent;
+
+    private final ConcurrentLinkedDeque<ScanQueueItem> buffer = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Running totals, reported after each scan.
+    private final AtomicLong insertedTotal = new AtomicLong();
+    private final AtomicLong mergedTotal = new AtomicLong();
+    private final AtomicLong filteredTotal = new AtomicLong();
+
+    private volatile boolean schemaReady = false;
+
+    /**
+     * Adds an item to the buffer. Safe to call from any number of walker threads.
+     * If the buffer is full, the calling thread performs the flush unless another thread already is.
+     */
+    public void enqueue(ScanQueueItem item) {
+        if (!admit(item)) {
+            filteredTotal.incrementAndGet();
+            return;
+        }
+        buffer.add(item);
+        if (buffered.incrementAndGet() >= batchSize && flushLock.tryLock()) {
+            try {
+                while (buffered.get() >= batchSize) {
+                    if (!flushBatch()) {
+                        break; // Kept in the buffer; the next flush tries again.
+                    }
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds an item and writes it out right away, for single files that should not wait for the
+     * flush interval (watcher events).
+     */
+    public void enqueueNow(ScanQueueItem item) {
+        enqueue(item);
+        flush();
+    }
+
+    /**
+     * Time-based flush so that small trickles of items (e.g. from the passive watcher) are not held back.
+     */
+    @Scheduled(fixedDelayString = "${scan.enqueue.flush-interval-ms:2000}")
+    public void flushOnInterval() {
+        flush();
+    }
+
+    /**
+     * Drains the whole buffer to the database. Blocks until any in-progress flush completes.
+     * @return true if every item enqueued so far is in the table; false if a batch still could not be
+     * written after its retries (it stays buffered).
+     */
+    public boolean flush() {
+        flushLock.lock();
+        try {
+            while (buffered.get() > 0) {
+                if (!flushBatch()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Drops a path from the front filter. Called by the consumer when it takes the path's row,
+     * since the row is about to be deleted or rescheduled.
+     */
+    public synchronized void forget(String path) {
+        recent().remove(path);
+    }
+
+    public long getInsertedTotal() {
+        return insertedTotal.get();
+    }
+
+    public long getMergedTotal() {
+        return mergedTotal.get();
+    }
+
+    public long getFilteredTotal() {
+        return filteredTotal.get();
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Returns false if the queue already holds this path with an earlier-or-equal notBeforeUnix,
+     * a higher-or-equal priority and at least the same kind of scan; otherwise records the merged
+     * request and returns true.
+     */
+    private synchronized boolean admit(ScanQueueItem item) {
+        Requested known = recent().get(item.getPath());
+        boolean fullScan = item.getKind() == ScanQueueItem.Kind.ACTIVE_AI;
+        if (known != null && item.getNotBeforeUnix() >= known.notBeforeUnix()
+                && item.getPriority() <= known.priority() && (!fullScan || known.fullScan())) {
+            return false;
+        }
+        recent.put(item.getPath(), known == null
+                ? new Requested(item.getNotBeforeUnix(), item.getPriority(), fullScan)
+                : new Requested(Math.min(known.notBeforeUnix(), item.getNotBeforeUnix()),
+                                Math.max(known.priority(), item.getPriority()), known.fullScan() || fullScan));
+        return true;
+    }
+
+    // The LRU map is created lazily because its capacity comes from an injected property.
+    // Caller must hold the monitor.
+    private Map<String, Requested> recent() {
+        if (recent == null) {
+            int capacity = Math.max(0, frontFilterSize);
+            recent = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Requested> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+        return recent;
+    }
+
+    /**
+     * Writes up to batchSize buffered items in a single transaction, retrying with a doubling delay.
+     * A batch that still fails is put back at the head of the buffer.
+     * Must be called while holding flushLock.
+     * @return false if the batch could not be written.
+     */
+    private boolean flushBatch() {
+        List<ScanQueueItem> batch = new ArrayList<>(Math.min(batchSize, buffered.get()));
+        ScanQueueItem next;
+        while (batch.size() < batchSize && (next = buffer.poll()) != null) {
+            batch.add(next);
+        }
+        buffered.addAndGet(-batch.size());
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        long delayMillis = Math.max(0, retryDelayMillis);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeBatch(batch);
+                return true;
+            } catch (Exception e) {
+                if (attempt >= Math.max(1, maxAttempts) || !sleep(delayMillis)) {
+                    log.error("Failed to flush {} items to the scan queue after {} attempts; keeping them for the "
+                            + "next flush.", batch.size(), attempt, e);
+                    // Back at the head, so the batch keeps its place ahead of items enqueued since.
+                    for (int i = batch.size() - 1; i >= 0; i--) {
+                        buffer.addFirst(batch.get(i));
+                    }
+                    buffered.addAndGet(batch.size());
+                    return false;
+                }
+                log.warn("Failed to flush {} items to the scan queue (attempt {}); retrying in {} ms: {}",
+                        batch.size(), attempt, delayMillis, e.getMessage());
+                delayMillis *= 2;
+            }
+        }
+    }
+
+    // Upserts one batch in a single transaction, then announces its lanes and wakes the consumers.
+    private void writeBatch(List<ScanQueueItem> batch) {
+        ensureSchema();
+        long inserted = transactionTemplate.execute(status -> {
+            // Rowids are allocated as MAX(id) + 1, so the growth of MAX(id) inside this
+            // transaction is exactly the number of rows the upsert inserted.
+            long before = maxId();
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch, batch.size(), (ps, item) -> {
+                ps.setString(1, item.getPath());
+                ps.setString(2, item.getKind().name());
+                ps.setLong(3, item.getNotBeforeUnix());
+                ps.setInt(4, item.getAttempts());
+                ps.setInt(5, item.getPriority());
+                ps.setString(6, item.getRoot() != null ? item.getRoot() : "");
+            });
+            return maxId() - before;
+        });
+        long merged = batch.size() - inserted;
+        insertedTotal.addAndGet(inserted);
+        mergedTotal.addAndGet(merged);
+        log.debug("Flushed {} queue items ({} inserted, {} merged).", batch.size(), inserted, merged);
+        batch.stream()
+                .map(item -> Map.entry(item.getPriority(), item.getRoot() != null ? item.getRoot() : ""))
+                .distinct()
+                .forEach(lane -> scanQueueLeases.addLane(lane.getKey(), lane.getValue()));
+        queueSignal.signal();
+    }
+
+    // Returns false if the thread was interrupted, so the caller stops retrying.
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long maxId() {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM scan_queue", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    /**
+     * ON CONFLICT(path) needs a unique index on path. Older databases may already hold duplicate
+     * rows, so those are collapsed (keeping the oldest row) before the index is created, and the
+     * old non-unique path index is dropped.
+     */
+    private void ensureSchema() {
+        if (schemaReady) return;
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("""
+                    DELETE FROM scan_queue
+                    WHERE id NOT IN (SELECT MIN(id) FROM scan_queue GROUP BY path)
+                    """);
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS ux_sq_path ON scan_queue(path)");
+            jdbcTemplate.execute("DROP INDEX IF EXISTS ix_sq_path");
+        });
+        schemaReady = true;
+    }
+}
@@ -0,0 +1,278 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lease bookkeeping for the scan queue consumers.
+ *
+ * A worker claims due rows by writing a claim token (its name plus a sequence number) into
+ * claimed_by and an expiry into lease_until. The claim is a single UPDATE, so two workers can never
+ * take the same row. Items are renewed while they move through the processing stages and released
+ * when done. Leases left behind by a crashed worker or process expire and are handed back to the queue.
+ *
+ * Items are picked by lane, a lane being one (priority class, scan root) pair. Priority classes are
+ * strict: a lower class is only served when no higher class has anything due. Within a class, roots
+ * take turns by smooth weighted round-robin, so one huge root cannot starve the others. A claim reads
+ * up to limit candidates per lane with one index range lookup on (priority, root, not_before_unix),
+ * takes turns between the lanes in memory, and claims the picked rows with one UPDATE; the table
+ * itself is never scanned.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScanQueueLeases {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final QueueSignal queueSignal;
+
+    // How long a claimed item belongs to its worker before it may be handed to another one.
+    @Value("${scan.consumer.lease-seconds:600}")
+    private long leaseSeconds;
+
+    // Share of each scan root within a priority class, e.g. "D:/Photos=3,C:/Users/Josh=1" (default 1).
+    @Value("${scan.queue.root-weights:}")
+    private String rootWeightsSetting;
+
+    // How often the lanes present in the queue are re-read (new lanes are also reported by the writer).
+    @Value("${scan.queue.lane-refresh-ms:30000}")
+    private long laneRefreshMillis;
+
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    // Priority class (highest first) -> roots that have rows in that class.
+    private final NavigableMap<Integer, Set<String>> lanes = new TreeMap<>(Comparator.reverseOrder());
+    private long lanesReadMillis = 0;
+
+    // Smooth weighted round-robin state: priority class -> root -> current weight.
+    private final Map<Integer, Map<String, Long>> roundRobin = new HashMap<>();
+    private Map<String, Integer> rootWeights;
+
+    private static final String DUE_IN_LANE_SQL = """
+            SELECT id FROM scan_queue
+            WHERE priority = ? AND root = ? AND not_before_unix <= ? AND claimed_by IS NULL
+            ORDER BY not_before_unix
+            LIMIT ?
+            """;
+
+    private static final String CLAIMED_SQL = """
+            SELECT id, path, kind, not_before_unix, attempts, priority, root, revision, claimed_by, lease_until
+            FROM scan_queue
+            WHERE claimed_by = ?
+            ORDER BY priority DESC, not_before_unix
+            """;
+
+    private static final RowMapper<ScanQueueItem> ROW_MAPPER = (rs, rowNum) -> {
+        ScanQueueItem item = new ScanQueueItem();
+        item.setId(rs.getLong("id"));
+        item.setPath(rs.getString("path"));
+        item.setKind(ScanQueueItem.Kind.valueOf(rs.getString("kind")));
+        item.setNotBeforeUnix(rs.getLong("not_before_unix"));
+        item.setAttempts(rs.getInt("attempts"));
+        item.setPriority(rs.getInt("priority"));
+        item.setRoot(rs.getString("root"));
+        item.setRevision(rs.getLong("revision"));
+        item.setClaimedBy(rs.getString("claimed_by"));
+        item.setLeaseUntil(rs.getLong("lease_until"));
+        return item;
+    };
+
+    /**
+     * Claims up to limit due, unclaimed items for the given worker. Each call uses a fresh claim
+     * token, so items the worker claimed earlier and that are still in flight are not returned again.
+     */
+    public synchronized List<ScanQueueItem> claim(String owner, int limit) {
+        String token = owner + "#" + claimSequence.incrementAndGet();
+        long now = Instant.now().getEpochSecond();
+        return transactionTemplate.execute(status -> {
+            List<Long> ids = pickDue(now, limit);
+            if (ids.isEmpty()) {
+                return List.<ScanQueueItem>of();
+            }
+            List<Object> args = new ArrayList<>(ids.size() + 2);
+            args.add(token);
+            args.add(now + leaseSeconds);
+            args.addAll(ids);
+            jdbcTemplate.update("UPDATE scan_queue SET claimed_by = ?, lease_until = ? WHERE claimed_by IS NULL AND id IN ("
+                    + String.join(",", Collections.nCopies(ids.size(), "?")) + ")", args.toArray());
+            return jdbcTemplate.query(CLAIMED_SQL, ROW_MAPPER, token);
+        });
+    }
+
+    /**
+     * Called when rows are written to a lane that may not be known yet, so they are served
+     * without waiting for the next lane refresh.
+     */
+    public synchronized void addLane(int priority, String root) {
+        lanes.computeIfAbsent(priority, k -> new HashSet<>()).add(root != null ? root : "");
+    }
+
+    /**
+     * Makes the next claim re-read the lanes, e.g. after rows were moved to another priority class.
+     */
+    public synchronized void refreshLanesSoon() {
+        lanesReadMillis = 0;
+    }
+
+    /**
+     * Extends the lease before the worker starts on an item.
+     * @return false if the lease expired and the item was handed back to the queue.
+     */
+    public boolean renew(ScanQueueItem item) {
+        long leaseUntil = Instant.now().getEpochSecond() + leaseSeconds;
+        return jdbcTemplate.update("UPDATE scan_queue SET lease_until = ? WHERE id = ? AND claimed_by = ?",
+                leaseUntil, item.getId(), item.getClaimedBy()) == 1;
+    }
+
+    /**
+     * Extends the leases of items that are waiting in, or being worked on by, the processing stages.
+     */
+    public void renewAll(Collection<ScanQueueItem> items) {
+        if (items.isEmpty()) return;
+        long leaseUntil = Instant.now().getEpochSecond() + leaseSeconds;
+        jdbcTemplate.batchUpdate("UPDATE scan_queue SET lease_until = ? WHERE id = ? AND claimed_by = ?",
+                items, 500, (ps, item) -> {
+                    ps.setLong(1, leaseUntil);
+                    ps.setLong(2, item.getId());
+                    ps.setString(3, item.getClaimedBy());
+                });
+    }
+
+    /**
+     * Hands an item the worker still holds back to the queue. No-op if the row was deleted.
+     */
+    public void release(ScanQueueItem item) {
+        if (jdbcTemplate.update("UPDATE scan_queue SET claimed_by = NULL, lease_until = 0 WHERE id = ? AND claimed_by = ?",
+                item.getId(), item.getClaimedBy()) > 0) {
+            queueSignal.signal();
+        }
+    }
+
+    /**
+     * Returns items whose lease ran out (their worker or the whole process died) to the queue.
+     */
+    @Scheduled(fixedDelayString = "${scan.consumer.reclaim-interval-ms:60000}")
+    public void reclaimExpired() {
+        try {
+            int reclaimed = jdbcTemplate.update(
+                    "UPDATE scan_queue SET claimed_by = NULL, lease_until = 0 WHERE lease_until BETWEEN 1 AND ?",
+                    Instant.now().getEpochSecond());
+            if (reclaimed > 0) {
+                log.warn("Reclaimed {} scan queue items with expired leases.", reclaimed);
+                queueSignal.signal();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to reclaim expired scan queue leases", e);
+        }
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Picks up to limit due, unclaimed ids: highest priority class first, roots within a class
+     * in weighted round-robin order. Reads at most limit candidates per lane, one query each, and
+     * only from the classes it needs. Caller must hold the monitor.
+     */
+    private List<Long> pickDue(long now, int limit) {
+        refreshLanes();
+        List<Long> picked = new ArrayList<>(limit);
+        for (Map.Entry<Integer, Set<String>> lane : lanes.entrySet()) {
+            int priority = lane.getKey();
+            int wanted = limit - picked.size();
+            Map<String, Iterator<Long>> due = new HashMap<>();
+            for (String root : lane.getValue()) {
+                List<Long> ids = jdbcTemplate.queryForList(DUE_IN_LANE_SQL, Long.class, priority, root, now, wanted);
+                if (!ids.isEmpty()) {
+                    due.put(root, ids.iterator());
+                }
+            }
+            List<String> roots = new ArrayList<>(due.keySet());
+            while (picked.size() < limit && !roots.isEmpty()) {
+                String root = nextRoot(priority, roots);
+                Iterator<Long> ids = due.get(root);
+                picked.add(ids.next());
+                if (!ids.hasNext()) {
+                    roots.remove(root); // Nothing (more) due from this root in this class.
+                }
+            }
+            if (picked.size() >= limit) {
+                break;
+            }
+        }
+        return picked;
+    }
+
+    /**
+     * Smooth weighted round-robin (as used by nginx): every candidate gains its weight, the largest
+     * wins and pays back the total. Spreads picks evenly instead of in bursts per root.
+     */
+    private String nextRoot(int priority, List<String> candidates) {
+        Map<String, Long> current = roundRobin.computeIfAbsent(priority, k -> new HashMap<>());
+        String best = null;
+        long total = 0;
+        for (String root : candidates) {
+            int weight = weightOf(root);
+            total += weight;
+            long value = current.merge(root, (long) weight, Long::sum);
+            if (best == null || value > current.get(best)) {
+                best = root;
+            }
+        }
+        current.merge(best, -total, Long::sum);
+        return best;
+    }
+
+    private int weightOf(String root) {
+        if (rootWeights == null) {
+            rootWeights = new HashMap<>();
+            for (String entry : rootWeightsSetting.split(",")) {
+                int eq = entry.lastIndexOf('=');
+                if (eq <= 0) continue;
+                try {
+                    String key = Paths.get(entry.substring(0, eq).trim()).toAbsolutePath().toString();
+                    rootWeights.put(key, Math.max(1, Integer.parseInt(entry.substring(eq + 1).trim())));
+                } catch (RuntimeException e) {
+                    log.warn("Ignoring invalid scan.queue.root-weights entry: {}", entry);
+                }
+            }
+        }
+        return rootWeights.getOrDefault(root, 1);
+    }
+
+    // Re-reads which lanes exist, dropping empty ones. Uses only the ix_sq_lane index.
+    private void refreshLanes() {
+        long nowMillis = System.currentTimeMillis();
+        if (nowMillis - lanesReadMillis < laneRefreshMillis) {
+            return;
+        }
+        lanes.clear();
+        jdbcTemplate.query("SELECT DISTINCT priority, root FROM scan_queue",
+                (RowCallbackHandler) rs -> addLane(rs.getInt("priority"), rs.getString("root")));
+        lanesReadMillis = nowMillis;
+    }
+}
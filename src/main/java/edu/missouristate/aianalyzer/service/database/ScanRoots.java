@@ -0,0 +1,43 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The scan roots seen so far (by the active scan and the passive watcher). Every producer of queue
+ * items tags them with the root they belong to, so the consumers' round-robin across roots (see
+ * ScanQueueLeases) does not get an extra lane for untagged items.
+ */
+@Component
+public class ScanRoots {
+
+    // Absolute scan roots seen so far.
+    private final Set<String> rootKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Remembers the given directories as scan roots.
+     */
+    public void register(List<Path> roots) {
+        roots.forEach(root -> rootKeys.add(root.toAbsolutePath().toString()));
+    }
+
+    /**
+     * Returns the longest registered root containing the path, or "" if none does.
+     */
+    public String rootOf(String path) {
+        String best = "";
+        for (String root : rootKeys) {
+            if (root.length() > best.length() && path.startsWith(root)
+                    && (path.length() == root.length() || root.endsWith(File.separator)
+                        || path.charAt(root.length()) == File.separatorChar)) {
+                best = root;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,111 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.FileInterpretation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Owns the compiled ScanRules shared by the active scan, the passive watcher and the queue consumer.
+ *
+ * Rules are read from the "scan" preference namespace, falling back to application.properties:
+ *   exclude            gitignore-style patterns, separated by newlines or commas
+ *   exclude-prefixes   absolute path prefixes, separated by newlines or commas
+ *   include-extensions extensions to scan, or "*" for all
+ *   min-file-bytes / max-file-bytes   size limits (0 = no upper limit)
+ * Any change in that namespace recompiles the rules; callers pick them up on their next check.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScanRuleService {
+
+    private final PreferenceService preferenceService;
+
+    @Value("${scan.rules.exclude:$recycle.bin/,node_modules/,.git/}")
+    private String defaultExclude;
+
+    @Value("${scan.rules.exclude-prefixes:}")
+    private String defaultExcludePrefixes;
+
+    // Empty falls back to FileInterpretation.SCANNED_FILE_TYPES.
+    @Value("${scan.rules.include-extensions:}")
+    private String defaultIncludeExtensions;
+
+    @Value("${scan.rules.min-file-bytes:0}")
+    private long defaultMinFileBytes;
+
+    @Value("${scan.rules.max-file-bytes:0}")
+    private long defaultMaxFileBytes;
+
+    // Namespace key used for storing the scan rules in the database.
+    private static final String NAMESPACE = "scan";
+
+    private volatile ScanRules rules;
+
+    /**
+     * Returns the current compiled rules, compiling them on first use.
+     */
+    public ScanRules current() {
+        ScanRules current = rules;
+        return current != null ? current : reload();
+    }
+
+    @EventListener
+    public void onPrefChange(PreferenceChangedEvent evt) {
+        if (NAMESPACE.equals(evt.namespace)) {
+            reload();
+        }
+    }
+
+    /**
+     * Recompiles the rules from preferences. If the stored rules cannot be read, the previous
+     * (or default) rules stay in effect.
+     */
+    public synchronized ScanRules reload() {
+        try {
+            String includeExtensions = preferenceService.getString(NAMESPACE, "include-extensions")
+                    .orElse(defaultIncludeExtensions);
+            List<String> extensions = includeExtensions.isBlank()
+                    ? List.copyOf(FileInterpretation.SCANNED_FILE_TYPES)
+                    : "*".equals(includeExtensions.trim()) ? List.of() : split(includeExtensions);
+
+            rules = new ScanRules(
+                    split(preferenceService.getString(NAMESPACE, "exclude").orElse(defaultExclude)),
+                    split(preferenceService.getString(NAMESPACE, "exclude-prefixes").orElse(defaultExcludePrefixes)),
+                    extensions,
+                    readLong("min-file-bytes", defaultMinFileBytes),
+                    readLong("max-file-bytes", defaultMaxFileBytes));
+            log.info("Compiled scan rules: {}", rules.describe());
+        } catch (Exception e) {
+            log.error("Failed to compile scan rules; keeping the previous rules.", e);
+            if (rules == null) {
+                rules = new ScanRules(split(defaultExclude), List.of(),
+                        List.copyOf(FileInterpretation.SCANNED_FILE_TYPES), 0, 0);
+            }
+        }
+        return rules;
+    }
+
+    // --- Helper Methods ---
+
+    private long readLong(String key, long fallback) {
+        return preferenceService.getString(NAMESPACE, key)
+                .map(String::trim)
+                .filter(v -> !v.isEmpty())
+                .map(Long::parseLong)
+                .orElse(fallback);
+    }
+
+    private static List<String> split(String value) {
+        return Arrays.stream(value.split("[,\\r\\n]+"))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+}
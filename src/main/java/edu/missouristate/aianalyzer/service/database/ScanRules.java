@@ -0,0 +1,252 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, compiled include/exclude rules used by the active scan, the passive watcher
+ * and the queue consumer. Built by ScanRuleService; all lookups are case-insensitive.
+ *
+ * Exclude patterns follow gitignore conventions:
+ *   - "name" / "*.tmp" match the last path segment at any depth
+ *   - a trailing "/" restricts the pattern to directories
+ *   - a pattern containing "/" matches the end of the path ("a/b" excludes any ".../a/b");
+ *     a leading "/" anchors it to the full absolute path
+ *   - "*", "?", "[...]" and "**" work as in gitignore
+ *   - "!pattern" re-includes paths an exclude pattern matched (regardless of order)
+ *
+ * Literal names and "*.ext" patterns go into hash sets, excluded path prefixes into a segment
+ * trie, and all remaining globs are combined into a single regular expression per group, so a
+ * check costs a few lookups no matter how many rules are configured.
+ */
+public final class ScanRules {
+
+    private final PrefixTrie excludedPrefixes = new PrefixTrie();
+    private final Set<String> excludedNames = new HashSet<>();
+    private final Set<String> excludedDirNames = new HashSet<>();
+    private final Set<String> excludedExtensions = new HashSet<>();
+    private final Pattern excludedGlobs;
+    private final Pattern excludedDirGlobs;
+    private final Pattern reincludedGlobs;
+
+    // Empty means every extension is included. Files without an extension are always included.
+    private final Set<String> includedExtensions;
+    private final long minFileBytes;
+    private final long maxFileBytes;
+
+    /**
+     * @param excludePatterns    gitignore-style patterns (see class comment).
+     * @param excludePrefixes    Absolute path prefixes whose subtrees are never scanned.
+     * @param includeExtensions  Lower-case extensions to scan; empty to scan every extension.
+     * @param minFileBytes       Files smaller than this are skipped.
+     * @param maxFileBytes       Files larger than this are skipped (0 = no limit).
+     */
+    public ScanRules(Collection<String> excludePatterns, Collection<String> excludePrefixes,
+                     Collection<String> includeExtensions, long minFileBytes, long maxFileBytes) {
+        List<String> globs = new ArrayList<>();
+        List<String> dirGlobs = new ArrayList<>();
+        List<String> reincludes = new ArrayList<>();
+
+        for (String raw : excludePatterns) {
+            String pattern = raw.trim().toLowerCase();
+            if (pattern.isEmpty() || pattern.startsWith("#")) continue;
+
+            boolean negated = pattern.startsWith("!");
+            if (negated) pattern = pattern.substring(1);
+            boolean dirOnly = pattern.endsWith("/");
+            if (dirOnly) pattern = pattern.substring(0, pattern.length() - 1);
+            if (pattern.isEmpty()) continue;
+
+            if (negated) {
+                reincludes.add(toRegex(pattern));
+            } else if (isLiteral(pattern) && !pattern.contains("/")) {
+                (dirOnly ? excludedDirNames : excludedNames).add(pattern);
+            } else if (!dirOnly && pattern.startsWith("*.") && isLiteral(pattern.substring(2))
+                    && !pattern.substring(2).contains("/")) {
+                excludedExtensions.add(pattern.substring(2));
+            } else {
+                (dirOnly ? dirGlobs : globs).add(toRegex(pattern));
+            }
+        }
+        this.excludedGlobs = combine(globs);
+        this.excludedDirGlobs = combine(dirGlobs);
+        this.reincludedGlobs = combine(reincludes);
+
+        for (String prefix : excludePrefixes) {
+            if (!prefix.isBlank()) excludedPrefixes.add(normalize(prefix.trim()));
+        }
+
+        this.includedExtensions = new HashSet<>();
+        for (String ext : includeExtensions) {
+            String e = ext.trim().toLowerCase();
+            if (e.startsWith(".")) e = e.substring(1);
+            if (!e.isEmpty()) includedExtensions.add(e);
+        }
+        this.minFileBytes = Math.max(0, minFileBytes);
+        this.maxFileBytes = Math.max(0, maxFileBytes);
+    }
+
+    /**
+     * Checked before a directory is listed, so excluded subtrees are never read.
+     */
+    public boolean isDirectoryExcluded(Path dir) {
+        String path = normalize(dir.toAbsolutePath().toString());
+        if (excludedPrefixes.matches(path)) return true;
+
+        String name = lastSegment(path);
+        boolean excluded = excludedNames.contains(name)
+                || excludedDirNames.contains(name)
+                || matches(excludedGlobs, path)
+                || matches(excludedDirGlobs, path);
+        return excluded && !matches(reincludedGlobs, path);
+    }
+
+    /**
+     * @param sizeBytes The file size, or a negative value if unknown (size limits are then not applied).
+     */
+    public boolean isFileIncluded(Path file, long sizeBytes) {
+        String path = normalize(file.toAbsolutePath().toString());
+        String name = lastSegment(path);
+        int dotIndex = name.lastIndexOf('.');
+        boolean hasExtension = dotIndex > 0 && dotIndex < name.length() - 1;
+        String ext = hasExtension ? name.substring(dotIndex + 1) : "";
+
+        if (hasExtension && !includedExtensions.isEmpty() && !includedExtensions.contains(ext)) return false;
+        if (!hasExtension && dotIndex != -1) return false; // ".hidden" or "name."
+        if (sizeBytes >= 0 && (sizeBytes < minFileBytes || (maxFileBytes > 0 && sizeBytes > maxFileBytes))) return false;
+        if (excludedPrefixes.matches(path)) return false;
+
+        boolean excluded = excludedNames.contains(name)
+                || (hasExtension && excludedExtensions.contains(ext))
+                || matches(excludedGlobs, path);
+        return !excluded || matches(reincludedGlobs, path);
+    }
+
+    public String describe() {
+        return String.format("%d name, %d extension, %d prefix exclusions; %s; %s",
+                excludedNames.size() + excludedDirNames.size(), excludedExtensions.size(), excludedPrefixes.size(),
+                includedExtensions.isEmpty() ? "all extensions" : includedExtensions.size() + " extensions",
+                maxFileBytes > 0 ? "max " + maxFileBytes + " bytes" : "no size limit");
+    }
+
+    // --- Helper Methods ---
+
+    private static boolean matches(Pattern pattern, String path) {
+        return pattern != null && pattern.matcher(path).find();
+    }
+
+    private static String normalize(String path) {
+        String p = path.replace('\\', '/').toLowerCase();
+        return p.length() > 1 && p.endsWith("/") ? p.substring(0, p.length() - 1) : p;
+    }
+
+    private static String lastSegment(String normalizedPath) {
+        return normalizedPath.substring(normalizedPath.lastIndexOf('/') + 1);
+    }
+
+    private static boolean isLiteral(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') return false;
+        }
+        return true;
+    }
+
+    private static Pattern combine(List<String> regexes) {
+        return regexes.isEmpty() ? null : Pattern.compile(String.join("|", regexes));
+    }
+
+    /**
+     * Translates one glob into a regex that is matched (with find) against the normalized absolute path.
+     */
+    private static String toRegex(String glob) {
+        boolean anchored = glob.startsWith("/");
+        if (anchored) glob = glob.substring(1);
+
+        StringBuilder re = new StringBuilder(anchored ? "(?:^/?" : "(?:(?:^|/)");
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                boolean doubleStar = i + 1 < glob.length() && glob.charAt(i + 1) == '*';
+                if (doubleStar) {
+                    i++;
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+                        i++;
+                        re.append("(?:.*/)?");
+                    } else {
+                        re.append(".*");
+                    }
+                } else {
+                    re.append("[^/]*");
+                }
+            } else if (c == '?') {
+                re.append("[^/]");
+            } else if (c == '[') {
+                int end = glob.indexOf(']', i + 1);
+                if (end < 0) {
+                    re.append("\\[");
+                } else {
+                    String body = glob.substring(i + 1, end);
+                    if (body.startsWith("!")) body = "^" + body.substring(1);
+                    re.append('[').append(body.replace("\\", "\\\\")).append(']');
+                    i = end;
+                }
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                re.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+            } else if (".^$+{}()|".indexOf(c) >= 0) {
+                re.append('\\').append(c);
+            } else {
+                re.append(c);
+            }
+        }
+        return re.append("$)").toString();
+    }
+
+    /**
+     * Trie over '/'-separated path segments. A path matches if any prefix of its segments is a stored prefix.
+     */
+    private static final class PrefixTrie {
+        private final Node root = new Node();
+        private int size = 0;
+
+        private static final class Node {
+            private final Map<String, Node> children = new HashMap<>();
+            private boolean terminal;
+        }
+
+        void add(String normalizedPath) {
+            Node node = root;
+            for (String segment : normalizedPath.split("/")) {
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+            if (!node.terminal) size++;
+            node.terminal = true;
+        }
+
+        boolean matches(String normalizedPath) {
+            if (size == 0) return false;
+            Node node = root;
+            int start = 0;
+            while (start <= normalizedPath.length()) {
+                int end = normalizedPath.indexOf('/', start);
+                if (end < 0) end = normalizedPath.length();
+                node = node.children.get(normalizedPath.substring(start, end));
+                if (node == null) return false;
+                if (node.terminal) return true;
+                start = end + 1;
+            }
+            return false;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
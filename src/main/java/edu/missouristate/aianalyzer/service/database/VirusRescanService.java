@@ -0,0 +1,147 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import edu.missouristate.aianalyzer.model.database.VirusScan;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import edu.missouristate.aianalyzer.repository.database.VirusScanRepository;
+import edu.missouristate.aianalyzer.service.ai.ScanForVirusService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static edu.missouristate.aianalyzer.model.FileInterpretation.VIRUS_FILE_TYPES;
+
+/**
+ * Re-queues high-risk files for a virus scan when ClamAV's signature database changes, since cached
+ * verdicts (see VirusVerdictCache) and labels only hold for the signatures they were produced with.
+ *
+ * Only FileInterpretation.VIRUS_FILE_TYPES are re-queued, riskiest first: executables and scripts
+ * at the virus-type priority, then macro-capable documents, then archives and disk images at
+ * background priority. Within a tier, the most recently modified files are queued first. The items are
+ * VIRUS_RESCAN items, so a file that is still clean keeps its label and is not sent to the AI again.
+ *
+ * The signatures the files were last re-queued for are kept as a preference, so a change is acted on
+ * once, also across restarts. The versions in virus_scan cannot tell: rows written after the update,
+ * including reused verdicts, already carry the new version.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VirusRescanService {
+
+    private static final Set<String> MACRO_DOCUMENTS = Set.of(
+            "docm", "dotm", "xlsm", "xltm", "pptm", "ppam", "potm", "doc", "xls", "ppt");
+    private static final Set<String> CONTAINERS = Set.of(
+            "zip", "rar", "7z", "tar", "gz", "iso", "dmg", "bin");
+
+    // Risk tiers, riskiest first; everything in VIRUS_FILE_TYPES that is not a document or container
+    // is treated as executable.
+    private record Tier(String name, Set<String> extensions, int priority) {
+    }
+
+    private static final List<Tier> TIERS = List.of(
+            new Tier("executables and scripts", VIRUS_FILE_TYPES.stream()
+                    .filter(ext -> !MACRO_DOCUMENTS.contains(ext) && !CONTAINERS.contains(ext))
+                    .collect(Collectors.toUnmodifiableSet()), ScanQueueItem.PRIORITY_VIRUS_TYPE),
+            new Tier("macro documents", MACRO_DOCUMENTS, ScanQueueItem.PRIORITY_NEW),
+            new Tier("archives and disk images", CONTAINERS, ScanQueueItem.PRIORITY_BACKGROUND)
+    );
+
+    private final VirusScanRepository virusScanRepository;
+    private final FileRecordRepository fileRecordRepository;
+    private final ScanQueueBatchWriter scanQueueBatchWriter;
+    private final PreferenceService preferenceService;
+    private final ScanRoots scanRoots;
+
+    private static final String NAMESPACE = "clam";
+    private static final String REQUEUED_FOR_KEY = "rescan-signature-version";
+
+    // Re-queues high-risk files when ClamAV's signatures change.
+    @Value("${clam.rescan.enabled:true}")
+    private boolean enabled;
+
+    // Paths read from the database per query while re-queueing.
+    @Value("${clam.rescan.page-size:1000}")
+    private int pageSize;
+
+    /**
+     * Compares the current signatures with those the files were last re-queued for and re-queues
+     * high-risk files if they differ. Databases without that record start from the signatures of the
+     * most recent scan; nothing is queued before the first scan has been recorded.
+     */
+    @Scheduled(initialDelayString = "${clam.rescan.initial-delay-ms:120000}",
+            fixedDelayString = "${clam.rescan.check-interval-ms:1800000}")
+    public void checkForNewSignatures() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String current = ScanForVirusService.getSignatureVersion();
+            if (current == null) {
+                return;
+            }
+            Optional<String> recorded = preferenceService.getString(NAMESPACE, REQUEUED_FOR_KEY);
+            String requeuedFor = recorded.orElseGet(() -> virusScanRepository
+                    .findTopBySignatureVersionIsNotNullOrderByScannedAtDesc()
+                    .map(VirusScan::getSignatureVersion).orElse(null));
+            if (requeuedFor == null) {
+                return;
+            }
+            if (recorded.isEmpty()) {
+                // Fix the starting point now; later scans will carry whatever signatures are current then.
+                preferenceService.setString(NAMESPACE, REQUEUED_FOR_KEY, requeuedFor, "VirusRescanService");
+            }
+            if (current.equals(requeuedFor)) {
+                return;
+            }
+            log.info("ClamAV signatures changed from {} to {}; re-queueing high-risk files.", requeuedFor, current);
+            requeueHighRiskFiles();
+            preferenceService.setString(NAMESPACE, REQUEUED_FOR_KEY, current, "VirusRescanService");
+        } catch (Exception e) {
+            log.warn("Checking for new ClamAV signatures failed", e);
+        }
+    }
+
+    /**
+     * Queues a virus rescan of every high-risk file on disk, tier by tier.
+     * @return The number of files queued.
+     */
+    public long requeueHighRiskFiles() {
+        long now = Instant.now().getEpochSecond();
+        long total = 0;
+        for (Tier tier : TIERS) {
+            long queued = 0;
+            for (int page = 0; ; page++) {
+                List<String> paths = fileRecordRepository.findPresentPathsByExtensions(
+                        tier.extensions(), PageRequest.of(page, Math.max(1, pageSize)));
+                for (String path : paths) {
+                    ScanQueueItem item = new ScanQueueItem();
+                    item.setPath(path);
+                    item.setKind(ScanQueueItem.Kind.VIRUS_RESCAN);
+                    item.setNotBeforeUnix(now);
+                    item.setAttempts(0);
+                    item.setPriority(tier.priority());
+                    item.setRoot(scanRoots.rootOf(path));
+                    scanQueueBatchWriter.enqueue(item);
+                }
+                queued += paths.size();
+                if (paths.size() < Math.max(1, pageSize)) {
+                    break;
+                }
+            }
+            log.info("Queued {} {} for a virus rescan.", queued, tier.name());
+            total += queued;
+        }
+        scanQueueBatchWriter.flush();
+        return total;
+    }
+}
@@ -14,8 +14,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @Service
@@ -24,29 +29,35 @@ public class VirusScanService {
 
     private final FileRecordRepository fileRecordRepository;
     private final VirusScanRepository virusScanRepository;
+    private final VirusVerdictCache virusVerdictCache;
 <<<<<<< HEAD
 =======
     private final MetricsService metricsService;
 >>>>>>> clean-feature-branch
 
     /**
-     * Runs clamscan via static method and persists the result to virus_scan.
+     * Runs clamscan via static method (unless an earlier verdict can be reused, see VirusVerdictCache)
+     * and persists the result to virus_scan.
      */
     @Transactional
     public boolean scanAndPersist(Path path) throws Exception {
-        boolean infected = ScanForVirusService.scanFileWithClam(path);
-
         final String abs = path.toAbsolutePath().toString();
         FileRecord fr = fileRecordRepository.findByPath(abs)
                 .orElseThrow(() -> new IllegalArgumentException("File not indexed: " + abs));
 
-        virusScanRepository.save(VirusScan.builder()
-                .fileId(fr.getId())
-                .infected(infected)
-                .signature(null)
-                .engine("clamscan")
-                .scannedAt(Instant.now())
-                .build());
+        String signatureVersion = ScanForVirusService.getSignatureVersion();
+        Optional<ScanForVirusService.ScanVerdict> cached = virusVerdictCache.lookup(fr, signatureVersion);
+        ScanForVirusService.ScanVerdict verdict = cached.orElse(null);
+        if (verdict == null) {
+            ScanForVirusService.BatchScan scan = ScanForVirusService.scanFilesWithClam(List.of(path));
+            verdict = scan.verdicts().get(path);
+            if (verdict == null) {
+                throw scan.failures().getOrDefault(path, new IOException("ClamAV could not scan " + abs));
+            }
+        }
+        boolean infected = verdict.infected();
+
+        virusScanRepository.save(toRow(fr, verdict, signatureVersion, Instant.now()));
 
         log.debug("Virus scan persisted for {} (infected={})", abs, infected);
 <<<<<<< HEAD
@@ -69,4 +80,88 @@ public class VirusScanService {
                 .orElseThrow(() -> new IllegalArgumentException("No FileRecord with id=" + fileId));
         return scanAndPersist(Path.of(fr.getPath()));
     }
+
+    /**
+     * Batch variant for the scan pipeline: scans all files with one clamscan run (or clamd, see
+     * ScanForVirusService.scanFilesWithClam) and persists one virus_scan row per verdict.
+     * The scan itself runs outside any transaction, so SQLite is not locked while ClamAV works.
+     * Call reuseCachedVerdicts first, so only files without a reusable verdict are scanned.
+     * @return Verdict per file; files that could not be scanned have none.
+     */
+    public ScanForVirusService.BatchScan scanAndPersist(List<Path> paths) throws Exception {
+        String signatureVersion = ScanForVirusService.getSignatureVersion();
+        ScanForVirusService.BatchScan scan = ScanForVirusService.scanFilesWithClam(paths);
+        Map<Path, ScanForVirusService.ScanVerdict> verdicts = scan.verdicts();
+        Instant now = Instant.now();
+        verdicts.forEach((path, verdict) -> {
+            final String abs = path.toAbsolutePath().toString();
+            FileRecord fr = fileRecordRepository.findByPath(abs).orElse(null);
+            if (fr == null) {
+                log.debug("Not persisting virus scan for unindexed file {}", abs);
+                return;
+            }
+            persist(fr, verdict, signatureVersion, now);
+        });
+        log.debug("Virus scans persisted for {} of {} files", verdicts.size(), paths.size());
+        return scan;
+    }
+
+    /**
+     * Looks up earlier verdicts for the files' content under the current ClamAV signatures (see
+     * VirusVerdictCache) and persists a virus_scan row (engine "cache") for every file that has one.
+     * A file that cannot be looked up is simply left to be scanned.
+     * @return Reused verdict per file; files that need a scan have no entry.
+     */
+    public Map<Path, ScanForVirusService.ScanVerdict> reuseCachedVerdicts(List<Path> paths) {
+        String signatureVersion = ScanForVirusService.getSignatureVersion();
+        Map<Path, ScanForVirusService.ScanVerdict> verdicts = new HashMap<>();
+        if (signatureVersion == null) {
+            return verdicts;
+        }
+        Instant now = Instant.now();
+        for (Path path : paths) {
+            try {
+                FileRecord fr = fileRecordRepository.findByPath(path.toAbsolutePath().toString()).orElse(null);
+                if (fr == null) {
+                    continue;
+                }
+                Optional<ScanForVirusService.ScanVerdict> cached = virusVerdictCache.lookup(fr, signatureVersion);
+                if (cached.isPresent()) {
+                    persist(fr, cached.get(), signatureVersion, now);
+                    verdicts.put(path, cached.get());
+                }
+            } catch (Exception e) {
+                log.warn("Virus verdict cache lookup failed for {}: {}", path, e.getMessage());
+            }
+        }
+        if (!verdicts.isEmpty()) {
+            log.info("Reused earlier ClamAV verdicts for {} of {} files", verdicts.size(), paths.size());
+        }
+        return verdicts;
+    }
+
+    // --- Helper Methods ---
+
+    private void persist(FileRecord fr, ScanForVirusService.ScanVerdict verdict, String signatureVersion, Instant now) {
+        virusScanRepository.save(toRow(fr, verdict, signatureVersion, now));
+
+        String fileType = fr.getTypeLabel() != null ? fr.getTypeLabel() : fr.getExt();
+        metricsService.recordVirusScan(fileType == null || fileType.isEmpty() ? "unknown" : fileType, verdict.infected());
+    }
+
+    // The row doubles as a cache entry, keyed by content and signatures (see VirusVerdictCache).
+    private static VirusScan toRow(FileRecord fr, ScanForVirusService.ScanVerdict verdict, String signatureVersion,
+                                   Instant now) {
+        boolean fullContentHash = ContentHashService.FAST_ALGORITHM.equals(fr.getContentHashAlgo());
+        return VirusScan.builder()
+                .fileId(fr.getId())
+                .infected(verdict.infected())
+                .signature(verdict.signature())
+                .engine(verdict.engine())
+                .signatureVersion(signatureVersion)
+                .contentHash(fullContentHash ? fr.getContentHash() : null)
+                .sha256(fullContentHash ? fr.getSha256() : null)
+                .scannedAt(now)
+                .build();
+    }
 }
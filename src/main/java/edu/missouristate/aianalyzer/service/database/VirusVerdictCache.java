@@ -0,0 +1,126 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.model.database.VirusScan;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import edu.missouristate.aianalyzer.repository.database.VirusScanRepository;
+import edu.missouristate.aianalyzer.service.ai.ScanForVirusService.ScanVerdict;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reuses earlier ClamAV verdicts for content that was already scanned with the current signatures,
+ * so unchanged files and copies of the same file do not start ClamAV again.
+ *
+ * Verdicts (virus_scan rows) are keyed by the fast content hash and the ClamAV engine + signature
+ * database version. The fast hash is not collision resistant, so a verdict is only reused if the
+ * SHA-256 of the scanned bytes matches the file's as well. The SHA-256 of a verdict is filled in the
+ * first time the verdict is a candidate, from the scanned file, provided it has not changed since the scan.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VirusVerdictCache {
+
+    /** Value of VirusScan.engine and ScanVerdict.engine for reused verdicts. */
+    public static final String ENGINE = "cache";
+
+    private final VirusScanRepository virusScanRepository;
+    private final FileRecordRepository fileRecordRepository;
+    private final ContentHashService contentHashService;
+
+    // Turns the virus verdict cache on or off.
+    @Value("${scan.virus-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Looks for a verdict on the file's content under the given signatures.
+     * If the file's SHA-256 had to be computed, it is stored on the record (and set on the given entity).
+     * @param record The file's record, as written by the hash stage.
+     * @param signatureVersion ScanForVirusService.getSignatureVersion().
+     * @return The reused verdict (engine "cache"), or empty if the file has to be scanned.
+     */
+    public Optional<ScanVerdict> lookup(FileRecord record, String signatureVersion) {
+        // Image hashes are perceptual (see FileProcessingService), so only full-content hashes are keys.
+        if (!enabled || signatureVersion == null || record.getContentHash() == null
+                || !ContentHashService.FAST_ALGORITHM.equals(record.getContentHashAlgo())) {
+            return Optional.empty();
+        }
+        List<VirusScan> candidates = virusScanRepository.findByContentHashAndSignatureVersionOrderByScannedAtDesc(
+                record.getContentHash(), signatureVersion, PageRequest.of(0, 5));
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String sha256 = sha256Of(record);
+        if (sha256 == null) {
+            return Optional.empty();
+        }
+        for (VirusScan candidate : candidates) {
+            if (sha256.equals(sha256Of(candidate, record, sha256))) {
+                log.debug("Reused {} verdict from {} for {}", candidate.isInfected() ? "infected" : "clean",
+                        candidate.getScannedAt(), record.getPath());
+                return Optional.of(new ScanVerdict(candidate.isInfected(), candidate.getSignature(), ENGINE));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // --- Helper Methods ---
+
+    // SHA-256 of the file as it is now. The hash stage only computes it when the content hash has copies.
+    private String sha256Of(FileRecord record) {
+        if (record.getSha256() != null) {
+            return record.getSha256();
+        }
+        try {
+            String sha256 = contentHashService.sha256(Paths.get(record.getPath()));
+            fileRecordRepository.updateSha256(record.getId(), sha256);
+            record.setSha256(sha256);
+            return sha256;
+        } catch (IOException e) {
+            log.debug("Could not hash {} for the virus verdict cache: {}", record.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * SHA-256 of the bytes the verdict was given for, computed from the scanned file if it has not
+     * been modified since the scan; null if that can no longer be told.
+     */
+    private String sha256Of(VirusScan verdict, FileRecord current, String currentSha256) {
+        if (verdict.getSha256() != null) {
+            return verdict.getSha256();
+        }
+        FileRecord scanned = verdict.getFileId().equals(current.getId())
+                ? current : fileRecordRepository.findById(verdict.getFileId()).orElse(null);
+        if (scanned == null || !verdict.getContentHash().equals(scanned.getContentHash())) {
+            return null;
+        }
+        try {
+            Path path = Paths.get(scanned.getPath());
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile() || attrs.size() != scanned.getSizeBytes()
+                    || attrs.lastModifiedTime().toMillis() / 1000 > verdict.getScannedAt().getEpochSecond()) {
+                return null;
+            }
+            String sha256 = scanned == current ? currentSha256 : contentHashService.sha256(path);
+            virusScanRepository.updateSha256(verdict.getId(), sha256);
+            return sha256;
+        } catch (IOException e) {
+            log.debug("Could not hash {} for the virus verdict cache: {}", scanned.getPath(), e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package edu.missouristate.aianalyzer.service.metrics;
 
+import edu.missouristate.aianalyzer.model.FileInterpretation;
 import edu.missouristate.aianalyzer.model.database.FileRecord;
 import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import edu.missouristate.aianalyzer.service.database.DuplicateFinderService;
+import edu.missouristate.aianalyzer.service.database.DuplicateFinderService.DuplicateReport;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -13,20 +16,10 @@ import java.util.stream.Collectors;
 public class HomeMetricsService {
 
     private final FileRecordRepository fileRecordRepository;
+    private final DuplicateFinderService duplicateFinderService;
 
-    // Change this to a Map<Category, List<Extensions>> so its easier to query
-    private static final Map<String, List<String>> CATEGORY_DEFINITIONS = new LinkedHashMap<>(); // Linked to preserve order
-
-    static {
-        CATEGORY_DEFINITIONS.put("Images", List.of("jpg", "jpeg", "png", "gif", "bmp", "webp", "svg", "tiff", "ico"));
-        CATEGORY_DEFINITIONS.put("Videos", List.of("mp4", "mkv", "avi", "mov", "wmv", "flv", "webm", "m4v"));
-        CATEGORY_DEFINITIONS.put("Documents", List.of("pdf", "doc", "docx", "txt", "rtf", "odt", "xls", "xlsx", "ppt", "pptx", "csv", "md"));
-        CATEGORY_DEFINITIONS.put("Archives", List.of("zip", "rar", "7z", "tar", "gz", "iso", "cab"));
-        CATEGORY_DEFINITIONS.put("Code", List.of("java", "py", "js", "ts", "html", "css", "c", "cpp", "h", "cs", "php", "json", "xml", "yaml", "yml", "sql", "sh", "bat"));
-        CATEGORY_DEFINITIONS.put("Executables", List.of("exe", "msi", "dll", "app", "jar", "bin"));
-        CATEGORY_DEFINITIONS.put("Audio", List.of("mp3", "wav", "flac", "aac", "ogg", "wma"));
-        // "Others" is special case handled in logic
-    }
+    // Category -> extensions, shared with the rest of the app (see FileInterpretation)
+    private static final Map<String, List<String>> CATEGORY_DEFINITIONS = FileInterpretation.CATEGORY_EXTENSIONS;
 
     public Map<String, CategoryStats> getCategoryStats() {
         Map<String, CategoryStats> stats = new HashMap<>();
@@ -47,9 +40,18 @@ public class HomeMetricsService {
             String category = extToCat.getOrDefault(ext.toLowerCase(), "Others");
             stats.get(category).add(count, size == null ? 0 : size);
         }
+
+        // Duplicate Files: extra copies and the space they take, from the latest duplicate search
+        DuplicateReport duplicates = duplicateFinderService.getLastReport();
+        stats.put("Duplicate Files", new CategoryStats("Duplicate Files", duplicates.duplicateFiles(), duplicates.reclaimableBytes()));
         return stats;
     }
 
+    // Runs a fresh duplicate search over all file types (reads only files whose size collides).
+    public DuplicateReport findDuplicateFiles() {
+        return duplicateFinderService.findDuplicates();
+    }
+
     public List<FileRecord> getFilesByCategory(String category) {
         if ("Others".equals(category)) {
             // "Others" is hard to query with an IN clause, simplification: return empty or implement specific logic
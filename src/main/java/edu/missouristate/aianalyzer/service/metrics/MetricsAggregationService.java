@@ -3,6 +3,9 @@ package edu.missouristate.aianalyzer.service.metrics;
 import edu.missouristate.aianalyzer.model.database.FileTypeMetrics;
 import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
 import edu.missouristate.aianalyzer.repository.database.FileTypeMetricsRepository;
+import edu.missouristate.aianalyzer.service.database.DeadLetterService;
+import edu.missouristate.aianalyzer.service.database.InitialScanService;
+import edu.missouristate.aianalyzer.service.database.IoGovernor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -18,6 +21,10 @@ public class MetricsAggregationService {
     private final FileTypeMetricsRepository fileTypeMetricsRepository;
 
     private final edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository scanQueueItemRepository;
+    private final InitialScanService initialScanService;
+    private final IoGovernor ioGovernor;
+    private final DeadLetterService deadLetterService;
+    private final PipelineMetrics pipelineMetrics;
 
     private static final int MAX_HISTORY_POINTS = 50;
 
@@ -76,7 +83,13 @@ public class MetricsAggregationService {
         metrics.throughputHistory = new ArrayList<>(throughputHistoryQueue);
         metrics.queueHistory = new ArrayList<>(queueHistoryQueue);
 
-        // 6. User Actions
+        // 6. Initial Scan Progress
+        metrics.initialScan = initialScanService.getProgress();
+        metrics.ioThrottle = ioGovernor.getState();
+        metrics.deadLetters = deadLetterService.getCounts();
+        metrics.pipelineStages = pipelineMetrics.snapshot();
+
+        // 7. User Actions
         List<FileTypeMetrics> typeMetrics = fileTypeMetricsRepository.findAll();
         for (FileTypeMetrics tm : typeMetrics) {
             metrics.userActionsByType.put(
@@ -113,6 +126,11 @@ public class MetricsAggregationService {
 
         public Map<String, UserActionData> userActionsByType = new HashMap<>();
 
+        public InitialScanService.ScanProgress initialScan = InitialScanService.ScanProgress.IDLE;
+        public IoGovernor.ThrottleState ioThrottle;
+        public DeadLetterService.DeadLetterCounts deadLetters = DeadLetterService.DeadLetterCounts.NONE;
+        public List<PipelineMetrics.StageSnapshot> pipelineStages = new ArrayList<>();
+
         public long getActionRequiredCount() {
             // "Action Required" usually means Suspicious + Unclassified
             return suspiciousCount + unclassifiedCount;
@@ -0,0 +1,158 @@
+package edu.missouristate.aianalyzer.service.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.missouristate.aianalyzer.utility.database.DatabasePathUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers for each stage of the file processing pipeline (see FileProcessingService), so a growing
+ * backlog can be traced to hashing, ClamAV, extraction, upload, the AI or database writes.
+ *
+ * Each stage has a latency histogram (p50/p95/p99/max); bytes and outcome counts are additionally kept
+ * per file extension. Only the stage's own work is timed, not the time spent waiting for a full
+ * downstream queue. Values are cumulative since startup. They are shown in the Metrics view and
+ * written as JSON to metrics.pipeline.export-path for scripts and dashboards.
+ */
+@Slf4j
+@Service
+public class PipelineMetrics {
+
+    public enum Stage {
+        HASH,        // metadata + content hash + file record write
+        CACHE,       // label lookup for identical content (CACHED = hit)
+        VIRUS_SCAN,  // ClamAV
+        EXTRACT,     // reading small files as text
+        UPLOAD,      // uploading large files to Google Cloud Storage
+        AI,          // Gemini request
+        DB_WRITE     // label writes and queue row deletes
+    }
+
+    public enum Outcome { OK, SKIPPED, INFECTED, CACHED, ERROR }
+
+    public record StageSnapshot(Stage stage, long count, double p50Millis, double p95Millis, double p99Millis,
+                                double maxMillis, double meanMillis, long bytes, Map<Outcome, Long> outcomes,
+                                Map<String, ExtensionSnapshot> byExtension) {
+    }
+
+    public record ExtensionSnapshot(long bytes, Map<Outcome, Long> outcomes) {
+    }
+
+    // Extensions beyond this many distinct values per stage are counted as "other".
+    private static final int MAX_EXTENSIONS = 200;
+
+    // Where the JSON snapshot is written (relative paths are next to the database); empty disables it.
+    @Value("${metrics.pipeline.export-path:pipeline-metrics.json}")
+    private String exportPath;
+
+    // The SQLite database, whose directory relative export paths are resolved against.
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final Map<Stage, Map<String, ExtensionCounters>> byExtension = new EnumMap<>(Stage.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public PipelineMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+            byExtension.put(stage, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Records one completed stage step.
+     * @param startNanos System.nanoTime() taken when the step started.
+     * @param bytes      Size of the file, or 0 if not known.
+     */
+    public void record(Stage stage, String ext, Outcome outcome, long bytes, long startNanos) {
+        histograms.get(stage).recordNanos(System.nanoTime() - startNanos);
+        Map<String, ExtensionCounters> extensions = byExtension.get(stage);
+        String key = ext == null || ext.isBlank() ? "(none)" : ext.toLowerCase();
+        if (!extensions.containsKey(key) && extensions.size() >= MAX_EXTENSIONS) {
+            key = "other";
+        }
+        ExtensionCounters counters = extensions.computeIfAbsent(key, k -> new ExtensionCounters());
+        counters.bytes.add(Math.max(0, bytes));
+        counters.outcomes.get(outcome).increment();
+    }
+
+    public List<StageSnapshot> snapshot() {
+        List<StageSnapshot> stages = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            Map<String, ExtensionSnapshot> extensions = new TreeMap<>();
+            Map<Outcome, Long> outcomes = new EnumMap<>(Outcome.class);
+            long bytes = 0;
+            for (Map.Entry<String, ExtensionCounters> entry : byExtension.get(stage).entrySet()) {
+                ExtensionSnapshot ext = entry.getValue().snapshot();
+                extensions.put(entry.getKey(), ext);
+                bytes += ext.bytes();
+                ext.outcomes().forEach((outcome, count) -> outcomes.merge(outcome, count, Long::sum));
+            }
+            stages.add(new StageSnapshot(stage, histogram.getCount(),
+                    histogram.getPercentileMillis(50), histogram.getPercentileMillis(95),
+                    histogram.getPercentileMillis(99), histogram.getMaxMillis(), histogram.getMeanMillis(),
+                    bytes, outcomes, extensions));
+        }
+        return stages;
+    }
+
+    /**
+     * Writes the current snapshot to the export file. The file is replaced atomically, so readers
+     * never see a partial document.
+     */
+    @Scheduled(fixedDelayString = "${metrics.pipeline.export-interval-ms:60000}")
+    public void exportJson() {
+        if (exportPath == null || exportPath.isBlank()) return;
+        Path target = DatabasePathUtil.resolveNextToDatabase(exportPath, datasourceUrl);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Map<String, Object> document = new LinkedHashMap<>();
+            document.put("generatedAtUnix", Instant.now().getEpochSecond());
+            document.put("stages", snapshot());
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), document);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write pipeline metrics to {}: {}", target, e.getMessage());
+        }
+    }
+
+    // --- Helper Methods ---
+
+    private static final class ExtensionCounters {
+        private final LongAdder bytes = new LongAdder();
+        private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+
+        private ExtensionCounters() {
+            for (Outcome outcome : Outcome.values()) {
+                outcomes.put(outcome, new LongAdder());
+            }
+        }
+
+        private ExtensionSnapshot snapshot() {
+            Map<Outcome, Long> counts = new EnumMap<>(Outcome.class);
+            outcomes.forEach((outcome, adder) -> {
+                long count = adder.sum();
+                if (count > 0) counts.put(outcome, count);
+            });
+            return new ExtensionSnapshot(bytes.sum(), counts);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package edu.missouristate.aianalyzer.ui.service;
 
+import edu.missouristate.aianalyzer.service.database.ScanFocusService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import java.io.File;
 import java.nio.file.Files;
@@ -22,10 +24,13 @@ import java.util.stream.Collectors;
 >>>>>>> clean-feature-branch
  */
 @Service
+@RequiredArgsConstructor
 public class FileSystemService {
 
     private static final String[] SIZE_UNITS = {"B", "KB", "MB", "GB", "TB"};
 
+    private final ScanFocusService scanFocusService;
+
     /**
 <<<<<<< HEAD
      * Gets the subdirectories and files for a given path.
@@ -68,6 +73,9 @@ public class FileSystemService {
 =======
         // Return the array as a List.
 >>>>>>> clean-feature-branch
+        // The user is looking at this folder, so its files move to the front of the scan queue.
+        scanFocusService.focus(path.toPath(), Arrays.stream(children).map(File::toPath).collect(Collectors.toList()));
+
         return Arrays.asList(children);
     }
 
@@ -9,6 +9,8 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 =======
 import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.service.database.DuplicateFinderService.DuplicateGroup;
+import edu.missouristate.aianalyzer.service.database.DuplicateFinderService.DuplicateReport;
 import edu.missouristate.aianalyzer.service.metrics.HomeMetricsService;
 import edu.missouristate.aianalyzer.ui.service.FileSystemService;
 import javafx.animation.KeyFrame;
@@ -62,7 +64,7 @@ public class DriveView extends SplitPane {
     private VBox fileListPane;
 
     private CategoryCard imagesCard, videosCard, docsCard, archivesCard, codeCard, execCard, audioCard, othersCard;
-    private CategoryCard duplicateImagesCard;
+    private CategoryCard duplicateImagesCard, duplicateFilesCard;
     private TreeTableView<FileItemModel> treeTable;
 
     private Timeline autoRefreshTimeline;
@@ -434,6 +436,7 @@ public class DriveView extends SplitPane {
         audioCard    = new CategoryCard("Audio", "#E91E63", () -> showCategory("Audio"));
         othersCard   = new CategoryCard("Others", "#757575", () -> showCategory("Others"));
         duplicateImagesCard = new CategoryCard("Duplicate Images", "#3F51B5", () -> showCategory("Duplicate Images"));
+        duplicateFilesCard = new CategoryCard("Duplicate Files", "#673AB7", this::showDuplicateFiles);
 
         // Use TilePane for flexible grid layout
         TilePane grid = new TilePane();
@@ -441,7 +444,7 @@ public class DriveView extends SplitPane {
         grid.setVgap(15);
         grid.setPrefColumns(3);
 
-        grid.getChildren().addAll(imagesCard, videosCard, audioCard, docsCard, archivesCard, codeCard, execCard, othersCard, duplicateImagesCard);
+        grid.getChildren().addAll(imagesCard, videosCard, audioCard, docsCard, archivesCard, codeCard, execCard, othersCard, duplicateImagesCard, duplicateFilesCard);
         content.getChildren().addAll(header, grid);
 
         ScrollPane scroll = new ScrollPane(content);
@@ -453,28 +456,7 @@ public class DriveView extends SplitPane {
 
     // Builds the list view when a category card is clicked.
     private void buildFileListView(String category, List<FileRecord> files) {
-        fileListPane.getChildren().clear();
-        fileListPane.setPadding(new Insets(20));
-        fileListPane.setSpacing(10);
-
-        Button backBtn = new Button("< Back");
-        // Use navigation button CSS class
-        backBtn.getStyleClass().add("nav-button");
-
-        backBtn.setOnAction(e -> {
-            fileListPane.setVisible(false);
-            categoryGridPane.setVisible(true);
-            // Resume refreshing data when returning to the grid view
-            startAutoRefresh();
-            refreshCategoryData();
-        });
-
-        Label title = new Label(category + " (" + files.size() + ")");
-        // Use header CSS class
-        title.getStyleClass().add("drive-header-label");
-
-        HBox topBar = new HBox(15, backBtn, title);
-        topBar.setAlignment(Pos.CENTER_LEFT);
+        HBox topBar = createListTopBar(category + " (" + files.size() + ")");
 
         // For all normal categories, show a flat list as before.
         if (!"Duplicate Images".equals(category)) {
@@ -497,7 +479,7 @@ public class DriveView extends SplitPane {
             fileListPane.getChildren().addAll(topBar, list);
         } else {
             // Special layout for duplicate images: group by content hash.
-            Node groupsView = createDuplicateGroupsView(files);
+            Node groupsView = createDuplicateGroupsView(groupByContentHash(files), "No duplicate image groups found.");
             VBox.setVgrow(groupsView, Priority.ALWAYS);
             fileListPane.getChildren().addAll(topBar, groupsView);
         }
@@ -506,21 +488,49 @@ public class DriveView extends SplitPane {
         fileListPane.setVisible(true);
     }
 
-    /**
-     * Builds a grouped view for duplicate images, where each group represents
-     * all files sharing the same contentHash.
-     */
-    private Node createDuplicateGroupsView(List<FileRecord> files) {
-        VBox groupsContainer = new VBox(12);
-        groupsContainer.setFillWidth(true);
+    // Builds the grouped view for the Duplicate Files card from a finished duplicate search.
+    private void buildDuplicateFilesView(DuplicateReport report) {
+        HBox topBar = createListTopBar(String.format("Duplicate Files (%,d groups, %s reclaimable)",
+                report.groups().size(), formatBytes(report.reclaimableBytes())));
 
-        if (files == null || files.isEmpty()) {
-            Label placeholder = new Label("No duplicate images found.");
-            placeholder.getStyleClass().add("custom-list-placeholder");
-            groupsContainer.getChildren().add(placeholder);
-            return groupsContainer;
-        }
+        Node groupsView = createDuplicateGroupsView(
+                report.groups().stream().map(DuplicateGroup::files).toList(), "No duplicate files found.");
+        VBox.setVgrow(groupsView, Priority.ALWAYS);
+        fileListPane.getChildren().addAll(topBar, groupsView);
+
+        categoryGridPane.setVisible(false);
+        fileListPane.setVisible(true);
+    }
+
+    // Clears the list pane and builds its "< Back" button and title.
+    private HBox createListTopBar(String titleText) {
+        fileListPane.getChildren().clear();
+        fileListPane.setPadding(new Insets(20));
+        fileListPane.setSpacing(10);
 
+        Button backBtn = new Button("< Back");
+        // Use navigation button CSS class
+        backBtn.getStyleClass().add("nav-button");
+
+        backBtn.setOnAction(e -> {
+            fileListPane.setVisible(false);
+            categoryGridPane.setVisible(true);
+            // Resume refreshing data when returning to the grid view
+            startAutoRefresh();
+            refreshCategoryData();
+        });
+
+        Label title = new Label(titleText);
+        // Use header CSS class
+        title.getStyleClass().add("drive-header-label");
+
+        HBox topBar = new HBox(15, backBtn, title);
+        topBar.setAlignment(Pos.CENTER_LEFT);
+        return topBar;
+    }
+
+    // Groups duplicate image records by their content hash, largest groups (by total size) first.
+    private List<List<FileRecord>> groupByContentHash(List<FileRecord> files) {
         // Group by contentHash (ignore null or sentinel values)
         Map<String, List<FileRecord>> groups = files.stream()
                 .filter(fr -> fr.getContentHash() != null)
@@ -529,35 +539,44 @@ public class DriveView extends SplitPane {
                 .collect(java.util.stream.Collectors.groupingBy(FileRecord::getContentHash));
 
         // Only keep groups with more than one file (true duplicates)
-        List<Map.Entry<String, List<FileRecord>>> duplicateGroups = groups.entrySet().stream()
-                .filter(e -> e.getValue().size() > 1)
+        return groups.values().stream()
+                .filter(group -> group.size() > 1)
                 // Sort groups by total size descending (largest duplicate sets first)
-                .sorted((e1, e2) -> {
-                    long s1 = e1.getValue().stream().mapToLong(FileRecord::getSizeBytes).sum();
-                    long s2 = e2.getValue().stream().mapToLong(FileRecord::getSizeBytes).sum();
+                .sorted((g1, g2) -> {
+                    long s1 = g1.stream().mapToLong(FileRecord::getSizeBytes).sum();
+                    long s2 = g2.stream().mapToLong(FileRecord::getSizeBytes).sum();
                     return Long.compare(s2, s1);
                 })
                 .toList();
+    }
+
+    /**
+     * Builds a grouped view for duplicates, where each group represents
+     * files with the same content; groups are shown in the given order.
+     */
+    private Node createDuplicateGroupsView(List<List<FileRecord>> duplicateGroups, String emptyText) {
+        VBox groupsContainer = new VBox(12);
+        groupsContainer.setFillWidth(true);
 
         if (duplicateGroups.isEmpty()) {
-            Label placeholder = new Label("No duplicate image groups found.");
+            Label placeholder = new Label(emptyText);
             placeholder.getStyleClass().add("custom-list-placeholder");
             groupsContainer.getChildren().add(placeholder);
             return groupsContainer;
         }
 
         int groupIndex = 1;
-        for (Map.Entry<String, List<FileRecord>> entry : duplicateGroups) {
-            String hash = entry.getKey();
-            List<FileRecord> groupFiles = entry.getValue();
-
+        for (List<FileRecord> groupFiles : duplicateGroups) {
             long totalSize = groupFiles.stream().mapToLong(FileRecord::getSizeBytes).sum();
+            // Keeping the largest copy frees everything else
+            long largest = groupFiles.stream().mapToLong(FileRecord::getSizeBytes).max().orElse(0);
 
             String headerText = String.format(
-                    "Group %d • %d files • %s total",
+                    "Group %d • %d files • %s total • %s reclaimable",
                     groupIndex++,
                     groupFiles.size(),
-                    formatBytes(totalSize)
+                    formatBytes(totalSize),
+                    formatBytes(totalSize - largest)
             );
 
             TitledPane pane = new TitledPane();
@@ -594,6 +613,28 @@ public class DriveView extends SplitPane {
         }).start();
     }
 
+    // Runs a duplicate search over all file types in a background thread, then shows its groups.
+    // If the search fails, the error is shown and the grid resumes refreshing.
+    private void showDuplicateFiles() {
+        stopAutoRefresh();
+        new Thread(() -> {
+            try {
+                DuplicateReport report = homeMetricsService.findDuplicateFiles();
+                Platform.runLater(() -> buildDuplicateFilesView(report));
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    Alert alert = new Alert(Alert.AlertType.ERROR,
+                            "The duplicate search failed: " + e.getMessage(), ButtonType.OK);
+                    alert.setHeaderText(null);
+                    alert.showAndWait();
+                    startAutoRefresh();
+                    refreshCategoryData();
+                });
+            }
+        }, "Duplicate-Search").start();
+    }
+
     // Fetches aggregated file statistics for all categories.
     public void refreshCategoryData() {
         if (loading) return;
@@ -602,7 +643,10 @@ public class DriveView extends SplitPane {
             try {
                 var stats = homeMetricsService.getCategoryStats();
                 // Calculate the total number of files across all categories
-                long totalFiles = stats.values().stream().mapToLong(s -> s.count).sum();
+                // (duplicates are already counted in their own category)
+                long totalFiles = stats.values().stream()
+                        .filter(s -> !"Duplicate Files".equals(s.name))
+                        .mapToLong(s -> s.count).sum();
 
                 // Update each category card on the JavaFX thread
                 Platform.runLater(() -> {
@@ -615,6 +659,7 @@ public class DriveView extends SplitPane {
                     updateCard(audioCard, stats.get("Audio"), totalFiles);
                     updateCard(othersCard, stats.get("Others"), totalFiles);
                     updateCard(duplicateImagesCard, stats.get("Duplicate Images"), totalFiles);
+                    updateCard(duplicateFilesCard, stats.get("Duplicate Files"), totalFiles);
                 });
             } catch (Exception e) {
                 e.printStackTrace();
@@ -106,7 +106,11 @@ public class MetricsView extends VBox {
     }
 }
 =======
+import edu.missouristate.aianalyzer.service.database.DeadLetterService;
+import edu.missouristate.aianalyzer.service.database.InitialScanService;
+import edu.missouristate.aianalyzer.service.database.IoGovernor;
 import edu.missouristate.aianalyzer.service.metrics.MetricsAggregationService;
+import edu.missouristate.aianalyzer.service.metrics.PipelineMetrics;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -116,9 +120,11 @@ import javafx.geometry.Pos;
 import javafx.geometry.Side;
 import javafx.scene.Node;
 import javafx.scene.chart.*;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.util.Duration;
@@ -136,6 +142,8 @@ import java.util.Map;
 public class MetricsView extends ScrollPane {
 
     private final MetricsAggregationService metricsService;
+    private final InitialScanService initialScanService;
+    private final DeadLetterService deadLetterService;
 
     // Dashboard Cards for key metrics
     private final MetricCard safeCard;
@@ -147,6 +155,24 @@ public class MetricsView extends ScrollPane {
     private final MetricCard actionRequiredCard;
     private final MetricCard queueCard;
 
+    // Initial Scan Components
+    private Label scanStatusLabel;
+    private Label scanProgressLabel;
+    private Button scanPauseButton;
+    private Button scanCancelButton;
+
+    // I/O Governor Components
+    private Label ioModeLabel;
+    private Label ioDetailLabel;
+
+    // Dead Letter Components
+    private Label deadLetterCountLabel;
+    private Label deadLetterDetailLabel;
+    private Button deadLetterRequeueButton;
+
+    // Pipeline Latency Components
+    private GridPane pipelineGrid;
+
     // Chart Components
     private StackedBarChart<String, Number> userActionsChart;
     private CategoryAxis xAxis;
@@ -165,9 +191,14 @@ public class MetricsView extends ScrollPane {
     /**
      * Constructor for Spring dependency injection. Initializes service and sets up the UI layout.
      * @param metricsService The service used to fetch aggregated metrics data.
+     * @param initialScanService The service used to pause, resume, or cancel the initial scan.
+     * @param deadLetterService The service used to requeue files the scan queue gave up on.
      */
-    public MetricsView(MetricsAggregationService metricsService) {
+    public MetricsView(MetricsAggregationService metricsService, InitialScanService initialScanService,
+                       DeadLetterService deadLetterService) {
         this.metricsService = metricsService;
+        this.initialScanService = initialScanService;
+        this.deadLetterService = deadLetterService;
 
         ignoreSeries.setName("Ignored");
         quarantineSeries.setName("Quarantined");
@@ -222,9 +253,24 @@ public class MetricsView extends ScrollPane {
         queueCard = new MetricCard("Scan Queue", "#009688", true);
         gridPane.add(queueCard, 3, 1);
 
-        // --- ROW 3: User Actions Chart ---
+        // --- ROW 3: Initial Scan Progress & Background I/O ---
+        Node initialScanCard = createInitialScanCard();
+        gridPane.add(initialScanCard, 0, 2, 2, 1);
+
+        Node ioCard = createIoGovernorCard();
+        gridPane.add(ioCard, 2, 2, 2, 1);
+
+        // --- ROW 4: Failed Files ---
+        Node deadLetterCard = createDeadLetterCard();
+        gridPane.add(deadLetterCard, 0, 3, 4, 1);
+
+        // --- ROW 5: Pipeline Stage Latency ---
+        Node pipelineCard = createPipelineCard();
+        gridPane.add(pipelineCard, 0, 4, 4, 1);
+
+        // --- ROW 6: User Actions Chart ---
         Node chartCard = createUserActionsChartCard();
-        gridPane.add(chartCard, 0, 2, 4, 1);
+        gridPane.add(chartCard, 0, 5, 4, 1);
 
         contentBox.getChildren().addAll(header, gridPane);
 
@@ -273,6 +319,10 @@ public class MetricsView extends ScrollPane {
                     maliciousCard.updateSparkline(metrics.maliciousHistory);
                     throughputCard.updateSparkline(metrics.throughputHistory);
 
+                    updateInitialScan(metrics.initialScan);
+                    updateIoGovernor(metrics.ioThrottle);
+                    updateDeadLetters(metrics.deadLetters);
+                    updatePipeline(metrics.pipelineStages);
                     updateUserActionsChart(metrics.userActionsByType);
                     loading = false;
                 });
@@ -293,6 +343,75 @@ public class MetricsView extends ScrollPane {
         return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
     }
 
+    // Shows the initial scan status and enables only the controls that apply to it.
+    private void updateInitialScan(InitialScanService.ScanProgress progress) {
+        scanStatusLabel.setText(progress.status());
+        scanProgressLabel.setText(String.format("%,d folders \u00b7 %,d files \u00b7 %,.0f folders/s \u00b7 %,.0f files/s",
+                progress.dirsScanned(), progress.filesSeen(), progress.dirsPerSecond(), progress.filesPerSecond()));
+
+        boolean running = "RUNNING".equals(progress.status());
+        boolean paused = "PAUSED".equals(progress.status());
+        scanPauseButton.setText(paused ? "Resume" : "Pause");
+        scanPauseButton.setDisable(!running && !paused);
+        scanCancelButton.setDisable(!running && !paused);
+    }
+
+    // Shows how many files the scan queue gave up on, by failure class.
+    private void updateDeadLetters(DeadLetterService.DeadLetterCounts counts) {
+        deadLetterCountLabel.setText(String.format("%,d file(s) gave up on", counts.total()));
+        deadLetterDetailLabel.setText(counts.byClass().entrySet().stream()
+                .map(entry -> String.format("%s: %,d", entry.getKey().name().replace('_', ' ').toLowerCase(), entry.getValue()))
+                .collect(java.util.stream.Collectors.joining(" \u00b7 ")));
+        if (!"Requeuing...".equals(deadLetterRequeueButton.getText())) {
+            deadLetterRequeueButton.setDisable(counts.total() == 0);
+        }
+    }
+
+    // Rebuilds the per-stage latency table: one row per pipeline stage.
+    private void updatePipeline(List<PipelineMetrics.StageSnapshot> stages) {
+        pipelineGrid.getChildren().clear();
+        String[] headers = {"Stage", "Files", "p50", "p95", "p99", "Max", "Data", "Errors"};
+        for (int col = 0; col < headers.length; col++) {
+            Label header = new Label(headers[col]);
+            header.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: -fx-custom-text-primary;");
+            pipelineGrid.add(header, col, 0);
+        }
+        int row = 1;
+        for (PipelineMetrics.StageSnapshot stage : stages) {
+            String[] cells = {
+                    stage.stage().name().replace('_', ' '),
+                    String.format("%,d", stage.count()),
+                    formatMillis(stage.p50Millis()),
+                    formatMillis(stage.p95Millis()),
+                    formatMillis(stage.p99Millis()),
+                    formatMillis(stage.maxMillis()),
+                    formatBytes(stage.bytes()),
+                    String.format("%,d", stage.outcomes().getOrDefault(PipelineMetrics.Outcome.ERROR, 0L))
+            };
+            for (int col = 0; col < cells.length; col++) {
+                Label cell = new Label(cells[col]);
+                cell.setStyle("-fx-font-size: 14px; -fx-text-fill: -fx-custom-text-primary;");
+                pipelineGrid.add(cell, col, row);
+            }
+            row++;
+        }
+    }
+
+    // Formats a duration in milliseconds as ms or s.
+    private String formatMillis(double millis) {
+        return millis < 1000 ? String.format("%.1f ms", millis) : String.format("%.2f s", millis / 1000);
+    }
+
+    // Shows which I/O budget is in effect, its limits, and how much background reads are being held back.
+    private void updateIoGovernor(IoGovernor.ThrottleState state) {
+        if (state == null) return;
+        ioModeLabel.setText(state.mode() == IoGovernor.Mode.ACTIVE ? "User active (reduced budget)" : "Idle (full budget)");
+        String byteLimit = state.bytesPerSecondLimit() > 0 ? formatBytes(state.bytesPerSecondLimit()) + "/s" : "unlimited";
+        String fileLimit = state.filesPerSecondLimit() > 0 ? String.format("%,d files/s", state.filesPerSecondLimit()) : "unlimited files/s";
+        ioDetailLabel.setText(String.format("Limit %s, %s \u00b7 Reading %s/s, %,.0f files/s \u00b7 Throttled %.0f%%",
+                byteLimit, fileLimit, formatBytes((long) state.bytesPerSecond()), state.filesPerSecond(), state.throttledPercent()));
+    }
+
     /**
      * Updates the data series in the Stacked Bar Chart based on the latest user actions
      * aggregated by file type.
@@ -421,6 +540,135 @@ public class MetricsView extends ScrollPane {
         }
     }
 
+    // Creates the card showing initial scan progress with pause/resume and cancel controls.
+    private Node createInitialScanCard() {
+        VBox cardContent = new VBox(10);
+        cardContent.setAlignment(Pos.TOP_LEFT);
+        cardContent.setPadding(new Insets(20));
+
+        Label titleLabel = new Label("Initial Scan");
+        titleLabel.getStyleClass().add("chart-title");
+
+        scanStatusLabel = new Label("IDLE");
+        scanStatusLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: -fx-custom-text-primary;");
+
+        scanProgressLabel = new Label("");
+        scanProgressLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: -fx-custom-text-primary;");
+
+        // Control calls touch the database, so keep them off the FX thread.
+        scanPauseButton = new Button("Pause");
+        scanPauseButton.setDisable(true);
+        scanPauseButton.setOnAction(e -> {
+            boolean resume = "Resume".equals(scanPauseButton.getText());
+            new Thread(resume ? initialScanService::resume : initialScanService::pause, "initial-scan-control").start();
+        });
+
+        scanCancelButton = new Button("Cancel");
+        scanCancelButton.setDisable(true);
+        scanCancelButton.setOnAction(e -> new Thread(initialScanService::cancel, "initial-scan-control").start());
+
+        HBox controls = new HBox(10, scanPauseButton, scanCancelButton);
+        controls.setAlignment(Pos.CENTER_LEFT);
+
+        cardContent.getChildren().addAll(titleLabel, scanStatusLabel, scanProgressLabel, controls);
+
+        StackPane card = new StackPane(cardContent);
+        card.setMaxWidth(Double.MAX_VALUE);
+        card.getStyleClass().add("chart-card");
+
+        return card;
+    }
+
+    // Creates the card showing the background I/O governor state.
+    private Node createIoGovernorCard() {
+        VBox cardContent = new VBox(10);
+        cardContent.setAlignment(Pos.TOP_LEFT);
+        cardContent.setPadding(new Insets(20));
+
+        Label titleLabel = new Label("Background I/O");
+        titleLabel.getStyleClass().add("chart-title");
+
+        ioModeLabel = new Label("");
+        ioModeLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: -fx-custom-text-primary;");
+
+        ioDetailLabel = new Label("");
+        ioDetailLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: -fx-custom-text-primary;");
+        ioDetailLabel.setWrapText(true);
+
+        cardContent.getChildren().addAll(titleLabel, ioModeLabel, ioDetailLabel);
+
+        StackPane card = new StackPane(cardContent);
+        card.setMaxWidth(Double.MAX_VALUE);
+        card.getStyleClass().add("chart-card");
+
+        return card;
+    }
+
+    // Creates the card listing dead-lettered files with a button to put them all back on the queue.
+    private Node createDeadLetterCard() {
+        VBox cardContent = new VBox(10);
+        cardContent.setAlignment(Pos.TOP_LEFT);
+        cardContent.setPadding(new Insets(20));
+
+        Label titleLabel = new Label("Failed Files");
+        titleLabel.getStyleClass().add("chart-title");
+
+        deadLetterCountLabel = new Label("");
+        deadLetterCountLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: -fx-custom-text-primary;");
+
+        deadLetterDetailLabel = new Label("");
+        deadLetterDetailLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: -fx-custom-text-primary;");
+        deadLetterDetailLabel.setWrapText(true);
+
+        // Requeuing touches the database, so keep it off the FX thread.
+        deadLetterRequeueButton = new Button("Requeue All");
+        deadLetterRequeueButton.setDisable(true);
+        deadLetterRequeueButton.setOnAction(e -> {
+            deadLetterRequeueButton.setDisable(true);
+            deadLetterRequeueButton.setText("Requeuing...");
+            new Thread(() -> {
+                try {
+                    deadLetterService.requeueAll();
+                } finally {
+                    Platform.runLater(() -> {
+                        deadLetterRequeueButton.setText("Requeue All");
+                        loadMetricsData();
+                    });
+                }
+            }, "dead-letter-requeue").start();
+        });
+
+        cardContent.getChildren().addAll(titleLabel, deadLetterCountLabel, deadLetterDetailLabel, deadLetterRequeueButton);
+
+        StackPane card = new StackPane(cardContent);
+        card.setMaxWidth(Double.MAX_VALUE);
+        card.getStyleClass().add("chart-card");
+
+        return card;
+    }
+
+    // Creates the card holding the per-stage latency table of the file processing pipeline.
+    private Node createPipelineCard() {
+        VBox cardContent = new VBox(10);
+        cardContent.setAlignment(Pos.TOP_LEFT);
+        cardContent.setPadding(new Insets(20));
+
+        Label titleLabel = new Label("Pipeline Stage Latency");
+        titleLabel.getStyleClass().add("chart-title");
+
+        pipelineGrid = new GridPane();
+        pipelineGrid.setHgap(24);
+        pipelineGrid.setVgap(6);
+
+        cardContent.getChildren().addAll(titleLabel, pipelineGrid);
+
+        StackPane card = new StackPane(cardContent);
+        card.setMaxWidth(Double.MAX_VALUE);
+        card.getStyleClass().add("chart-card");
+
+        return card;
+    }
+
     // Creates the card container holding the Stacked Bar Chart for user actions.
     private Node createUserActionsChartCard() {
         VBox cardContent = new VBox(10);
@@ -126,7 +126,8 @@ public class SuggestionsItemCell extends ListCell<FileRecord> {
         metaGrid.setVgap(5);
 
         addMetaRow(metaGrid, 0, "File Size:", formatBytes(item.getSizeBytes()));
-        addMetaRow(metaGrid, 1, "Hash (SHA256):", item.getContentHash() != null ? item.getContentHash() : "N/A");
+        addMetaRow(metaGrid, 1, "Hash (" + (item.getContentHashAlgo() != null ? item.getContentHashAlgo() : "sha256") + "):",
+                item.getContentHash() != null ? item.getContentHash() : "N/A");
         addMetaRow(metaGrid, 2, "Last Scanned:", formatTime(item.getLastScannedUnix()));
         addMetaRow(metaGrid, 3, "AI Analyzed:", formatTime(item.getAiAnalyzedUnix()));
 
@@ -7,15 +7,30 @@ import com.google.genai.types.Part;
 import lombok.RequiredArgsConstructor;
 <<<<<<< HEAD
 =======
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.google.genai.types.GenerateContentConfig;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 >>>>>>> clean-feature-branch
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 import static edu.missouristate.aianalyzer.utility.ai.ReadFileUtil.*;
 
@@ -23,9 +38,16 @@ import static edu.missouristate.aianalyzer.utility.ai.ReadFileUtil.*;
  * Utility service that communicates with the Google Gemini AI model to perform
  * text, file, and image-based analysis. This class provides methods for summarizing
  * file content, handling large file uploads, and generating image classification responses.
- */
 <<<<<<< HEAD
+ */
 =======
+ *
+ * The *Async methods return as soon as the request is sent, so callers can go on with other work
+ * while Gemini answers. All requests share a global in-flight limit (ai.max-in-flight); once it is
+ * reached, further requests wait for a slot before they are sent. Concurrent requests for the same
+ * content are sent once and share the response. activeResponsesFromFilesAsync classifies several
+ * small files with one request (see AiPromptBatcher).
+ */
 @Slf4j
 >>>>>>> clean-feature-branch
 @Service
@@ -37,14 +59,47 @@ public class AiQueryUtil {
 
 <<<<<<< HEAD
 =======
+    /**
+     * Identifies the classification prompt and model. Bump it whenever either changes, so labels
+     * produced with the old prompt are no longer reused for identical content (see LabelCacheService).
+     */
+    public static final String PROMPT_VERSION = "gemini-2.0-flash/classify-1";
+
+    // Classification rules shared by the single-file and the multi-file prompt.
+    private static final String CLASSIFICATION_RULES =
+            "For Classification, use ONLY one of these three options: Safe, Suspicious, or Malicious. " +
+            "- Use 'Safe' for normal legitimate files with no security concerns. " +
+            "- Use 'Suspicious' for files that contain potentially concerning patterns like obfuscated code, unusual scripts, password hashes, SQL injection attempts, or license cracks. " +
+            "- Use 'Malicious' for files that are clearly harmful, contain malware signatures, or are designed to exploit systems. " +
+            "For Summary, provide a single sentence (up to 40 words) describing what the file contains and why you classified it that way. " +
+            "Example format: 'Suspicious%This file contains obfuscated JavaScript code and attempts to bypass license validation checks.' ";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     private final ReadFileUtil readFileUtil;
 
+    private final UploadFileUtil uploadFileUtil;
+
     private final edu.missouristate.aianalyzer.service.config.CloudConfigService cloudConfigService;
 
     private String getBucketName() {
         return cloudConfigService.getBucketName();
     }
 
+    // Gemini requests allowed in flight at once, across all callers.
+    @Value("${ai.max-in-flight:16}")
+    private int maxInFlight;
+
+    private Semaphore inFlightLimit;
+
+    // Requests in flight by content key, so concurrent requests for the same content share one call.
+    private final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void initInFlightLimit() {
+        inFlightLimit = new Semaphore(Math.max(1, maxInFlight), true);
+    }
+
 >>>>>>> clean-feature-branch
     /**
      * Sends the entire file content directly to Gemini for summarization.
@@ -63,32 +118,70 @@ public class AiQueryUtil {
                         "gemini-2.0-flash",
                         "Provide a single, up to 40-word sentence summarizing the main point or summary of the following file content. "
                                 + file,
+                        null);
+
+        return responseFuture
+                .thenApply(GenerateContentResponse::text)
+                .join();
+    }
 =======
+        return activeResponseFromFileAsync(file).join();
+    }
+
+    /**
+     * Non-blocking variant of activeResponseFromFile. Concurrent requests for identical content
+     * share one call.
+     *
+     * @param file The complete file contents as a string.
+     * @return A future completing with the summary generated by the Gemini model.
+     */
+    public CompletableFuture<String> activeResponseFromFileAsync(String file) {
 //        CompletableFuture<GenerateContentResponse> responseFuture =
 //                client.async.models.generateContent(
 //                        "gemini-2.0-flash",
 //                        "Provide a single, up to 40-word sentence summarizing the main point or summary of the following file content. "
 //                                + file,
 //                        null);
-        CompletableFuture<GenerateContentResponse> responseFuture =
-                client.async.models.generateContent(
-                        "gemini-2.0-flash",
-                        "Analyze this file for security concerns and provide a response in the exact format: 'Classification%Summary'. " +
-                                "For Classification, use ONLY one of these three options: Safe, Suspicious, or Malicious. " +
-                                "- Use 'Safe' for normal legitimate files with no security concerns. " +
-                                "- Use 'Suspicious' for files that contain potentially concerning patterns like obfuscated code, unusual scripts, password hashes, SQL injection attempts, or license cracks. " +
-                                "- Use 'Malicious' for files that are clearly harmful, contain malware signatures, or are designed to exploit systems. " +
-                                "For Summary, provide a single sentence (up to 40 words) describing what the file contains and why you classified it that way. " +
-                                "Example format: 'Suspicious%This file contains obfuscated JavaScript code and attempts to bypass license validation checks.' " +
-                                "File content: " + file,
->>>>>>> clean-feature-branch
-                        null);
+        String prompt = "Analyze this file for security concerns and provide a response in the exact format: 'Classification%Summary'. " +
+                CLASSIFICATION_RULES +
+                "File content: " + file;
 
-        return responseFuture
-                .thenApply(GenerateContentResponse::text)
-                .join();
+        return submit("file:" + sha256Hex(prompt), () -> client.async.models.generateContent(
+                "gemini-2.0-flash",
+                prompt,
+                null));
     }
 
+    /**
+     * Classifies several small files with one request. The files are sent as a JSON array of
+     * {"id", "content"} objects, and the model is asked for a JSON array with one
+     * {"id", "result"} object per file, where result has the 'Classification%Summary' format and id
+     * is the file's index in the given list. Reading the answer is left to the caller (see AiPromptBatcher).
+     *
+     * @param files The complete contents of each file.
+     * @return A future completing with the model's response text.
+     */
+    public CompletableFuture<String> activeResponsesFromFilesAsync(List<String> files) {
+        ArrayNode input = objectMapper.createArrayNode();
+        for (int i = 0; i < files.size(); i++) {
+            input.addObject().put("id", i).put("content", files.get(i));
+        }
+        String prompt = "Analyze each of the following files for security concerns. The files are given as a JSON array " +
+                "of objects with an 'id' and the file 'content'. Respond with only a JSON array containing one object " +
+                "per file, with the file's 'id' and a 'result' in the exact format: 'Classification%Summary'. " +
+                CLASSIFICATION_RULES +
+                "Files: " + input;
+        GenerateContentConfig config = GenerateContentConfig.builder()
+                .responseMimeType("application/json")
+                .build();
+
+        return submit("files:" + sha256Hex(prompt), () -> client.async.models.generateContent(
+                "gemini-2.0-flash",
+                prompt,
+                config));
+    }
+>>>>>>> clean-feature-branch
+
     /**
      * Sends a URI reference to a large file stored remotely to Gemini for analysis.
      *
@@ -103,7 +196,33 @@ public class AiQueryUtil {
 <<<<<<< HEAD
         Content content = Content.fromParts(
                 Part.fromText("Provide a single, up to 40-word sentence summarizing the main point or summary of the following file content."),
+                Part.fromUri(file, fileInterpretation));
+
+        CompletableFuture<GenerateContentResponse> responseFuture =
+                client.async.models.generateContent(
+                        "gemini-2.0-flash",
+                        content,
+                        null);
+
+        return responseFuture
+                .thenApply(GenerateContentResponse::text)
+                .join();
+    }
 =======
+        return activeResponseFromLargeFileAsync(file, fileInterpretation, null).join();
+    }
+
+    /**
+     * Non-blocking variant of activeResponseFromLargeFile.
+     *
+     * @param file A URI path pointing to the uploaded file.
+     * @param fileInterpretation The interpretation type (for example, text/plain).
+     * @param contentKey Identifies the file's content, such as its hash algorithm and hash; concurrent
+     *                   requests with the same key share one call. Null sends the request regardless.
+     * @return A future completing with the summary of the remote file's contents.
+     */
+    public CompletableFuture<String> activeResponseFromLargeFileAsync(String file, String fileInterpretation,
+                                                                     String contentKey) {
 //        Content content = Content.fromParts(
 //                Part.fromText("Provide a single, up to 40-word sentence summarizing the main point or summary of the following file content."),
 //                Part.fromUri(file, fileInterpretation));
@@ -115,24 +234,18 @@ public class AiQueryUtil {
                         "- Use 'Malicious' for files that are clearly harmful, contain malware signatures, or are designed to exploit systems. " +
                         "For Summary, provide a single sentence (up to 40 words) describing what the file contains and why you classified it that way. " +
                         "Example format: 'Suspicious%This file contains obfuscated JavaScript code and attempts to bypass license validation checks.'"),
->>>>>>> clean-feature-branch
                 Part.fromUri(file, fileInterpretation));
 
-        CompletableFuture<GenerateContentResponse> responseFuture =
-                client.async.models.generateContent(
-                        "gemini-2.0-flash",
-                        content,
-                        null);
-
-        return responseFuture
-                .thenApply(GenerateContentResponse::text)
-                .join();
+        return submit(contentKey == null ? null : "large-file:" + contentKey,
+                () -> client.async.models.generateContent("gemini-2.0-flash", content, null));
     }
+>>>>>>> clean-feature-branch
 
     /**
 <<<<<<< HEAD
 =======
      * Safe wrapper for activeResponseFromLargeFile that catches and handles the "no pages" error.
+     * The uploaded object is deleted once Gemini has answered.
      *
      * @param gcsUri A URI path pointing to the uploaded file.
      * @param mimeType The file MIME type (for example, text/plain).
@@ -142,17 +255,90 @@ public class AiQueryUtil {
         try {
             return activeResponseFromLargeFile(gcsUri, mimeType);
         } catch (Exception e) {
-            log.error("Error getting AI response for {}: {}", gcsUri, e.getMessage());
+            return largeFileErrorMessage(gcsUri, e);
+        } finally {
+            deleteUploadedFile(gcsUri);
+        }
+    }
 
-            // Check for the specific "no pages" error
-            if (e.getMessage() != null && e.getMessage().contains("no pages")) {
-                return "Error: The document appears to be empty or has no readable content. " +
-                        "Please ensure the file contains text or is not corrupted.";
-            }
+    // Turns a failed large-file request into the error message returned in place of a summary.
+    private String largeFileErrorMessage(String gcsUri, Throwable e) {
+        log.error("Error getting AI response for {}: {}", gcsUri, e.getMessage());
+
+        // Check for the specific "no pages" error
+        if (e.getMessage() != null && e.getMessage().contains("no pages")) {
+            return "Error: The document appears to be empty or has no readable content. " +
+                    "Please ensure the file contains text or is not corrupted.";
+        }
+
+        // Handle other errors
+        return "Error processing file with AI: " + e.getMessage();
+    }
+
+    /**
+     * Uploads a large file to Cloud Storage (converted to text) without querying Gemini yet.
+     * Every upload gets an object of its own: several files with the same name can be uploaded
+     * and waiting for Gemini at once, and must not overwrite each other. The object is deleted
+     * once Gemini has answered (see processUploadedFileAIResponse).
+     *
+     * @param filePath The path to the large file on disk.
+     * @param fileType The detected or provided file type.
+     * @return The gs:// URI of the uploaded object.
+     * @throws IOException If the file cannot be read or uploaded.
+     */
+    public String uploadLargeFile(Path filePath, String fileType) throws IOException {
+        String fileName = filePath.getFileName().toString();
+        String txtFileName = fileName.replaceFirst("\\.[^.]+$", ".txt");
+        String objectName = "files/" + UUID.randomUUID() + "/" + txtFileName;
+
+        log.info("Uploading large file to GCS: {}", fileName);
+        readFileUtil.uploadFile(filePath, fileType, objectName);
+        return "gs://" + getBucketName() + "/" + objectName;
+    }
+
+    /**
+     * Requests the analysis of a file previously uploaded with uploadLargeFile, then deletes the
+     * uploaded object.
+     *
+     * @param gcsUri The gs:// URI returned by uploadLargeFile.
+     * @param fileType The detected or provided file type.
+     * @return A summary from Gemini or an error message.
+     * @throws IOException If the file type cannot be mapped to a MIME type.
+     */
+    public String processUploadedFileAIResponse(String gcsUri, String fileType) throws IOException {
+        log.info("Requesting AI analysis for GCS object: {}", gcsUri);
+        return safeActiveResponseFromLargeFile(gcsUri, readDocumentType(fileType));
+    }
 
-            // Handle other errors
-            return "Error processing file with AI: " + e.getMessage();
+    /**
+     * Non-blocking variant of processUploadedFileAIResponse. The uploaded object is deleted once
+     * the request completes, whether or not it succeeded.
+     *
+     * @param gcsUri The gs:// URI returned by uploadLargeFile.
+     * @param fileType The detected or provided file type.
+     * @param contentKey Identifies the file's content, or null (see activeResponseFromLargeFileAsync).
+     * @return A future completing with a summary from Gemini or an error message.
+     * @throws IOException If the file type cannot be mapped to a MIME type.
+     */
+    public CompletableFuture<String> processUploadedFileAIResponseAsync(String gcsUri, String fileType,
+                                                                       String contentKey) throws IOException {
+        log.info("Requesting AI analysis for GCS object: {}", gcsUri);
+        CompletableFuture<String> response;
+        try {
+            response = activeResponseFromLargeFileAsync(gcsUri, readDocumentType(fileType), contentKey);
+        } catch (IOException | RuntimeException e) {
+            deleteUploadedFile(gcsUri);
+            throw e;
         }
+        // Deleting is a remote call, so it is kept off the AI client's thread.
+        response.whenCompleteAsync((text, e) -> deleteUploadedFile(gcsUri));
+        return response
+                .exceptionally(e -> {
+                    if (unwrap(e) instanceof InterruptedException) {
+                        throw new CompletionException(unwrap(e)); // The caller is stopping; not an AI error.
+                    }
+                    return largeFileErrorMessage(gcsUri, e);
+                });
     }
 
     /**
@@ -168,6 +354,7 @@ public class AiQueryUtil {
      * @throws IOException If the image reference cannot be read.
      */
     public String respondWithImageCategory(String image, String fileInterpretation) throws IOException {
+<<<<<<< HEAD
         Content content = Content.fromParts(
                 Part.fromText("Provide the word single or two based on the amount of human faces in this photo if its a" +
                         "group provide the word description sport, hiking, cooking, event, or gathering. If there are not human faces respond with" +
@@ -184,6 +371,31 @@ public class AiQueryUtil {
                 .thenApply(GenerateContentResponse::text)
                 .join();
     }
+=======
+        return respondWithImageCategoryAsync(image, fileInterpretation, null).join();
+    }
+
+    /**
+     * Non-blocking variant of respondWithImageCategory.
+     *
+     * @param image A URI reference to the uploaded image.
+     * @param fileInterpretation The image type (such as image/jpeg).
+     * @param contentKey Identifies the image file's content; concurrent requests with the same key
+     *                   share one call. Null sends the request regardless.
+     * @return A future completing with the category or description of the photo.
+     */
+    public CompletableFuture<String> respondWithImageCategoryAsync(String image, String fileInterpretation,
+                                                                  String contentKey) {
+        Content content = Content.fromParts(
+                Part.fromText("Provide the word single or two based on the amount of human faces in this photo if its a" +
+                        "group provide the word description sport, hiking, cooking, event, or gathering. If there are not human faces respond with" +
+                        "a word describing the contents of the photo such as landscape, food, or miscellaneous."),
+                Part.fromUri(image, fileInterpretation));
+
+        return submit(contentKey == null ? null : "image:" + contentKey,
+                () -> client.async.models.generateContent("gemini-2.0-flash", content, null));
+    }
+>>>>>>> clean-feature-branch
 
     /**
      * Reads a small file into memory and sends its contents to Gemini for summarization.
@@ -233,17 +445,8 @@ public class AiQueryUtil {
             return activeResponseFromLargeFile(
                     "gs://aianalyser/files" + newFilePath,
 =======
-            // Get just the filename, not the full path
-            String fileName = filePath.getFileName().toString();
-            String txtFileName = fileName.replaceFirst("\\.[^.]+$", ".txt");
-
-            log.info("Uploading large file to GCS: {}", fileName);
-
             // Upload the file to Cloud Storage (this handles the conversion to txt)
-            readFileUtil.uploadFile(filePath, fileType);
-
-            // Construct the GCS URI with proper path separator
-            String gcsUri = "gs://" + getBucketName() + "/files/" + txtFileName;
+            String gcsUri = uploadLargeFile(filePath, fileType);
             log.info("Requesting AI analysis for GCS object: {}", gcsUri);
 
             // Use the safe wrapper instead of calling activeResponseFromLargeFile directly
@@ -264,5 +467,82 @@ public class AiQueryUtil {
             return "Error processing file: " + e.getMessage();
         }
     }
+
+    // --- Helper Methods ---
+
+    /**
+     * Sends a request once a slot under the in-flight limit is free (the calling thread waits for it).
+     * If a request with the same key is already in flight, its response is shared instead.
+     * Each caller gets its own copy of the future, so cancelling one does not affect the others.
+     * If the calling thread is interrupted while waiting, the future fails with InterruptedException.
+     */
+    private CompletableFuture<String> submit(String key, Supplier<CompletableFuture<GenerateContentResponse>> request) {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        if (key != null) {
+            CompletableFuture<String> inFlight = pending.putIfAbsent(key, response);
+            if (inFlight != null) {
+                log.debug("Sharing the in-flight AI request for {}", key);
+                return inFlight.copy();
+            }
+        }
+        try {
+            inFlightLimit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(key, response, null, e);
+            return response.copy();
+        }
+        try {
+            request.get()
+                    .thenApply(GenerateContentResponse::text)
+                    .whenComplete((text, e) -> {
+                        inFlightLimit.release();
+                        finish(key, response, text, e);
+                    });
+        } catch (RuntimeException e) {
+            inFlightLimit.release();
+            finish(key, response, null, e);
+        }
+        return response.copy();
+    }
+
+    // Removed before completing, so a request arriving afterwards is sent again rather than reusing a stale response.
+    private void finish(String key, CompletableFuture<String> response, String text, Throwable e) {
+        if (key != null) {
+            pending.remove(key, response);
+        }
+        if (e != null) {
+            response.completeExceptionally(e);
+        } else {
+            response.complete(text);
+        }
+    }
+
+    // A leftover object only costs storage, so a failed delete is logged rather than reported to the caller.
+    private void deleteUploadedFile(String gcsUri) {
+        String prefix = "gs://" + getBucketName() + "/";
+        if (!gcsUri.startsWith(prefix)) {
+            log.warn("Not deleting {}: not in bucket {}", gcsUri, getBucketName());
+            return;
+        }
+        try {
+            uploadFileUtil.deleteObject(gcsUri.substring(prefix.length()));
+        } catch (RuntimeException e) {
+            log.warn("Could not delete uploaded file {}: {}", gcsUri, e.getMessage());
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static String sha256Hex(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required by the Java spec
+        }
+    }
 }
 >>>>>>> clean-feature-branch
@@ -4,10 +4,14 @@
 >>>>>>> clean-feature-branch
 package edu.missouristate.aianalyzer.utility.ai;
 
+import edu.missouristate.aianalyzer.service.ai.ExternalProcessRunner;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.nio.file.*;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -36,7 +40,7 @@ public final class ClamDownloadUtil {
 <<<<<<< HEAD
     private static Path clamScanPath;
 =======
-    private static Path clamScanPath = null;
+    private static volatile Path clamScanPath = null;
 
     // Private constructor to prevent instantiation
     private ClamDownloadUtil() {
@@ -294,8 +298,8 @@ public final class ClamDownloadUtil {
      * @throws InterruptedException if the process is interrupted
      */
     private static void runCommand(String command) throws IOException, InterruptedException {
-        Process process = new ProcessBuilder(command.split(" ")).inheritIO().start();
-        int exit = process.waitFor();
+        int exit = ExternalProcessRunner.shared().run(ExternalProcessRunner.Kind.INSTALL,
+                List.of(command.split(" ")), Charset.defaultCharset(), System.out::println);
         if (exit != 0) {
 <<<<<<< HEAD
             System.err.println("Command failed: " + command);
@@ -1,14 +1,17 @@
 package edu.missouristate.aianalyzer.utility.ai;
 
+import edu.missouristate.aianalyzer.service.ai.ExternalProcessRunner;
 import org.im4java.process.ProcessStarter;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Locale;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -110,10 +113,8 @@ public class ImageMagickDownloadUtil {
      */
     private static void runCommand(String command) throws IOException {
         try {
-            Process process = new ProcessBuilder("bash", "-c", command)
-                    .inheritIO()
-                    .start();
-            int exit = process.waitFor();
+            int exit = ExternalProcessRunner.shared().run(ExternalProcessRunner.Kind.INSTALL,
+                    List.of("bash", "-c", command), Charset.defaultCharset(), System.out::println);
             if (exit != 0) {
                 throw new IOException("Command failed: " + command);
             }
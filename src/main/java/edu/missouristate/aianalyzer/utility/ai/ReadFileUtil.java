@@ -129,6 +129,7 @@ public class ReadFileUtil {
      *
      * @param filePath the original file path
      * @param fileType the file type
+     * @param objectName the destination object name in the GCS bucket
      * @throws IOException if an I/O error occurs
      */
 <<<<<<< HEAD
@@ -147,7 +148,7 @@ public class ReadFileUtil {
         } catch (Exception e) {
             System.err.println("An error occurred while writing to the file: " + e.getMessage());
 =======
-    public void uploadFile(Path filePath, String fileType) throws IOException {
+    public void uploadFile(Path filePath, String fileType, String objectName) throws IOException {
         // Read the file content as string
         String fileContent = readFileAsString(filePath, fileType);
 
@@ -167,8 +168,7 @@ public class ReadFileUtil {
             // Write content to temporary txt file
             Files.writeString(tempFile, fileContent);
 
-            // Upload to GCS with correct object name
-            String objectName = "files/" + txtFileName;
+            // Upload to GCS under the name chosen by the caller
             uploadFileUtil.uploadObject(objectName, tempFile.toString());
 
             System.out.println("Successfully uploaded " + fileName + " as " + objectName);
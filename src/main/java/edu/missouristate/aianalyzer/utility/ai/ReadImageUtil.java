@@ -1,18 +1,18 @@
 package edu.missouristate.aianalyzer.utility.ai;
 
 import edu.missouristate.aianalyzer.model.FileInterpretation;
+import edu.missouristate.aianalyzer.service.ai.ExternalProcessRunner;
 import lombok.RequiredArgsConstructor;
 <<<<<<< HEAD
 =======
 import lombok.extern.slf4j.Slf4j;
 >>>>>>> clean-feature-branch
-import org.im4java.core.ConvertCmd;
 import org.im4java.core.IM4JavaException;
-import org.im4java.core.IMOperation;
-import org.im4java.process.ProcessStarter;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.util.List;
 
 import static edu.missouristate.aianalyzer.utility.ai.ImageMagickDownloadUtil.ensureImageMagickInstalled;
 import static edu.missouristate.aianalyzer.utility.ai.ImageMagickDownloadUtil.magickPath;
@@ -95,15 +95,23 @@ public class ReadImageUtil {
 
 
 >>>>>>> clean-feature-branch
+    /**
+     * Converts an image to JPG next to the original, running ImageMagick under a deadline
+     * (see ExternalProcessRunner).
+     *
+     * @throws IM4JavaException if ImageMagick fails to convert the image
+     * @throws ExternalProcessRunner.ProcessTimeoutException if ImageMagick hangs on the image
+     */
     public static File convertImageToJpg(String inputFilePath) throws IOException, InterruptedException, IM4JavaException {
         ensureImageMagickInstalled();
-        ProcessStarter.setGlobalSearchPath(magickPath.getParent().toString());
         File outputFile = changeExtension(new File(inputFilePath), ".jpg");
-        IMOperation op = new IMOperation();
-        op.addImage(inputFilePath);
-        op.addImage(outputFile.getAbsolutePath());
-        ConvertCmd convert = new ConvertCmd(false);
-        convert.run(op);
+        StringBuilder output = new StringBuilder();
+        int exit = ExternalProcessRunner.shared().run(ExternalProcessRunner.Kind.IMAGE_CONVERT,
+                List.of(magickPath.toString(), inputFilePath, outputFile.getAbsolutePath()),
+                Charset.defaultCharset(), line -> output.append(line).append("\n"));
+        if (exit != 0) {
+            throw new IM4JavaException("ImageMagick exited with code " + exit + ": " + output.toString().trim());
+        }
 <<<<<<< HEAD
         System.out.println("Converted to " + outputFile.getAbsolutePath());
 =======
@@ -120,8 +120,27 @@ public class UploadFileUtil {
 <<<<<<< HEAD
         System.out.println(
                 "File " + filePath + " uploaded to bucket " + bucketName + " as " + objectName);
+    }
+}
 =======
         log.info("File {} uploaded to bucket {} as {}", filePath, currentBucket, objectName);
->>>>>>> clean-feature-branch
+    }
+
+    /**
+     * Deletes an object from the configured Google Cloud Storage bucket.
+     *
+     * @param objectName the object name in the GCS bucket (including path if needed)
+     * @return true if the object was deleted, false if it did not exist
+     */
+    public boolean deleteObject(String objectName) {
+        String currentProjectId = cloudConfigService.getProjectId();
+        String currentBucket = cloudConfigService.getBucketName();
+
+        Storage storage = StorageOptions.newBuilder().setProjectId(currentProjectId).build().getService();
+        boolean deleted = storage.delete(BlobId.of(currentBucket, objectName));
+
+        log.info("Object {} {} from bucket {}", objectName, deleted ? "deleted" : "not found", currentBucket);
+        return deleted;
     }
 }
+>>>>>>> clean-feature-branch
@@ -0,0 +1,51 @@
+package edu.missouristate.aianalyzer.utility.ai;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Gives code compiled for Java 17 access to virtual threads when it runs on a JDK that has them (21+).
+ * The lookup is reflective; on older runtimes no executor is returned and callers keep using
+ * platform threads.
+ */
+@Slf4j
+public final class VirtualThreadUtil {
+
+    /** Executors.newVirtualThreadPerTaskExecutor(), or null if this JDK does not have it. */
+    private static final Method NEW_PER_TASK_EXECUTOR = findFactory();
+
+    // Private constructor to prevent instantiation
+    private VirtualThreadUtil() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     * @return The executor, or empty if virtual threads are not available on this JDK.
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        if (NEW_PER_TASK_EXECUTOR == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((ExecutorService) NEW_PER_TASK_EXECUTOR.invoke(null));
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            // JDK 19/20 have the method but reject it unless preview features are enabled.
+            log.debug("Virtual threads are not usable on this JDK: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package edu.missouristate.aianalyzer.utility.database;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Places files the application keeps beside its SQLite database (the file manifest, the pipeline
+ * metrics export), so they end up in the same directory wherever the application is started from.
+ */
+public final class DatabasePathUtil {
+
+    // Private constructor to prevent instantiation
+    private DatabasePathUtil() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Resolves a relative path against the directory of the SQLite database file named by a
+     * jdbc:sqlite: URL, or against the working directory if the URL names no file.
+     *
+     * @param path          The configured path; absolute paths are returned as they are.
+     * @param datasourceUrl The value of spring.datasource.url.
+     * @return The absolute path.
+     */
+    public static Path resolveNextToDatabase(String path, String datasourceUrl) {
+        Path target = Paths.get(path);
+        if (target.isAbsolute()) return target;
+        String database = datasourceUrl != null && datasourceUrl.startsWith("jdbc:sqlite:")
+                ? datasourceUrl.substring("jdbc:sqlite:".length()) : "";
+        int query = database.indexOf('?');
+        if (query >= 0) database = database.substring(0, query);
+        if (database.startsWith("file:")) database = database.substring("file:".length());
+        try {
+            Path directory = database.isEmpty() || database.startsWith(":memory:")
+                    ? null : Paths.get(database).toAbsolutePath().getParent();
+            return (directory != null ? directory.resolve(target) : target).toAbsolutePath();
+        } catch (InvalidPathException e) {
+            return target.toAbsolutePath();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks how the answer to a multi-file request is split into per-file results.
+ */
+class AiPromptBatcherTest {
+
+    @Test
+    void resultsAreReturnedInRequestOrder() {
+        List<String> results = AiPromptBatcher.parseResults("""
+                [{"id": 1, "result": "Suspicious%Obfuscated script."},
+                 {"id": 0, "result": " Safe%A plain config file. "}]
+                """, 2);
+
+        assertEquals(List.of("Safe%A plain config file.", "Suspicious%Obfuscated script."), results);
+    }
+
+    @Test
+    void missingEntriesAreNull() {
+        List<String> results = AiPromptBatcher.parseResults("[{\"id\": 2, \"result\": \"Safe%Notes.\"}]", 3);
+
+        assertEquals(Arrays.asList(null, null, "Safe%Notes."), results);
+    }
+
+    @Test
+    void unknownAndRepeatedIdsAreSkipped() {
+        List<String> results = AiPromptBatcher.parseResults("""
+                [{"id": 0, "result": "Safe%First answer."},
+                 {"id": 0, "result": "Malicious%Second answer."},
+                 {"id": 5, "result": "Safe%No such file."},
+                 {"id": -1, "result": "Safe%No such file."},
+                 {"id": "one", "result": "Safe%Not a number."},
+                 {"result": "Safe%No id."}]
+                """, 2);
+
+        assertEquals(Arrays.asList("Safe%First answer.", null), results);
+    }
+
+    @Test
+    void resultsOutsideTheExpectedFormatAreSkipped() {
+        List<String> results = AiPromptBatcher.parseResults("""
+                [{"id": 0, "result": "I cannot classify this file."},
+                 {"id": 1, "result": {"classification": "Safe"}},
+                 {"id": 2}]
+                """, 3);
+
+        assertEquals(Arrays.asList(null, null, null), results);
+    }
+
+    @Test
+    void proseAndMarkdownFencesAroundTheArrayAreIgnored() {
+        List<String> results = AiPromptBatcher.parseResults("""
+                Here are the classifications you asked for:
+                ```json
+                [{"id": 0, "result": "Safe%Readme [draft]."}]
+                ```
+                Let me know if you need anything else.
+                """, 1);
+
+        assertEquals(List.of("Safe%Readme [draft]."), results);
+    }
+
+    @Test
+    void answerWithoutJsonArrayIsMalformed() {
+        assertThrows(AiPromptBatcher.MalformedBatchResponseException.class,
+                () -> AiPromptBatcher.parseResults("Safe%Everything looks fine.", 2));
+        assertThrows(AiPromptBatcher.MalformedBatchResponseException.class,
+                () -> AiPromptBatcher.parseResults("] nothing here [", 2));
+        assertThrows(AiPromptBatcher.MalformedBatchResponseException.class,
+                () -> AiPromptBatcher.parseResults(null, 2));
+        assertThrows(AiPromptBatcher.MalformedBatchResponseException.class,
+                () -> AiPromptBatcher.parseResults("[{\"id\": 0, \"result\": \"Safe%cut off", 1));
+        assertThrows(AiPromptBatcher.MalformedBatchResponseException.class,
+                () -> AiPromptBatcher.parseResults("[{\"id\": 0, \"result\": \"Safe%x\"}, {\"id\": 1,]", 2));
+    }
+}
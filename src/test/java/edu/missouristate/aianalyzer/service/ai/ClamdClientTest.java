@@ -0,0 +1,222 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the clamd wire protocol (IDSESSION, INSTREAM chunking, replies) against a fake clamd.
+ */
+class ClamdClientTest {
+
+    private static final String EICAR_MARKER = "EICAR-STANDARD-ANTIVIRUS-TEST-FILE";
+
+    @TempDir
+    Path tempDir;
+
+    private FakeClamd clamd;
+    private ClamdClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        clamd = new FakeClamd(100);
+        client = new ClamdClient("tcp:127.0.0.1:" + clamd.port(), 2, 5000, 10 * 1024 * 1024, 60000);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.shutdown();
+        clamd.close();
+    }
+
+    @Test
+    void cleanFileIsStreamedCompletely() throws IOException {
+        byte[] content = new byte[3 * 1024 * 1024 + 17]; // several 1 MB chunks plus a partial one
+        for (int i = 0; i < content.length; i++) content[i] = (byte) (i * 31);
+        Path file = Files.write(tempDir.resolve("clean.bin"), content);
+
+        assertTrue(client.isAvailable());
+        ClamdClient.Result result = client.scan(file);
+
+        assertFalse(result.infected());
+        assertNull(result.signature());
+        assertArrayEquals(content, clamd.lastStream);
+        assertEquals(List.of(1048576, 1048576, 1048576, 17, 0), clamd.lastChunkSizes);
+    }
+
+    @Test
+    void infectedFileReportsSignature() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("eicar.com"), "X5O!P%@AP " + EICAR_MARKER + "!$H+H*");
+
+        ClamdClient.Result result = client.scan(file);
+
+        assertTrue(result.infected());
+        assertEquals("Eicar-Test-Signature", result.signature());
+    }
+
+    @Test
+    void sessionsAreReused() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("a.txt"), "hello");
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(client.scan(file).infected());
+        }
+
+        assertEquals(1, clamd.connections.get());
+    }
+
+    @Test
+    void errorReplyIsReportedForTheFileOnly() throws IOException {
+        Path file = Files.write(tempDir.resolve("big.bin"), new byte[200]);
+        clamd.streamLimit = 100;
+
+        assertThrows(IOException.class, () -> client.scan(file));
+        assertTrue(client.isAvailable());
+    }
+
+    @Test
+    void versionIsReadFromDaemon() throws IOException {
+        assertEquals("ClamAV 1.2.1/27150/Tue Jan  9 09:36:45 2024", client.version());
+    }
+
+    @Test
+    void unreachableDaemonIsNotAvailable() throws IOException {
+        clamd.close();
+        ClamdClient offline = new ClamdClient("tcp:127.0.0.1:" + clamd.port(), 1, 1000, 1024, 60000);
+        try {
+            assertFalse(offline.isAvailable());
+        } finally {
+            offline.shutdown();
+        }
+    }
+
+    /**
+     * Minimal clamd: answers z-prefixed PING, VERSION and INSTREAM, inside or outside IDSESSION,
+     * and flags streams containing the EICAR marker.
+     */
+    private static final class FakeClamd implements AutoCloseable {
+        private final ServerSocket server;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private volatile int streamLimit;
+        private volatile byte[] lastStream;
+        private volatile List<Integer> lastChunkSizes;
+
+        private FakeClamd(int streamLimitMb) throws IOException {
+            this.streamLimit = streamLimitMb * 1024 * 1024;
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptLoop, "Fake-Clamd");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int port() {
+            return server.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    sockets.add(socket);
+                    Thread handler = new Thread(() -> handle(socket), "Fake-Clamd-Session");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                boolean session = false;
+                int id = 0;
+                String command;
+                while ((command = readCommand(in)) != null) {
+                    String reply;
+                    switch (command) {
+                        case "zIDSESSION" -> {
+                            session = true;
+                            continue;
+                        }
+                        case "zEND" -> {
+                            return;
+                        }
+                        case "zPING" -> reply = "PONG";
+                        case "zVERSION" -> reply = "ClamAV 1.2.1/27150/Tue Jan  9 09:36:45 2024";
+                        case "zINSTREAM" -> reply = readStream(in);
+                        default -> reply = "UNKNOWN COMMAND";
+                    }
+                    String prefixed = session ? (++id) + ": " + reply : reply;
+                    out.write((prefixed + "\0").getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    if (reply.endsWith("ERROR")) {
+                        return; // clamd drops the connection after a stream error
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        private String readStream(DataInputStream in) throws IOException {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            List<Integer> sizes = new CopyOnWriteArrayList<>();
+            int length;
+            do {
+                length = in.readInt();
+                sizes.add(length);
+                if (stream.size() + length > streamLimit) {
+                    return "INSTREAM size limit exceeded. ERROR";
+                }
+                stream.write(in.readNBytes(length));
+            } while (length > 0);
+            lastStream = stream.toByteArray();
+            lastChunkSizes = sizes;
+            boolean infected = new String(lastStream, StandardCharsets.ISO_8859_1).contains(EICAR_MARKER);
+            return infected ? "stream: Eicar-Test-Signature FOUND" : "stream: OK";
+        }
+
+        private static String readCommand(DataInputStream in) throws IOException {
+            ByteArrayOutputStream command = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) > 0) {
+                command.write(b);
+            }
+            return b < 0 ? null : command.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+}
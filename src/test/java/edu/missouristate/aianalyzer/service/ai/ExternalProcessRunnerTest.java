@@ -0,0 +1,89 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks deadlines and process-tree kills of the external process runner, using sh.
+ */
+@DisabledOnOs(OS.WINDOWS)
+class ExternalProcessRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ExternalProcessRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        runner = new ExternalProcessRunner(2, 1500, 1500, 1500, 1500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        runner.shutdown();
+    }
+
+    @Test
+    void outputAndExitCodeArePassedThrough() throws Exception {
+        List<String> lines = new ArrayList<>();
+
+        int exit = runner.run(ExternalProcessRunner.Kind.CLAMSCAN,
+                List.of("sh", "-c", "echo one; echo two; exit 3"), StandardCharsets.UTF_8, lines::add);
+
+        assertEquals(3, exit);
+        assertEquals(List.of("one", "two"), lines);
+    }
+
+    @Test
+    void processThatKeepsReportingIsNotCutOff() throws Exception {
+        List<String> lines = new ArrayList<>();
+
+        // Runs about twice the deadline, but never goes quiet for longer than a third of it.
+        int exit = runner.run(ExternalProcessRunner.Kind.CLAMSCAN,
+                List.of("sh", "-c", "for i in 1 2 3 4 5 6; do echo $i; sleep 0.5; done"),
+                StandardCharsets.UTF_8, lines::add);
+
+        assertEquals(0, exit);
+        assertEquals(6, lines.size());
+    }
+
+    @Test
+    void hungProcessTreeIsKilled() throws Exception {
+        // The child keeps appending to a file; once the tree is killed, the file stops growing.
+        Path ticks = tempDir.resolve("ticks");
+        String script = "(while true; do echo tick >> '" + ticks + "'; sleep 0.1; done) & wait";
+        long start = System.nanoTime();
+
+        ExternalProcessRunner.ProcessTimeoutException e = assertThrows(ExternalProcessRunner.ProcessTimeoutException.class,
+                () -> runner.run(ExternalProcessRunner.Kind.IMAGE_CONVERT,
+                        List.of("sh", "-c", script), StandardCharsets.UTF_8, line -> { }));
+
+        assertEquals(ExternalProcessRunner.Kind.IMAGE_CONVERT, e.getKind());
+        assertTrue(System.nanoTime() - start < 10_000_000_000L, "killed soon after the deadline");
+        long size = Files.size(ticks);
+        Thread.sleep(500);
+        assertEquals(size, Files.size(ticks));
+    }
+
+    @Test
+    void missingExecutableFailsToStart() {
+        assertThrows(IOException.class, () -> runner.run(ExternalProcessRunner.Kind.CLAMSCAN,
+                List.of("/nonexistent/clamscan"), StandardCharsets.UTF_8, line -> { }));
+    }
+}
@@ -0,0 +1,140 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Checks the XXH64 implementation against the reference test vectors and the tree hash built on it.
+ */
+class ContentHashServiceTest {
+
+    private static final long PRIME32 = 2654435761L;
+
+    @TempDir
+    Path tempDir;
+
+    private ContentHashService sequential;
+    private ContentHashService parallel;
+
+    @BeforeEach
+    void setUp() {
+        sequential = service(Long.MAX_VALUE);
+        parallel = service(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sequential.shutdown();
+        parallel.shutdown();
+    }
+
+    @Test
+    void emptyInput() {
+        assertEquals(0xEF46DB3751D8E999L, xxh64(new byte[0], 0));
+        assertEquals(0xAC75FDA2929B17EFL, xxh64(new byte[0], PRIME32));
+    }
+
+    @Test
+    void sanityBufferVectors() {
+        // Vectors of xxhsum's sanity check, over its generated buffer.
+        byte[] buffer = sanityBuffer(222);
+
+        assertEquals(0xE934A84ADB052768L, xxh64(buffer, 1, 0));              // under 4 bytes
+        assertEquals(0x5014607643A9B4C3L, xxh64(buffer, 1, PRIME32));
+        assertEquals(0x9136A0DCA57457EEL, xxh64(buffer, 4, 0));              // one 4-byte lane, under 8
+        assertEquals(0x8282DCC4994E35C8L, xxh64(buffer, 14, 0));             // 8 + 4 + 2 bytes, under 32
+        assertEquals(0xC3BD6BF63DEB6DF0L, xxh64(buffer, 14, PRIME32));
+        assertEquals(0xB641AE8CB691C174L, xxh64(buffer, 222, 0));            // six 32-byte stripes plus a tail
+        assertEquals(0x20CB8AB7AE10C14AL, xxh64(buffer, 222, PRIME32));
+    }
+
+    @Test
+    void textVectors() {
+        assertEquals(0xD24EC4F1A98C6E5BL, xxh64(ascii("a"), 0));
+        assertEquals(0x44BC2CF5AD770999L, xxh64(ascii("abc"), 0));
+        assertEquals(0x066ED728FCEEB3BEL, xxh64(ascii("message digest"), 0));
+        assertEquals(0x0B242D361FDA71BCL, xxh64(ascii("The quick brown fox jumps over the lazy dog"), 0));
+        assertEquals(0xE04A477F19EE145DL, xxh64(ascii("1234567890".repeat(8)), 0));
+    }
+
+    @Test
+    void bufferPositionIsRespectedAndKept() {
+        byte[] padded = new byte[5 + 14];
+        System.arraycopy(sanityBuffer(14), 0, padded, 5, 14);
+        ByteBuffer buffer = ByteBuffer.wrap(padded).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(5);
+
+        assertEquals(0x8282DCC4994E35C8L, ContentHashService.xxh64(buffer, 0));
+        assertEquals(5, buffer.position());
+    }
+
+    @Test
+    void smallFileIsHashOfItsSingleChunkAndLength() throws IOException {
+        byte[] content = sanityBuffer(222);
+        Path file = Files.write(tempDir.resolve("small.bin"), content);
+
+        ByteBuffer root = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        root.putLong(xxh64(content, 0)).putLong(content.length).flip();
+
+        assertEquals(String.format("%016x", ContentHashService.xxh64(root, 0)), sequential.fastHash(file));
+    }
+
+    @Test
+    void parallelAndSequentialChunkHashingAgree() throws IOException {
+        // Two full 4 MB chunks and a partial one.
+        byte[] content = sanityBuffer(2 * 4 * 1024 * 1024 + 12345);
+        Path file = Files.write(tempDir.resolve("large.bin"), content);
+
+        String hash = sequential.fastHash(file);
+
+        assertEquals(hash, parallel.fastHash(file));
+        content[content.length - 1] ^= 1;
+        Files.write(file, content);
+        assertNotEquals(hash, parallel.fastHash(file));
+    }
+
+    // --- Helper Methods ---
+
+    private static ContentHashService service(long parallelThresholdBytes) {
+        ContentHashService service = new ContentHashService(new IoGovernor());
+        ReflectionTestUtils.setField(service, "parallelThresholdBytes", parallelThresholdBytes);
+        ReflectionTestUtils.setField(service, "parallelism", 3);
+        return service;
+    }
+
+    // xxhsum's sanity buffer: the top byte of a running product of PRIME32 and 11400714785074694797.
+    private static byte[] sanityBuffer(int length) {
+        byte[] buffer = new byte[length];
+        long generator = PRIME32;
+        for (int i = 0; i < length; i++) {
+            buffer[i] = (byte) (generator >>> 56);
+            generator *= 0x9E3779B185EBCA8DL;
+        }
+        return buffer;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long xxh64(byte[] data, long seed) {
+        return xxh64(data, data.length, seed);
+    }
+
+    private static long xxh64(byte[] data, int length, long seed) {
+        return ContentHashService.xxh64(ByteBuffer.wrap(data, 0, length).slice().order(ByteOrder.LITTLE_ENDIAN), seed);
+    }
+}
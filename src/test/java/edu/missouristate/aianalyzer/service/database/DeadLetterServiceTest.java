@@ -0,0 +1,130 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import com.google.cloud.BaseServiceException;
+import com.google.genai.errors.ApiException;
+import edu.missouristate.aianalyzer.model.database.ScanDeadLetter.FailureClass;
+import edu.missouristate.aianalyzer.service.ai.ExternalProcessRunner;
+import org.apache.poi.EmptyFileException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.IIOException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletionException;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how failures are classified, when each class is given up on, and the jittered backoff.
+ */
+class DeadLetterServiceTest {
+
+    private DeadLetterService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DeadLetterService(null, null, null, null, null);
+        ReflectionTestUtils.setField(service, "maxAttempts", 5);
+        ReflectionTestUtils.setField(service, "parseMaxAttempts", 2);
+        ReflectionTestUtils.setField(service, "quotaMaxAttempts", 10);
+        ReflectionTestUtils.setField(service, "timeoutMaxAttempts", 3);
+        ReflectionTestUtils.setField(service, "unknownMaxAttempts", 3);
+        ReflectionTestUtils.setField(service, "baseDelaySeconds", 60L);
+        ReflectionTestUtils.setField(service, "quotaBaseDelaySeconds", 900L);
+        ReflectionTestUtils.setField(service, "timeoutBaseDelaySeconds", 1800L);
+        ReflectionTestUtils.setField(service, "maxDelaySeconds", 21600L);
+    }
+
+    @Test
+    void remoteErrorsAreClassifiedByStatus() {
+        assertEquals(FailureClass.REMOTE_QUOTA, service.classify(new ApiException(429, "RESOURCE_EXHAUSTED", "quota")));
+        assertEquals(FailureClass.TRANSIENT_IO, service.classify(new ApiException(503, "UNAVAILABLE", "busy")));
+        assertEquals(FailureClass.TRANSIENT_IO, service.classify(new ApiException(408, "DEADLINE_EXCEEDED", "slow")));
+        assertEquals(FailureClass.PERMANENT, service.classify(new ApiException(400, "INVALID_ARGUMENT", "bad")));
+
+        assertEquals(FailureClass.REMOTE_QUOTA, service.classify(storageError(429, false)));
+        assertEquals(FailureClass.TRANSIENT_IO, service.classify(storageError(409, true)));
+        assertEquals(FailureClass.PERMANENT, service.classify(storageError(403, false)));
+    }
+
+    @Test
+    void causesAreSearched() {
+        Exception wrapped = new CompletionException(new RuntimeException(new ApiException(429, "RESOURCE_EXHAUSTED", "quota")));
+        assertEquals(FailureClass.REMOTE_QUOTA, service.classify(wrapped));
+
+        // A specific cause wins over the generic IOException around it.
+        assertEquals(FailureClass.PARSE_ERROR, service.classify(new IOException("read failed", new ZipException("bad entry"))));
+        assertEquals(FailureClass.TRANSIENT_IO,
+                service.classify(new CompletionException(new UncheckedIOException(new IOException("network")))));
+    }
+
+    @Test
+    void localFailures() {
+        assertEquals(FailureClass.TIMEOUT, service.classify(
+                new ExternalProcessRunner.ProcessTimeoutException(ExternalProcessRunner.Kind.CLAMSCAN, "clamscan", 1000)));
+        assertEquals(FailureClass.PERMANENT, service.classify(new NoSuchFileException("C:/gone.txt")));
+        assertEquals(FailureClass.PERMANENT, service.classify(new AccessDeniedException("C:/locked.txt")));
+        assertEquals(FailureClass.PERMANENT, service.classify(new FileNotFoundException("C:/gone.txt")));
+        assertEquals(FailureClass.PARSE_ERROR, service.classify(new ZipException("invalid LOC header")));
+        assertEquals(FailureClass.PARSE_ERROR, service.classify(new EmptyFileException()));
+        assertEquals(FailureClass.PARSE_ERROR, service.classify(new MalformedInputException(1)));
+        assertEquals(FailureClass.PARSE_ERROR, service.classify(new IIOException("bad image")));
+        assertEquals(FailureClass.TRANSIENT_IO, service.classify(new IOException("disk busy")));
+        assertEquals(FailureClass.TRANSIENT_IO, service.classify(new DataAccessResourceFailureException("database is locked")));
+    }
+
+    @Test
+    void unrecognizedErrorsAreNotParseErrors() {
+        assertEquals(FailureClass.UNKNOWN, service.classify(new IllegalStateException("bug")));
+        assertEquals(FailureClass.UNKNOWN, service.classify(new CompletionException(new NullPointerException())));
+    }
+
+    @Test
+    void attemptLimitsPerClass() {
+        assertTrue(service.isExhausted(FailureClass.PERMANENT, 1));
+        assertExhaustedAt(FailureClass.PARSE_ERROR, 2);
+        assertExhaustedAt(FailureClass.TIMEOUT, 3);
+        assertExhaustedAt(FailureClass.UNKNOWN, 3);
+        assertExhaustedAt(FailureClass.TRANSIENT_IO, 5);
+        assertExhaustedAt(FailureClass.REMOTE_QUOTA, 10);
+    }
+
+    @Test
+    void backoffDoublesWithJitterAndIsCapped() {
+        for (int i = 0; i < 200; i++) {
+            assertBetween(30, 60, service.backoffSeconds(FailureClass.TRANSIENT_IO, 1));
+            assertBetween(30, 60, service.backoffSeconds(FailureClass.UNKNOWN, 0));
+            assertBetween(120, 240, service.backoffSeconds(FailureClass.PARSE_ERROR, 3));
+            assertBetween(450, 900, service.backoffSeconds(FailureClass.REMOTE_QUOTA, 1));
+            assertBetween(1800, 3600, service.backoffSeconds(FailureClass.TIMEOUT, 2));
+            assertBetween(10800, 21600, service.backoffSeconds(FailureClass.TRANSIENT_IO, 20));
+            assertBetween(10800, 21600, service.backoffSeconds(FailureClass.REMOTE_QUOTA, 1000));
+        }
+    }
+
+    // --- Helper Methods ---
+
+    private static BaseServiceException storageError(int code, boolean retryable) {
+        return new BaseServiceException(BaseServiceException.ExceptionData.from(code, "storage error", null, retryable)) {
+        };
+    }
+
+    private void assertExhaustedAt(FailureClass failure, int attempts) {
+        assertFalse(service.isExhausted(failure, attempts - 1), failure + " after " + (attempts - 1));
+        assertTrue(service.isExhausted(failure, attempts), failure + " after " + attempts);
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual >= min && actual <= max, actual + " not in [" + min + ", " + max + "]");
+    }
+}
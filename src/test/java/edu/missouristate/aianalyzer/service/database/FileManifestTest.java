@@ -0,0 +1,145 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the memory-mapped manifest: lookups, open addressing across growth and deletes, reopening and seeding.
+ */
+@DisabledOnOs(OS.WINDOWS) // The temp directory cannot be deleted there while the file is still mapped.
+class FileManifestTest {
+
+    // More than the initial 1M slots hold at their maximum load, so the table has to grow once.
+    private static final int MANY = 800_000;
+
+    @TempDir
+    Path tempDir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private FileManifest manifest;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE files (path TEXT PRIMARY KEY, size_bytes INTEGER, mtime_unix INTEGER, "
+                + "content_hash TEXT, kind TEXT)");
+        manifest = manifest();
+    }
+
+    @AfterEach
+    void tearDown() {
+        manifest.close();
+        dataSource.destroy();
+    }
+
+    @Test
+    void unchangedOnlyWithSameSizeMtimeAndFileKey() {
+        manifest.put("C:/data/a.txt", 100, 1_700_000_000L, "inode-1");
+
+        assertTrue(manifest.isUnchanged("C:/data/a.txt", 100, 1_700_000_000L, "inode-1"));
+        assertFalse(manifest.isUnchanged("C:/data/a.txt", 101, 1_700_000_000L, "inode-1"));
+        assertFalse(manifest.isUnchanged("C:/data/a.txt", 100, 1_700_000_001L, "inode-1"));
+        assertFalse(manifest.isUnchanged("C:/data/a.txt", 100, 1_700_000_000L, "inode-2"));
+        assertFalse(manifest.isUnchanged("C:/data/b.txt", 100, 1_700_000_000L, "inode-1"));
+    }
+
+    @Test
+    void fileKeyIsIgnoredWhenOneSideDoesNotKnowIt() {
+        manifest.put("C:/data/a.txt", 100, 5, null);
+        manifest.put("C:/data/b.txt", 200, 5, "inode-2");
+
+        assertTrue(manifest.isUnchanged("C:/data/a.txt", 100, 5, "inode-1"));
+        assertTrue(manifest.isUnchanged("C:/data/b.txt", 200, 5, null));
+    }
+
+    @Test
+    void putReplacesTheEntryOfThePath() {
+        manifest.put("C:/data/a.txt", 100, 5, null);
+        manifest.put("C:/data/a.txt", 120, 6, null);
+
+        assertEquals(1, manifest.size());
+        assertFalse(manifest.isUnchanged("C:/data/a.txt", 100, 5, null));
+        assertTrue(manifest.isUnchanged("C:/data/a.txt", 120, 6, null));
+    }
+
+    @Test
+    void probeChainsSurviveGrowthAndDeletes() {
+        for (int i = 0; i < MANY; i++) {
+            manifest.put(path(i), i, i * 7L, null);
+        }
+        assertEquals(MANY, manifest.size());
+
+        // Backward-shift deletion moves entries along their probe chains; every survivor must still be found.
+        for (int i = 0; i < MANY; i += 2) {
+            manifest.remove(path(i));
+        }
+        manifest.remove(path(0)); // already gone
+
+        assertEquals(MANY / 2, manifest.size());
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(i % 2 == 1, manifest.isUnchanged(path(i), i, i * 7L, null), path(i));
+        }
+    }
+
+    @Test
+    void reopenedManifestKeepsItsEntries() {
+        for (int i = 0; i < 1000; i++) {
+            manifest.put(path(i), i, 42, "key-" + i);
+        }
+        manifest.close();
+
+        manifest = manifest();
+
+        assertEquals(1000, manifest.size());
+        assertTrue(manifest.isUnchanged(path(999), 999, 42, "key-999"));
+        assertFalse(manifest.isUnchanged(path(999), 999, 42, "key-998"));
+    }
+
+    @Test
+    void newManifestIsSeededWithHashedFilesFromTheDatabase() {
+        manifest.close();
+        jdbcTemplate.update("INSERT INTO files VALUES ('C:/a.txt', 10, 100, 'h1', 'text')");
+        jdbcTemplate.update("INSERT INTO files VALUES ('C:/b.txt', 20, 200, NULL, 'text')");     // not hashed yet
+        jdbcTemplate.update("INSERT INTO files VALUES ('C:/c.txt', 30, 300, 'h3', 'missing')"); // deleted since
+        jdbcTemplate.update("INSERT INTO files VALUES ('C:/d.txt', 40, 400, 'h4', NULL)");
+
+        manifest = manifest("fresh.manifest");
+
+        assertEquals(2, manifest.size());
+        assertTrue(manifest.isUnchanged("C:/a.txt", 10, 100, "any-key"));
+        assertFalse(manifest.isUnchanged("C:/b.txt", 20, 200, null));
+        assertFalse(manifest.isUnchanged("C:/c.txt", 30, 300, null));
+        assertTrue(manifest.isUnchanged("C:/d.txt", 40, 400, null));
+    }
+
+    // --- Helper Methods ---
+
+    private FileManifest manifest() {
+        return manifest("test.manifest");
+    }
+
+    private FileManifest manifest(String name) {
+        FileManifest manifest = new FileManifest(jdbcTemplate);
+        ReflectionTestUtils.setField(manifest, "manifestPath", tempDir.resolve(name).toString());
+        return manifest;
+    }
+
+    private static String path(int i) {
+        return "D:/photos/" + (i / 1000) + "/IMG_" + i + ".jpg";
+    }
+}
@@ -0,0 +1,97 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks which files the walker reports and which directories it reports as complete.
+ */
+class ParallelFileWalkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ParallelFileWalker walker;
+    private final Set<String> files = Collections.synchronizedSet(new TreeSet<>());
+    private final Set<String> completed = Collections.synchronizedSet(new TreeSet<>());
+
+    @BeforeEach
+    void setUp() {
+        walker = new ParallelFileWalker(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        walker.shutdown();
+    }
+
+    @Test
+    void everyDirectoryIsCompletedAfterAFullWalk() throws IOException {
+        Files.createDirectories(tempDir.resolve("a/b"));
+        Files.createDirectories(tempDir.resolve("c"));
+        Files.writeString(tempDir.resolve("a/b/one.txt"), "1");
+        Files.writeString(tempDir.resolve("c/two.txt"), "2");
+
+        walk(null);
+
+        assertEquals(Set.of("a/b/one.txt", "c/two.txt"), files);
+        assertEquals(Set.of("", "a", "a/b", "c"), completed);
+    }
+
+    @Test
+    void failedListingIsNotCompletedAndNeitherAreItsParents() throws IOException {
+        Files.createDirectories(tempDir.resolve("a/b"));
+        Files.createDirectories(tempDir.resolve("c/gone"));
+        Files.writeString(tempDir.resolve("a/b/one.txt"), "1");
+
+        walk(tempDir.resolve("c/gone")); // deleted once entered, so listing it fails
+
+        assertEquals(Set.of("a/b/one.txt"), files);
+        assertEquals(Set.of("a", "a/b"), completed);
+    }
+
+    // --- Helper Methods ---
+
+    private void walk(Path deleteOnEnter) {
+        walker.walk(List.of(tempDir), new ParallelFileWalker.Visitor() {
+            @Override
+            public boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(deleteOnEnter)) {
+                    try {
+                        Files.delete(dir);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(relative(file));
+            }
+
+            @Override
+            public void leaveDirectory(Path dir) {
+                completed.add(relative(dir));
+            }
+        });
+    }
+
+    private String relative(Path path) {
+        return tempDir.relativize(path).toString().replace('\\', '/');
+    }
+}
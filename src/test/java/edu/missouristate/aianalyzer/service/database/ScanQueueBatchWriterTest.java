@@ -0,0 +1,206 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the scan queue upsert (one row per path, merged schedule, priority, kind and revision)
+ * and the front filter against an in-memory SQLite database.
+ */
+class ScanQueueBatchWriterTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ScanQueueBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ScanQueueSchema.create(jdbcTemplate);
+        writer = writer(100, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void newPathsAreInserted() {
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_NEW));
+        writer.enqueue(item("C:/b.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 200, ScanQueueItem.PRIORITY_BACKGROUND));
+        writer.flush();
+
+        assertEquals(2, count());
+        assertEquals(2, writer.getInsertedTotal());
+        assertEquals(0, writer.getMergedTotal());
+        Map<String, Object> row = row("C:/b.txt");
+        assertEquals("VIRUS_RESCAN", row.get("kind"));
+        assertEquals(200L, ((Number) row.get("not_before_unix")).longValue());
+        assertEquals(0L, ((Number) row.get("revision")).longValue());
+    }
+
+    @Test
+    void reenqueueKeepsEarliestScheduleAndHighestPriority() {
+        writer = writer(100, 0); // no front filter, so every request reaches the upsert
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 100, ScanQueueItem.PRIORITY_NEW));
+        writer.flush();
+
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 200, ScanQueueItem.PRIORITY_USER_FOCUS));
+        writer.flush();
+        assertRow("C:/a.txt", "VIRUS_RESCAN", 100, ScanQueueItem.PRIORITY_USER_FOCUS, 1);
+
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 50, ScanQueueItem.PRIORITY_BACKGROUND));
+        writer.flush();
+        assertRow("C:/a.txt", "VIRUS_RESCAN", 50, ScanQueueItem.PRIORITY_USER_FOCUS, 2);
+
+        assertEquals(1, count());
+        assertEquals(1, writer.getInsertedTotal());
+        assertEquals(2, writer.getMergedTotal());
+    }
+
+    @Test
+    void fullScanUpgradesRescanButNotTheOtherWayRound() {
+        writer = writer(100, 0);
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 100, ScanQueueItem.PRIORITY_BACKGROUND));
+        writer.flush();
+
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_BACKGROUND));
+        writer.flush();
+        assertRow("C:/a.txt", "ACTIVE_AI", 100, ScanQueueItem.PRIORITY_BACKGROUND, 1);
+
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 100, ScanQueueItem.PRIORITY_BACKGROUND));
+        writer.flush();
+        assertRow("C:/a.txt", "ACTIVE_AI", 100, ScanQueueItem.PRIORITY_BACKGROUND, 2);
+    }
+
+    @Test
+    void duplicatesWithinOneBatchMerge() {
+        writer = writer(100, 0);
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 300, ScanQueueItem.PRIORITY_NEW));
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.ACTIVE_AI, 200, ScanQueueItem.PRIORITY_BACKGROUND));
+        writer.flush();
+
+        assertRow("C:/a.txt", "ACTIVE_AI", 200, ScanQueueItem.PRIORITY_NEW, 1);
+        assertEquals(1, writer.getInsertedTotal());
+        assertEquals(1, writer.getMergedTotal());
+    }
+
+    @Test
+    void frontFilterDropsRequestsTheRowAlreadyCovers() {
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 100, ScanQueueItem.PRIORITY_NEW));
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 150, ScanQueueItem.PRIORITY_BACKGROUND));
+        assertEquals(1, writer.getFilteredTotal());
+
+        // Asking for more (a full scan) gets through.
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.ACTIVE_AI, 150, ScanQueueItem.PRIORITY_BACKGROUND));
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 150, ScanQueueItem.PRIORITY_BACKGROUND));
+        assertEquals(2, writer.getFilteredTotal());
+        writer.flush();
+        assertRow("C:/a.txt", "ACTIVE_AI", 100, ScanQueueItem.PRIORITY_NEW, 1);
+
+        // Once the consumer took the row, the next request must reach it again.
+        writer.forget("C:/a.txt");
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.VIRUS_RESCAN, 150, ScanQueueItem.PRIORITY_BACKGROUND));
+        writer.flush();
+        assertEquals(2, writer.getFilteredTotal());
+        assertRow("C:/a.txt", "ACTIVE_AI", 100, ScanQueueItem.PRIORITY_NEW, 2);
+    }
+
+    @Test
+    void fullBufferIsFlushedByTheEnqueuingThread() {
+        writer = writer(3, 1000);
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_NEW));
+        writer.enqueue(item("C:/b.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_NEW));
+        assertEquals(0, count());
+
+        writer.enqueue(item("C:/c.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_NEW));
+        assertEquals(3, count());
+    }
+
+    @Test
+    void duplicateRowsOfOlderDatabasesAreCollapsed() {
+        jdbcTemplate.execute("DROP TABLE scan_queue");
+        ScanQueueSchema.createLegacy(jdbcTemplate);
+        jdbcTemplate.update("INSERT INTO scan_queue (path, kind, not_before_unix, attempts) VALUES ('C:/a.txt', 'ACTIVE_AI', 10, 0)");
+        jdbcTemplate.update("INSERT INTO scan_queue (path, kind, not_before_unix, attempts) VALUES ('C:/a.txt', 'ACTIVE_AI', 20, 0)");
+
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_NEW));
+        writer.flush();
+
+        assertEquals(1, count());
+        assertEquals(1, (long) jdbcTemplate.queryForObject("SELECT id FROM scan_queue", Long.class));
+        assertRow("C:/a.txt", "ACTIVE_AI", 10, ScanQueueItem.PRIORITY_NEW, 1);
+    }
+
+    @Test
+    void failedBatchIsKeptForTheNextFlush() {
+        writer.enqueue(item("C:/a.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_NEW));
+        writer.enqueue(item("C:/b.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_NEW));
+        jdbcTemplate.execute("DROP TABLE scan_queue");
+
+        assertFalse(writer.flush());
+        assertFalse(writer.flush());
+
+        ScanQueueSchema.create(jdbcTemplate);
+        writer.enqueue(item("C:/c.txt", ScanQueueItem.Kind.ACTIVE_AI, 100, ScanQueueItem.PRIORITY_NEW));
+        assertTrue(writer.flush());
+        assertEquals(3, count());
+        assertEquals(List.of("C:/a.txt", "C:/b.txt", "C:/c.txt"),
+                jdbcTemplate.queryForList("SELECT path FROM scan_queue ORDER BY id", String.class));
+    }
+
+    // --- Helper Methods ---
+
+    private ScanQueueBatchWriter writer(int batchSize, int frontFilterSize) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        QueueSignal queueSignal = new QueueSignal();
+        ScanQueueLeases leases = new ScanQueueLeases(jdbcTemplate, transactionTemplate, queueSignal);
+        ScanQueueBatchWriter writer = new ScanQueueBatchWriter(jdbcTemplate, transactionTemplate, leases, queueSignal);
+        ReflectionTestUtils.setField(writer, "batchSize", batchSize);
+        ReflectionTestUtils.setField(writer, "frontFilterSize", frontFilterSize);
+        ReflectionTestUtils.setField(writer, "maxAttempts", 2);
+        ReflectionTestUtils.setField(writer, "retryDelayMillis", 1L);
+        return writer;
+    }
+
+    private static ScanQueueItem item(String path, ScanQueueItem.Kind kind, long notBeforeUnix, int priority) {
+        ScanQueueItem item = new ScanQueueItem();
+        item.setPath(path);
+        item.setKind(kind);
+        item.setNotBeforeUnix(notBeforeUnix);
+        item.setPriority(priority);
+        return item;
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM scan_queue", Integer.class);
+    }
+
+    private Map<String, Object> row(String path) {
+        return jdbcTemplate.queryForMap("SELECT * FROM scan_queue WHERE path = ?", path);
+    }
+
+    private void assertRow(String path, String kind, long notBeforeUnix, int priority, long revision) {
+        Map<String, Object> row = row(path);
+        assertEquals(kind, row.get("kind"));
+        assertEquals(notBeforeUnix, ((Number) row.get("not_before_unix")).longValue());
+        assertEquals(priority, ((Number) row.get("priority")).intValue());
+        assertEquals(revision, ((Number) row.get("revision")).longValue());
+    }
+}
@@ -0,0 +1,162 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks claiming by priority class and weighted round-robin across roots, renewal, release and
+ * reclaiming of expired leases against an in-memory SQLite database.
+ */
+class ScanQueueLeasesTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ScanQueueLeases leases;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ScanQueueSchema.create(jdbcTemplate);
+        leases = new ScanQueueLeases(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                new QueueSignal());
+        ReflectionTestUtils.setField(leases, "leaseSeconds", 600L);
+        ReflectionTestUtils.setField(leases, "rootWeightsSetting", "");
+        ReflectionTestUtils.setField(leases, "laneRefreshMillis", 30000L);
+        now = Instant.now().getEpochSecond();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void claimTakesDueItemsOnceInScheduleOrder() {
+        insert("C:/b.txt", 0, "C:/", now - 10);
+        insert("C:/a.txt", 0, "C:/", now - 20);
+        insert("C:/later.txt", 0, "C:/", now + 3600);
+
+        List<ScanQueueItem> first = leases.claim("worker-1", 10);
+        List<ScanQueueItem> second = leases.claim("worker-2", 10);
+
+        assertEquals(List.of("C:/a.txt", "C:/b.txt"), paths(first));
+        assertTrue(second.isEmpty());
+        assertTrue(first.get(0).getClaimedBy().startsWith("worker-1#"));
+        assertTrue(first.get(0).getLeaseUntil() >= now + 600);
+    }
+
+    @Test
+    void higherPriorityClassIsServedFirst() {
+        insert("C:/background.txt", ScanQueueItem.PRIORITY_BACKGROUND, "C:/", now - 100);
+        insert("C:/focus.txt", ScanQueueItem.PRIORITY_USER_FOCUS, "C:/", now - 1);
+        insert("C:/new.txt", ScanQueueItem.PRIORITY_NEW, "C:/", now - 50);
+
+        assertEquals(List.of("C:/focus.txt"), paths(leases.claim("worker", 1)));
+        assertEquals(List.of("C:/new.txt", "C:/background.txt"), paths(leases.claim("worker", 5)));
+    }
+
+    @Test
+    void rootsTakeTurnsByWeight() {
+        ReflectionTestUtils.setField(leases, "rootWeightsSetting", "/big=3");
+        String big = Paths.get("/big").toAbsolutePath().toString();
+        for (int i = 0; i < 20; i++) {
+            insert(big + "/" + i, 0, big, now - 1000 + i);
+            insert("/small/" + i, 0, "/small", now - 1000 + i);
+            insert("/other/" + i, 0, "/other", now - 1000 + i);
+        }
+
+        List<ScanQueueItem> claimed = leases.claim("worker", 10);
+
+        assertEquals(10, claimed.size());
+        assertEquals(6, claimed.stream().filter(item -> item.getRoot().equals(big)).count());
+        assertEquals(2, claimed.stream().filter(item -> item.getRoot().equals("/small")).count());
+        assertEquals(2, claimed.stream().filter(item -> item.getRoot().equals("/other")).count());
+    }
+
+    @Test
+    void exhaustedRootLeavesItsTurnsToTheOthers() {
+        insert("/small/1", 0, "/small", now - 10);
+        for (int i = 0; i < 5; i++) {
+            insert("/big/" + i, 0, "/big", now - 10);
+        }
+
+        assertEquals(6, leases.claim("worker", 10).size());
+    }
+
+    @Test
+    void newLaneIsServedBeforeTheNextRefresh() {
+        insert("/a/1", 0, "/a", now - 10);
+        assertEquals(1, leases.claim("worker", 10).size());
+
+        insert("/b/1", ScanQueueItem.PRIORITY_NEW, "/b", now - 10);
+        assertTrue(leases.claim("worker", 10).isEmpty()); // lanes were read moments ago
+
+        leases.addLane(ScanQueueItem.PRIORITY_NEW, "/b");
+        assertEquals(List.of("/b/1"), paths(leases.claim("worker", 10)));
+    }
+
+    @Test
+    void renewAndReleaseOnlyTouchTheOwnersClaim() {
+        insert("C:/a.txt", 0, "C:/", now - 10);
+        ScanQueueItem item = leases.claim("worker-1", 1).get(0);
+
+        assertTrue(leases.renew(item));
+        ScanQueueItem stale = copyWithOwner(item, "worker-2#1");
+        assertFalse(leases.renew(stale));
+        leases.release(stale);
+        assertTrue(leases.claim("worker-2", 1).isEmpty());
+
+        leases.release(item);
+        assertEquals(List.of("C:/a.txt"), paths(leases.claim("worker-2", 1)));
+    }
+
+    @Test
+    void expiredLeasesAreReclaimed() {
+        insert("C:/a.txt", 0, "C:/", now - 10);
+        insert("C:/b.txt", 0, "C:/", now - 10);
+        ScanQueueItem expired = leases.claim("crashed", 1).get(0);
+        leases.claim("alive", 1);
+        jdbcTemplate.update("UPDATE scan_queue SET lease_until = ? WHERE id = ?", now - 1, expired.getId());
+
+        leases.reclaimExpired();
+
+        assertFalse(leases.renew(expired));
+        assertEquals(List.of(expired.getPath()), paths(leases.claim("worker", 10)));
+    }
+
+    // --- Helper Methods ---
+
+    private void insert(String path, int priority, String root, long notBeforeUnix) {
+        jdbcTemplate.update("INSERT INTO scan_queue (path, kind, not_before_unix, attempts, priority, root) "
+                + "VALUES (?, 'ACTIVE_AI', ?, 0, ?, ?)", path, notBeforeUnix, priority, root);
+    }
+
+    private static List<String> paths(List<ScanQueueItem> items) {
+        return items.stream().map(ScanQueueItem::getPath).toList();
+    }
+
+    private static ScanQueueItem copyWithOwner(ScanQueueItem item, String owner) {
+        ScanQueueItem copy = new ScanQueueItem();
+        copy.setId(item.getId());
+        copy.setPath(item.getPath());
+        copy.setClaimedBy(owner);
+        return copy;
+    }
+}
@@ -0,0 +1,47 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Creates the scan_queue table the way Hibernate builds it from ScanQueueItem, for tests that run
+ * the queue SQL against an in-memory SQLite database.
+ */
+final class ScanQueueSchema {
+
+    // Private constructor to prevent instantiation
+    private ScanQueueSchema() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Creates the table with the indexes declared on ScanQueueItem.
+     */
+    static void create(JdbcTemplate jdbcTemplate) {
+        createTable(jdbcTemplate);
+        jdbcTemplate.execute("CREATE INDEX ix_sq_kind_notbefore ON scan_queue(kind, not_before_unix)");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX ux_sq_path ON scan_queue(path)");
+        jdbcTemplate.execute("CREATE INDEX ix_sq_lane ON scan_queue(priority, root, not_before_unix)");
+        jdbcTemplate.execute("CREATE INDEX ix_sq_lease ON scan_queue(lease_until)");
+    }
+
+    /**
+     * Creates the table as older databases have it: the path index is not unique, so a path can
+     * have several rows.
+     */
+    static void createLegacy(JdbcTemplate jdbcTemplate) {
+        createTable(jdbcTemplate);
+        jdbcTemplate.execute("CREATE INDEX ix_sq_kind_notbefore ON scan_queue(kind, not_before_unix)");
+        jdbcTemplate.execute("CREATE INDEX ix_sq_path ON scan_queue(path)");
+    }
+
+    // --- Helper Methods ---
+
+    private static void createTable(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("""
+                CREATE TABLE scan_queue (
+                    id INTEGER PRIMARY KEY, path TEXT NOT NULL, kind TEXT NOT NULL,
+                    not_before_unix INTEGER NOT NULL, attempts INTEGER NOT NULL, priority INTEGER DEFAULT 0,
+                    root TEXT DEFAULT '', revision INTEGER DEFAULT 0, claimed_by TEXT, lease_until INTEGER DEFAULT 0)
+                """);
+    }
+}
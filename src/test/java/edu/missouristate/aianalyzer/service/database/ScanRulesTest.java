@@ -0,0 +1,134 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the compiled include/exclude rules: name and extension sets, the prefix trie and the combined glob regexes.
+ */
+class ScanRulesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void literalNamesMatchAtAnyDepthIgnoringCase() {
+        ScanRules rules = excluding("node_modules/", "Thumbs.db");
+
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("app/node_modules")));
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("a/b/NODE_MODULES")));
+        assertFalse(rules.isDirectoryExcluded(tempDir.resolve("app/node_modules2")));
+        assertFalse(rules.isFileIncluded(tempDir.resolve("photos/thumbs.DB"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("photos/thumbs.db.txt"), 10));
+    }
+
+    @Test
+    void directoryOnlyPatternsDoNotExcludeFiles() {
+        ScanRules rules = excluding("build/", "out*/");
+
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("project/build")));
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("project/output")));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("project/build"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("project/output"), 10));
+    }
+
+    @Test
+    void extensionPatterns() {
+        ScanRules rules = excluding("*.tmp");
+
+        assertFalse(rules.isFileIncluded(tempDir.resolve("a/B.TMP"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("a/b.tmp.txt"), 10));
+        assertFalse(rules.isDirectoryExcluded(tempDir.resolve("a/cache.tmp")));
+    }
+
+    @Test
+    void patternWithSlashMatchesTheEndOfThePath() {
+        ScanRules rules = excluding("cache/*.bin", "docs/**/draft-?.md", "logs/**");
+
+        assertFalse(rules.isFileIncluded(tempDir.resolve("x/cache/a.bin"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("x/cache/sub/a.bin"), 10));   // "*" stops at "/"
+        assertTrue(rules.isFileIncluded(tempDir.resolve("x/mycache/a.bin"), 10));     // whole segments only
+        assertFalse(rules.isFileIncluded(tempDir.resolve("docs/draft-1.md"), 10));    // "**/" may match nothing
+        assertFalse(rules.isFileIncluded(tempDir.resolve("docs/a/b/draft-2.md"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("docs/a/draft-10.md"), 10));  // "?" is one character
+        assertFalse(rules.isFileIncluded(tempDir.resolve("logs/2024/app.txt"), 10));
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("logs/2024")));
+    }
+
+    @Test
+    void characterClasses() {
+        ScanRules rules = excluding("[ab]*.dat", "report[!0-9].csv");
+
+        assertFalse(rules.isFileIncluded(tempDir.resolve("a1.dat"), 10));
+        assertFalse(rules.isFileIncluded(tempDir.resolve("B2.dat"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("c3.dat"), 10));
+        assertFalse(rules.isFileIncluded(tempDir.resolve("reportx.csv"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("report7.csv"), 10));
+    }
+
+    @Test
+    void leadingSlashAnchorsToTheAbsolutePath() {
+        String root = tempDir.toAbsolutePath().toString().replace('\\', '/');
+        ScanRules rules = excluding("/" + root + "/build/");
+
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("build")));
+        assertFalse(rules.isDirectoryExcluded(tempDir.resolve("sub/build")));
+    }
+
+    @Test
+    void negatedPatternsReincludeRegardlessOfOrder() {
+        ScanRules rules = excluding("!keep.log", "*.log", "tmp/", "!important/tmp");
+
+        assertFalse(rules.isFileIncluded(tempDir.resolve("a/app.log"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("a/keep.log"), 10));
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("a/tmp")));
+        assertFalse(rules.isDirectoryExcluded(tempDir.resolve("important/tmp")));
+    }
+
+    @Test
+    void excludedPrefixesCoverWholeSubtreesOnly() {
+        ScanRules rules = new ScanRules(List.of(), List.of(tempDir.resolve("Skip").toString() + "/"), List.of(), 0, 0);
+
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("skip")));
+        assertTrue(rules.isDirectoryExcluded(tempDir.resolve("skip/deep/er")));
+        assertFalse(rules.isFileIncluded(tempDir.resolve("skip/deep/a.txt"), 10));
+        assertFalse(rules.isDirectoryExcluded(tempDir.resolve("skipped")));
+        assertFalse(rules.isDirectoryExcluded(tempDir));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("skipped/a.txt"), 10));
+    }
+
+    @Test
+    void includedExtensionsAndSizeLimits() {
+        ScanRules rules = new ScanRules(List.of(), List.of(), List.of(".PDF", "txt"), 10, 1000);
+
+        assertTrue(rules.isFileIncluded(tempDir.resolve("a.pdf"), 10));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("a.TXT"), 1000));
+        assertTrue(rules.isFileIncluded(tempDir.resolve("Makefile"), 500));   // no extension
+        assertTrue(rules.isFileIncluded(tempDir.resolve("a.txt"), -1));       // size unknown
+        assertFalse(rules.isFileIncluded(tempDir.resolve("a.docx"), 500));
+        assertFalse(rules.isFileIncluded(tempDir.resolve("a.txt"), 9));
+        assertFalse(rules.isFileIncluded(tempDir.resolve("a.txt"), 1001));
+        assertFalse(rules.isFileIncluded(tempDir.resolve(".hidden"), 500));
+        assertFalse(rules.isFileIncluded(tempDir.resolve("name."), 500));
+    }
+
+    @Test
+    void commentsAndBlankPatternsAreIgnored() {
+        ScanRules rules = excluding("# *.txt", "  ", "!", "/");
+
+        assertTrue(rules.isFileIncluded(tempDir.resolve("a.txt"), 10));
+        assertFalse(rules.isDirectoryExcluded(tempDir.resolve("a")));
+    }
+
+    // --- Helper Methods ---
+
+    private static ScanRules excluding(String... patterns) {
+        return new ScanRules(List.of(patterns), List.of(), List.of(), 0, 0);
+    }
+}